@@ -0,0 +1,135 @@
+package com.javaninja.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares a JMH JSON result with a stored baseline and writes a Markdown report next to the
+ * result. Exits non-zero when any benchmark is worse than the baseline by more than the threshold,
+ * so the {@code benchmarks} profile fails the build on a regression.
+ *
+ * <p>Usage: {@code BaselineComparison <result.json> <baseline.json> <threshold-percent>}
+ */
+public final class BaselineComparison {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private BaselineComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("Usage: BaselineComparison <result.json> <baseline.json> <threshold-percent>");
+            System.exit(2);
+        }
+        Path resultPath = Path.of(args[0]);
+        Path baselinePath = Path.of(args[1]);
+        double threshold = Double.parseDouble(args[2]);
+
+        if (!Files.exists(baselinePath)) {
+            System.out.println("No baseline at " + baselinePath + "; copy " + resultPath + " there to start comparing.");
+            return;
+        }
+
+        Map<String, Score> current = read(resultPath);
+        Map<String, Score> baseline = read(baselinePath);
+
+        List<String> rows = new ArrayList<>();
+        int regressions = 0;
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score now = entry.getValue();
+            Score before = baseline.get(entry.getKey());
+            if (before == null) {
+                rows.add(row(entry.getKey(), null, now, "new"));
+                continue;
+            }
+            double change = now.improvementOver(before);
+            String verdict;
+            if (change < -threshold) {
+                verdict = "REGRESSION";
+                regressions++;
+            } else if (change > threshold) {
+                verdict = "improved";
+            } else {
+                verdict = "ok";
+            }
+            rows.add(row(entry.getKey(), before, now, String.format(Locale.ROOT, "%+.1f%% %s", change, verdict)));
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                rows.add(row(key, baseline.get(key), null, "missing"));
+            }
+        }
+
+        StringBuilder report = new StringBuilder()
+                .append("# Benchmark comparison\n\n")
+                .append(String.format(Locale.ROOT, "Threshold: %.1f%%, regressions: %d%n%n", threshold, regressions))
+                .append("| Benchmark | Mode | Baseline | Current | Change |\n")
+                .append("|---|---|---|---|---|\n");
+        rows.forEach(row -> report.append(row).append('\n'));
+        Path reportPath = resultPath.resolveSibling("jmh-comparison.md");
+        Files.writeString(reportPath, report);
+        System.out.print(report);
+        System.out.println("\nReport written to " + reportPath);
+
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    // Keyed by benchmark name plus its parameters, so each @Param combination is compared on its own.
+    private static Map<String, Score> read(Path path) throws IOException {
+        Map<String, Score> scores = new TreeMap<>();
+        for (JsonNode result : MAPPER.readTree(path.toFile())) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText());
+            Map<String, String> params = new LinkedHashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = result.path("params").fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                params.put(field.getKey(), field.getValue().asText());
+            }
+            if (!params.isEmpty()) {
+                key.append(params);
+            }
+            JsonNode metric = result.path("primaryMetric");
+            scores.put(key.toString(), new Score(result.path("mode").asText(),
+                    metric.path("score").asDouble(), metric.path("scoreError").asDouble(),
+                    metric.path("scoreUnit").asText()));
+        }
+        return scores;
+    }
+
+    private static String row(String benchmark, Score before, Score now, String change) {
+        String mode = (now != null ? now : before).mode();
+        return "| " + benchmark + " | " + mode + " | " + format(before) + " | " + format(now) + " | " + change + " |";
+    }
+
+    private static String format(Score score) {
+        if (score == null) {
+            return "-";
+        }
+        return Double.isNaN(score.error())
+                ? String.format(Locale.ROOT, "%.3f %s", score.value(), score.unit())
+                : String.format(Locale.ROOT, "%.3f ± %.3f %s", score.value(), score.error(), score.unit());
+    }
+
+    private record Score(String mode, double value, double error, String unit) {
+
+        // Throughput is better when higher; average, sample and single-shot times when lower.
+        double improvementOver(Score baseline) {
+            double change = (value - baseline.value) / baseline.value * 100;
+            return mode.equals("thrpt") ? change : -change;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.javaninja.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.javaninja.client.ExternalApiClient;
+import com.javaninja.model.ExternalUser;
+import com.javaninja.model.Post;
+import com.javaninja.service.ExternalApiProperties;
+import com.javaninja.service.ExternalService;
+import feign.Request;
+import feign.Response;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkhead;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the resilience stack around external lookups. The upstream is an in-process stub
+ * that answers immediately, so the numbers measure the circuit breaker, bulkhead hand-off,
+ * limiter and cache rather than the network.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ExternalServiceBenchmark {
+
+    private static final int IDS = 100;
+
+    private static final List<Long> BATCH = List.of(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L);
+
+    @Param({"true", "false"})
+    private boolean cache;
+
+    private ThreadPoolBulkheadRegistry threadPoolBulkheadRegistry;
+
+    private ExternalService externalService;
+
+    @Setup
+    public void setUp() {
+        ExternalApiProperties properties = new ExternalApiProperties();
+        properties.getCache().setEnabled(cache);
+        threadPoolBulkheadRegistry = ThreadPoolBulkheadRegistry.ofDefaults();
+        externalService = new ExternalService(new StubExternalApiClient(), CircuitBreakerRegistry.ofDefaults(),
+                TimeLimiterRegistry.ofDefaults(), threadPoolBulkheadRegistry,
+                BulkheadRegistry.ofDefaults(), properties, new SimpleMeterRegistry());
+    }
+
+    // The bulkhead's worker threads are not daemons and would keep a non-forked run alive.
+    @TearDown
+    public void tearDown() throws Exception {
+        externalService.shutdown();
+        for (ThreadPoolBulkhead bulkhead : threadPoolBulkheadRegistry.getAllBulkheads()) {
+            bulkhead.close();
+        }
+    }
+
+    @Benchmark
+    public Post getPost() {
+        return externalService.getPost(randomId());
+    }
+
+    @Benchmark
+    public Post getPostAsync() {
+        return externalService.getPostAsync(randomId()).join();
+    }
+
+    @Benchmark
+    public List<Post> getPosts() {
+        return externalService.getPosts(BATCH);
+    }
+
+    private static long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, IDS + 1);
+    }
+
+    /**
+     * Answers every lookup from memory with the same shapes the real API returns.
+     */
+    private static final class StubExternalApiClient implements ExternalApiClient {
+
+        private static final ObjectMapper MAPPER = new ObjectMapper();
+
+        @Override
+        public Post getPost(Long id) {
+            return new Post(id, 1L, "Post " + id, "Body of post " + id);
+        }
+
+        @Override
+        public List<Post> getPosts(List<Long> ids) {
+            return ids.stream().map(this::getPost).toList();
+        }
+
+        @Override
+        public ExternalUser getExternalUser(Long id) {
+            return new ExternalUser(id, "User " + id, "user" + id + "@example.com");
+        }
+
+        @Override
+        public List<ExternalUser> getExternalUsers(List<Long> ids) {
+            return ids.stream().map(this::getExternalUser).toList();
+        }
+
+        @Override
+        public Response getPostResponse(Long id) {
+            return response("/posts/" + id, getPost(id));
+        }
+
+        @Override
+        public Response getExternalUserResponse(Long id) {
+            return response("/users/" + id, getExternalUser(id));
+        }
+
+        @Override
+        public Response getPostResponse(Long id, String ifNoneMatch) {
+            return getPostResponse(id);
+        }
+
+        @Override
+        public Response getExternalUserResponse(Long id, String ifNoneMatch) {
+            return getExternalUserResponse(id);
+        }
+
+        private static Response response(String path, Object body) {
+            Request request = Request.create(Request.HttpMethod.GET, path, Map.of(), null, StandardCharsets.UTF_8, null);
+            try {
+                return Response.builder()
+                        .status(200)
+                        .request(request)
+                        .headers(Map.of())
+                        .body(MAPPER.writeValueAsBytes(body))
+                        .build();
+            } catch (JsonProcessingException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.javaninja.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Prints the encoded size of each {@link SerializationBenchmark} payload in every wire format, as a
+ * Markdown table with the size relative to JSON.
+ *
+ * <p>Usage: {@code PayloadSizeComparison}
+ */
+public final class PayloadSizeComparison {
+
+    private static final List<String> FORMATS = List.of("json", "smile", "cbor");
+
+    private PayloadSizeComparison() {
+    }
+
+    public static void main(String[] args) throws JsonProcessingException {
+        System.out.println("| Payload | json | smile | cbor |");
+        System.out.println("|---|---:|---:|---:|");
+        for (Map.Entry<String, Object> payload : SerializationBenchmark.payloads().entrySet()) {
+            StringBuilder row = new StringBuilder("| ").append(payload.getKey());
+            int jsonSize = 0;
+            for (String format : FORMATS) {
+                ObjectMapper mapper = SerializationBenchmark.mapper(format);
+                int size = mapper.writeValueAsBytes(payload.getValue()).length;
+                if (jsonSize == 0) {
+                    jsonSize = size;
+                    row.append(" | ").append(size);
+                } else {
+                    row.append(String.format(Locale.ROOT, " | %d (%.0f%%)", size, 100.0 * size / jsonSize));
+                }
+            }
+            System.out.println(row.append(" |"));
+        }
+    }
+}
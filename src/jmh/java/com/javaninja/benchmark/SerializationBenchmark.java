@@ -0,0 +1,139 @@
+package com.javaninja.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.javaninja.model.ExternalUser;
+import com.javaninja.model.Post;
+import com.javaninja.model.User;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson round trips for the payloads the application serves: users from the local store and the
+ * post and user records decoded from the external API, in JSON and in the binary formats offered
+ * through content negotiation. {@link PayloadSizeComparison} reports the encoded sizes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    private static final TypeReference<List<User>> USER_LIST = new TypeReference<>() {
+    };
+
+    @Param({"json", "smile", "cbor"})
+    private String format;
+
+    private ObjectMapper objectMapper;
+
+    private User user;
+
+    private List<User> users;
+
+    private Post post;
+
+    private ExternalUser externalUser;
+
+    private byte[] userBytes;
+
+    private byte[] usersBytes;
+
+    private byte[] postBytes;
+
+    private byte[] externalUserBytes;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        objectMapper = mapper(format);
+        Map<String, Object> payloads = payloads();
+        user = (User) payloads.get("user");
+        @SuppressWarnings("unchecked")
+        List<User> userList = (List<User>) payloads.get("userList");
+        users = userList;
+        post = (Post) payloads.get("post");
+        externalUser = (ExternalUser) payloads.get("externalUser");
+        userBytes = objectMapper.writeValueAsBytes(user);
+        usersBytes = objectMapper.writeValueAsBytes(users);
+        postBytes = objectMapper.writeValueAsBytes(post);
+        externalUserBytes = objectMapper.writeValueAsBytes(externalUser);
+    }
+
+    static ObjectMapper mapper(String format) {
+        return switch (format) {
+            case "json" -> new ObjectMapper();
+            case "smile" -> new SmileMapper();
+            case "cbor" -> new CBORMapper();
+            default -> throw new IllegalArgumentException("Unknown format: " + format);
+        };
+    }
+
+    static Map<String, Object> payloads() {
+        List<User> users = new ArrayList<>();
+        for (long id = 1; id <= 100; id++) {
+            users.add(new User(id, "User " + id, "user" + id + "@example.com"));
+        }
+        Map<String, Object> payloads = new LinkedHashMap<>();
+        payloads.put("user", new User(1L, "John Doe", "john@example.com"));
+        payloads.put("userList", users);
+        payloads.put("post", new Post(1L, 1L, "sunt aut facere repellat provident occaecati excepturi optio reprehenderit",
+                "quia et suscipit\nsuscipit recusandae consequuntur expedita et cum\nreprehenderit molestiae ut ut quas totam"));
+        payloads.put("externalUser", new ExternalUser(1L, "Leanne Graham", "Bret", "Sincere@april.biz",
+                "1-770-736-8031 x56442", "hildegard.org", null));
+        return payloads;
+    }
+
+    @Benchmark
+    public byte[] writeUser() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(user);
+    }
+
+    @Benchmark
+    public User readUser() throws Exception {
+        return objectMapper.readValue(userBytes, User.class);
+    }
+
+    @Benchmark
+    public byte[] writeUserList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(users);
+    }
+
+    @Benchmark
+    public List<User> readUserList() throws Exception {
+        return objectMapper.readValue(usersBytes, USER_LIST);
+    }
+
+    @Benchmark
+    public byte[] writePost() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(post);
+    }
+
+    @Benchmark
+    public Post readPost() throws Exception {
+        return objectMapper.readValue(postBytes, Post.class);
+    }
+
+    @Benchmark
+    public byte[] writeExternalUser() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(externalUser);
+    }
+
+    @Benchmark
+    public ExternalUser readExternalUser() throws Exception {
+        return objectMapper.readValue(externalUserBytes, ExternalUser.class);
+    }
+}
@@ -0,0 +1,123 @@
+package com.javaninja.benchmark;
+
+import com.javaninja.model.User;
+import com.javaninja.service.CompactUserStore;
+import com.javaninja.service.HeapUserStore;
+import com.javaninja.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory user store operations at different store sizes, on the heap and compact storage
+ * engines. The contended variants run the same operation from several threads to show how reads
+ * scale and how much writes serialize on the store's write lock.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class UserServiceBenchmark {
+
+    private static final int LOAD_CHUNK = 10_000;
+
+    @Param({"1000", "100000", "1000000"})
+    private int users;
+
+    @Param({"heap", "compact"})
+    private String store;
+
+    private UserService userService;
+
+    private long maxId;
+
+    private final AtomicLong created = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        userService = new UserService(Optional.empty(), new SimpleMeterRegistry(),
+                "compact".equals(store) ? new CompactUserStore() : new HeapUserStore());
+        List<User> chunk = new ArrayList<>(LOAD_CHUNK);
+        for (int i = userService.getAllUsers().size(); i < users; i++) {
+            chunk.add(new User(null, "User " + i, emailOf(i + 1)));
+            if (chunk.size() == LOAD_CHUNK) {
+                userService.createUsers(chunk);
+                chunk = new ArrayList<>(LOAD_CHUNK);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            userService.createUsers(chunk);
+        }
+        maxId = users;
+    }
+
+    @Benchmark
+    public Optional<User> getUserById() {
+        return userService.getUserById(randomId());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<User> getUserByIdContended() {
+        return userService.getUserById(randomId());
+    }
+
+    @Benchmark
+    public Optional<User> getUserByEmail() {
+        return userService.getUserByEmail(emailOf(randomId()));
+    }
+
+    @Benchmark
+    public List<User> getUsersPage() {
+        return userService.getUsersAfter(randomId(), 100);
+    }
+
+    @Benchmark
+    public Optional<User> updateUser() {
+        long id = randomId();
+        return userService.updateUser(id, new User(null, "Updated " + id, emailOf(id)));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<User> updateUserContended() {
+        long id = randomId();
+        return userService.updateUser(id, new User(null, "Updated " + id, emailOf(id)));
+    }
+
+    // Creating and deleting in one op keeps the store at its configured size.
+    @Benchmark
+    public boolean createAndDeleteUser() {
+        User user = userService.createUser(new User(null, "Transient", "transient" + created.incrementAndGet() + "@example.com"));
+        return userService.deleteUser(user.getId());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean createAndDeleteUserContended() {
+        return createAndDeleteUser();
+    }
+
+    // Ids 1-3 are the service's sample users; their emails are simply replaced on first update.
+    private static String emailOf(long id) {
+        return "user" + id + "@example.com";
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, maxId + 1);
+    }
+}
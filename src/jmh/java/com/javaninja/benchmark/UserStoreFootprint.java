@@ -0,0 +1,73 @@
+package com.javaninja.benchmark;
+
+import com.javaninja.model.User;
+import com.javaninja.service.CompactUserStore;
+import com.javaninja.service.HeapUserStore;
+import com.javaninja.service.UserStore;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Compares the memory the user storage engines need to hold the same users. Each engine is filled
+ * on its own and measured as the growth in heap and direct buffer memory after full collections.
+ * Run with a fixed heap so collections are comparable between engines.
+ *
+ * <p>Usage: {@code UserStoreFootprint [users]}
+ */
+public final class UserStoreFootprint {
+
+    private static final String[] DOMAINS = {"example.com", "gmail.com", "yahoo.com", "outlook.com"};
+
+    private UserStoreFootprint() {
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int users = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.printf(Locale.ROOT, "Footprint of %,d users%n%n", users);
+        System.out.println("| Engine | Heap | Off-heap | Total | Bytes per user |");
+        System.out.println("|---|---:|---:|---:|---:|");
+        measure("heap", HeapUserStore::new, users);
+        measure("compact", CompactUserStore::new, users);
+    }
+
+    private static void measure(String engine, Supplier<UserStore> factory, int users) throws InterruptedException {
+        long heapBefore = usedHeap();
+        long directBefore = usedDirect();
+        UserStore store = factory.get();
+        for (int i = 1; i <= users; i++) {
+            User user = new User((long) i, "User " + i, "user" + i + "@" + DOMAINS[i % DOMAINS.length]);
+            user.setVersion(i);
+            store.put(user);
+        }
+        long heap = usedHeap() - heapBefore;
+        long direct = usedDirect() - directBefore;
+        Reference.reachabilityFence(store);
+        System.out.printf(Locale.ROOT, "| %s | %s | %s | %s | %d |%n", engine, megabytes(heap), megabytes(direct),
+                megabytes(heap + direct), (heap + direct) / users);
+    }
+
+    // Replaced direct buffers are only released once their cleaner runs after a collection.
+    private static long usedHeap() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long usedDirect() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> "direct".equals(pool.getName()))
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)
+                .sum();
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
@@ -1,18 +1,46 @@
 package com.javaninja.client;
 
+import com.javaninja.model.ExternalUser;
+import com.javaninja.model.Post;
+import feign.Response;
 import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 
-import java.util.Map;
+import java.util.List;
 
-@FeignClient(name = "external-api", url = "https://jsonplaceholder.typicode.com")
+@FeignClient(name = "external-api", url = "${external-api.url:https://jsonplaceholder.typicode.com}",
+        configuration = ExternalApiClientConfiguration.class)
 public interface ExternalApiClient {
     
     @GetMapping("/posts/{id}")
-    Map<String, Object> getPost(@PathVariable("id") Long id);
+    Post getPost(@PathVariable("id") Long id);
+    
+    @GetMapping("/posts")
+    List<Post> getPosts(@RequestParam("id") List<Long> ids);
+    
+    @GetMapping("/users/{id}")
+    ExternalUser getExternalUser(@PathVariable("id") Long id);
+    
+    @GetMapping("/users")
+    List<ExternalUser> getExternalUsers(@RequestParam("id") List<Long> ids);
+    
+    // Undecoded variants used to relay upstream bytes as-is; callers must close the response.
+    @GetMapping("/posts/{id}")
+    Response getPostResponse(@PathVariable("id") Long id);
     
     @GetMapping("/users/{id}")
-    Map<String, Object> getExternalUser(@PathVariable("id") Long id);
+    Response getExternalUserResponse(@PathVariable("id") Long id);
+    
+    // Conditional variants used to revalidate cached entries; an unchanged resource answers 304 without a body.
+    @GetMapping("/posts/{id}")
+    Response getPostResponse(@PathVariable("id") Long id,
+                             @RequestHeader(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch);
+    
+    @GetMapping("/users/{id}")
+    Response getExternalUserResponse(@PathVariable("id") Long id,
+                                     @RequestHeader(HttpHeaders.IF_NONE_MATCH) String ifNoneMatch);
 }
-
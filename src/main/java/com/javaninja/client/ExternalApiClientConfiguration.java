@@ -0,0 +1,29 @@
+package com.javaninja.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import feign.codec.Decoder;
+import feign.micrometer.DefaultFeignObservationConvention;
+import feign.micrometer.MicrometerObservationCapability;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.context.annotation.Bean;
+
+// Referenced from @FeignClient only, so it applies to ExternalApiClient and not to other clients.
+public class ExternalApiClientConfiguration {
+
+    @Bean
+    public Decoder externalApiDecoder(ObjectMapper objectMapper) {
+        return new StreamingJacksonDecoder(objectMapper);
+    }
+
+    // Feign's default name, http.client.requests, clashes with the RestTemplate/WebClient timers of the
+    // same name but different tag keys, which Prometheus rejects; a name of its own keeps both.
+    @Bean
+    public MicrometerObservationCapability externalApiObservationCapability(ObservationRegistry observationRegistry) {
+        return new MicrometerObservationCapability(observationRegistry, new DefaultFeignObservationConvention() {
+            @Override
+            public String getName() {
+                return "feign.client.requests";
+            }
+        });
+    }
+}
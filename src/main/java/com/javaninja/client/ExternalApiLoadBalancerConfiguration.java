@@ -0,0 +1,35 @@
+package com.javaninja.client;
+
+import com.javaninja.service.ExternalApiProperties;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.loadbalancer.core.ReactorLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.support.LoadBalancerClientFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+
+// Referenced from @LoadBalancerClient only, so it applies to the external-api child context.
+public class ExternalApiLoadBalancerConfiguration {
+
+    @Bean
+    InstanceStatistics externalApiInstanceStatistics(Environment environment,
+                                                     CircuitBreakerRegistry circuitBreakerRegistry,
+                                                     ExternalApiProperties properties,
+                                                     MeterRegistry meterRegistry) {
+        String serviceId = environment.getProperty(LoadBalancerClientFactory.PROPERTY_NAME);
+        ExternalApiProperties.LoadBalancer settings = properties.getLoadBalancer();
+        return new InstanceStatistics(serviceId, circuitBreakerRegistry,
+                circuitBreakerRegistry.getConfiguration(serviceId).orElseGet(circuitBreakerRegistry::getDefaultConfig),
+                settings.getDecay(), settings.getFailurePenalty(), meterRegistry);
+    }
+
+    @Bean
+    ReactorLoadBalancer<ServiceInstance> externalApiLoadBalancer(
+            ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplier,
+            InstanceStatistics externalApiInstanceStatistics) {
+        return new LatencyAwareLoadBalancer(serviceInstanceListSupplier, externalApiInstanceStatistics);
+    }
+}
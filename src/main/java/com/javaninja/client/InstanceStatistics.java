@@ -0,0 +1,246 @@
+package com.javaninja.client;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.LoadBalancerLifecycle;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.client.loadbalancer.ResponseData;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-instance load and health for the external-api load balancer. Every call is observed through
+ * the load balancer lifecycle: the instance's requests in flight, a peak-sensitive moving average
+ * of its latency that decays back towards zero while it is idle, and its own circuit breaker, so
+ * one failing instance is ejected without tripping calls to the others. Statistics of instances that
+ * drop out of discovery are removed along with their breaker and gauges.
+ */
+class InstanceStatistics implements LoadBalancerLifecycle<RequestDataContext, ResponseData, ServiceInstance> {
+
+    private final Map<String, Stats> instances = new ConcurrentHashMap<>();
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+
+    private final CircuitBreakerConfig circuitBreakerConfig;
+
+    private final String serviceId;
+
+    private final double decayNanos;
+
+    private final long failurePenaltyNanos;
+
+    private final MeterRegistry meterRegistry;
+
+    private volatile List<ServiceInstance> lastDiscovered;
+
+    InstanceStatistics(String serviceId, CircuitBreakerRegistry circuitBreakerRegistry,
+                       CircuitBreakerConfig circuitBreakerConfig, Duration decay, Duration failurePenalty,
+                       MeterRegistry meterRegistry) {
+        this.serviceId = serviceId;
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.circuitBreakerConfig = circuitBreakerConfig;
+        this.decayNanos = decay.toNanos();
+        this.failurePenaltyNanos = failurePenalty.toNanos();
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean supports(Class requestContextClass, Class responseClass, Class serverTypeClass) {
+        return RequestDataContext.class.isAssignableFrom(requestContextClass)
+                && ResponseData.class.isAssignableFrom(responseClass)
+                && ServiceInstance.class.isAssignableFrom(serverTypeClass);
+    }
+
+    @Override
+    public void onStart(Request<RequestDataContext> request) {
+    }
+
+    @Override
+    public void onStartRequest(Request<RequestDataContext> request, Response<ServiceInstance> lbResponse) {
+        if (lbResponse.hasServer()) {
+            request.getContext().setRequestStartTime(System.nanoTime());
+            started(lbResponse.getServer());
+        }
+    }
+
+    @Override
+    public void onComplete(CompletionContext<ResponseData, ServiceInstance, RequestDataContext> completionContext) {
+        Response<ServiceInstance> lbResponse = completionContext.getLoadBalancerResponse();
+        if (lbResponse == null || !lbResponse.hasServer()) {
+            return;
+        }
+        long startTime = completionContext.getLoadBalancerRequest().getContext().getRequestStartTime();
+        if (completionContext.status() == CompletionContext.Status.DISCARD) {
+            discarded(lbResponse.getServer(), startTime > 0);
+            return;
+        }
+        long elapsed = startTime > 0 ? System.nanoTime() - startTime : 0;
+        Throwable failure = completionContext.status() == CompletionContext.Status.FAILED
+                ? completionContext.getThrowable()
+                : serverError(completionContext.getClientResponse());
+        completed(lbResponse.getServer(), elapsed, failure);
+    }
+
+    void started(ServiceInstance instance) {
+        stats(instance).inFlight.incrementAndGet();
+    }
+
+    // Failures count as at least the penalty latency, so an instance that fails fast does not
+    // look like the quickest one.
+    void completed(ServiceInstance instance, long elapsedNanos, Throwable failure) {
+        Stats stats = stats(instance);
+        stats.inFlight.updateAndGet(current -> Math.max(0, current - 1));
+        if (failure != null) {
+            stats.observe(Math.max(elapsedNanos, failurePenaltyNanos));
+            stats.breaker.onError(elapsedNanos, TimeUnit.NANOSECONDS, failure);
+        } else {
+            stats.observe(elapsedNanos);
+            stats.breaker.onSuccess(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    // The instance was chosen, and its breaker permission taken, but the request never ran to an
+    // outcome. Handing the permission back keeps a half-open breaker from running out of probes.
+    void discarded(ServiceInstance instance, boolean started) {
+        Stats stats = stats(instance);
+        if (started) {
+            stats.inFlight.updateAndGet(current -> Math.max(0, current - 1));
+        }
+        stats.breaker.releasePermission();
+    }
+
+    // Drops the statistics, breaker and gauges of every instance that is no longer discovered. The
+    // caching instance supplier hands out the same list until discovery refreshes, so the scan only
+    // runs when the list changes.
+    void retain(List<ServiceInstance> discovered) {
+        if (discovered == lastDiscovered) {
+            return;
+        }
+        lastDiscovered = discovered;
+        Set<String> addresses = new HashSet<>();
+        for (ServiceInstance instance : discovered) {
+            addresses.add(address(instance));
+        }
+        for (Map.Entry<String, Stats> entry : instances.entrySet()) {
+            if (!addresses.contains(entry.getKey()) && instances.remove(entry.getKey(), entry.getValue())) {
+                entry.getValue().unregister();
+            }
+        }
+    }
+
+    // Expected latency of one more request: the decayed average scaled by the queue it joins.
+    double score(ServiceInstance instance) {
+        Stats stats = stats(instance);
+        return stats.cost() * (stats.inFlight.get() + 1);
+    }
+
+    boolean isOpen(ServiceInstance instance) {
+        return stats(instance).breaker.getState() == CircuitBreaker.State.OPEN;
+    }
+
+    boolean tryAcquirePermission(ServiceInstance instance) {
+        return stats(instance).breaker.tryAcquirePermission();
+    }
+
+    CircuitBreaker circuitBreaker(ServiceInstance instance) {
+        return stats(instance).breaker;
+    }
+
+    private Stats stats(ServiceInstance instance) {
+        return instances.computeIfAbsent(address(instance), this::register);
+    }
+
+    private Stats register(String address) {
+        Stats stats = new Stats(circuitBreakerRegistry.circuitBreaker(serviceId + "@" + address, circuitBreakerConfig));
+        stats.gauges.add(Gauge.builder("external.api.instance.latency", stats, s -> s.cost() / 1_000_000)
+                .tag("instance", address)
+                .baseUnit("milliseconds")
+                .register(meterRegistry));
+        stats.gauges.add(Gauge.builder("external.api.instance.in.flight", stats, s -> s.inFlight.get())
+                .tag("instance", address)
+                .register(meterRegistry));
+        return stats;
+    }
+
+    private static String address(ServiceInstance instance) {
+        return instance.getHost() + ":" + instance.getPort();
+    }
+
+    private static Throwable serverError(ResponseData response) {
+        HttpStatusCode status = response != null ? response.getHttpStatus() : null;
+        return status != null && status.is5xxServerError() ? new HttpServerErrorException(status) : null;
+    }
+
+    private final class Stats {
+
+        private final CircuitBreaker breaker;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+
+        private final List<Meter> gauges = new ArrayList<>(2);
+
+        private final Lock lock = new ReentrantLock();
+
+        // Guarded by lock.
+        private double cost;
+
+        private long updated = System.nanoTime();
+
+        private Stats(CircuitBreaker breaker) {
+            this.breaker = breaker;
+        }
+
+        private double cost() {
+            lock.lock();
+            try {
+                return decayed(System.nanoTime());
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Latency spikes are taken at once; improvements are blended in over the decay period.
+        private void observe(long sampleNanos) {
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                double weight = Math.exp(-(now - updated) / decayNanos);
+                cost = sampleNanos > cost ? sampleNanos : cost * weight + sampleNanos * (1 - weight);
+                updated = now;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private double decayed(long now) {
+            return cost * Math.exp(-(now - updated) / decayNanos);
+        }
+
+        private void unregister() {
+            for (Meter gauge : gauges) {
+                meterRegistry.remove(gauge);
+            }
+            circuitBreakerRegistry.remove(breaker.getName());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.javaninja.client;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.DefaultResponse;
+import org.springframework.cloud.client.loadbalancer.EmptyResponse;
+import org.springframework.cloud.client.loadbalancer.Request;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.NoopServiceInstanceListSupplier;
+import org.springframework.cloud.loadbalancer.core.ReactorServiceInstanceLoadBalancer;
+import org.springframework.cloud.loadbalancer.core.SelectedInstanceCallback;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Power-of-two-choices selection: two random instances are compared and the one with the lower
+ * {@link InstanceStatistics#score} wins, which steers load away from slow or busy instances without
+ * the herding of always picking the global minimum. Instances whose circuit breaker is open are
+ * skipped until their wait has elapsed, when the next request is let through as a probe.
+ */
+class LatencyAwareLoadBalancer implements ReactorServiceInstanceLoadBalancer {
+
+    private final ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplier;
+
+    private final InstanceStatistics statistics;
+
+    LatencyAwareLoadBalancer(ObjectProvider<ServiceInstanceListSupplier> serviceInstanceListSupplier,
+                             InstanceStatistics statistics) {
+        this.serviceInstanceListSupplier = serviceInstanceListSupplier;
+        this.statistics = statistics;
+    }
+
+    @Override
+    public Mono<Response<ServiceInstance>> choose(Request request) {
+        ServiceInstanceListSupplier supplier = serviceInstanceListSupplier
+                .getIfAvailable(NoopServiceInstanceListSupplier::new);
+        return supplier.get(request).next().map(instances -> {
+            statistics.retain(instances);
+            Response<ServiceInstance> response = choose(instances);
+            if (supplier instanceof SelectedInstanceCallback callback && response.hasServer()) {
+                callback.selectedServiceInstance(response.getServer());
+            }
+            return response;
+        });
+    }
+
+    Response<ServiceInstance> choose(List<ServiceInstance> instances) {
+        List<ServiceInstance> candidates = new ArrayList<>(instances.size());
+        for (ServiceInstance instance : instances) {
+            if (!statistics.isOpen(instance)) {
+                candidates.add(instance);
+            } else if (statistics.tryAcquirePermission(instance)) {
+                return new DefaultResponse(instance);
+            }
+        }
+        // A half-open breaker may have no probe permits left; drop it and pick again.
+        while (!candidates.isEmpty()) {
+            ServiceInstance chosen = pickTwo(candidates);
+            if (statistics.tryAcquirePermission(chosen)) {
+                return new DefaultResponse(chosen);
+            }
+            candidates.remove(chosen);
+        }
+        return new EmptyResponse();
+    }
+
+    private ServiceInstance pickTwo(List<ServiceInstance> candidates) {
+        int size = candidates.size();
+        if (size == 1) {
+            return candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(size);
+        int second = random.nextInt(size - 1);
+        if (second >= first) {
+            second++;
+        }
+        ServiceInstance a = candidates.get(first);
+        ServiceInstance b = candidates.get(second);
+        return statistics.score(b) < statistics.score(a) ? b : a;
+    }
+}
@@ -0,0 +1,43 @@
+package com.javaninja.client;
+
+import feign.Response;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Opens Feign response bodies as plain streams. Apache HttpClient 5 already inflates compressed
+ * responses, but the JDK HTTP/2 client does not, so any remaining Content-Encoding is undone here.
+ */
+public final class ResponseBodies {
+
+    private ResponseBodies() {
+    }
+
+    public static InputStream open(Response response) throws IOException {
+        InputStream body = response.body().asInputStream();
+        String encoding = contentEncoding(response.headers());
+        if (encoding == null) {
+            return body;
+        }
+        return switch (encoding) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(body);
+            case "deflate" -> new InflaterInputStream(body);
+            default -> body;
+        };
+    }
+
+    private static String contentEncoding(Map<String, Collection<String>> headers) {
+        for (Map.Entry<String, Collection<String>> header : headers.entrySet()) {
+            if ("content-encoding".equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                return header.getValue().iterator().next().trim().toLowerCase(Locale.ROOT);
+            }
+        }
+        return null;
+    }
+}
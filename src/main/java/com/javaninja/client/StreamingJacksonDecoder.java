@@ -0,0 +1,44 @@
+package com.javaninja.client;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import feign.Response;
+import feign.Util;
+import feign.codec.Decoder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Binds response bodies straight from the socket stream into the declared return type. Readers are
+ * resolved once per type, and no intermediate buffer, tree or map is built on the way.
+ */
+public class StreamingJacksonDecoder implements Decoder {
+
+    private final ObjectMapper objectMapper;
+
+    private final Map<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    public StreamingJacksonDecoder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public Object decode(Response response, Type type) throws IOException {
+        if (response.status() == 204 || response.body() == null) {
+            return Util.emptyValueOf(type);
+        }
+        try (InputStream body = ResponseBodies.open(response)) {
+            return readerFor(type).readValue(body);
+        }
+    }
+
+    private ObjectReader readerFor(Type type) {
+        return readers.computeIfAbsent(type, key -> objectMapper.readerFor(objectMapper.constructType(key))
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+    }
+}
@@ -0,0 +1,30 @@
+package com.javaninja.config;
+
+import com.javaninja.client.ExternalApiLoadBalancerConfiguration;
+import com.javaninja.service.ExternalApiProperties;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.io.HttpClientConnectionManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.loadbalancer.annotation.LoadBalancerClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ExternalApiProperties.class)
+@LoadBalancerClient(name = "external-api", configuration = ExternalApiLoadBalancerConfiguration.class)
+public class ExternalApiConfiguration {
+
+    // Publishes httpcomponents.httpclient.pool.* gauges for the pooled Feign transport; the JDK
+    // HTTP/2 transport multiplexes over its own connections and exposes no pool to measure.
+    @Bean
+    public MeterBinder externalApiConnectionPoolMetrics(ObjectProvider<HttpClientConnectionManager> connectionManager) {
+        return registry -> connectionManager.ifAvailable(manager -> {
+            if (manager instanceof PoolingHttpClientConnectionManager pool) {
+                new PoolingHttpClientConnectionManagerMetricsBinder(pool, "external-api").bindTo(registry);
+            }
+        });
+    }
+}
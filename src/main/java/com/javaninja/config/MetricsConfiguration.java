@@ -0,0 +1,18 @@
+package com.javaninja.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+@Configuration
+public class MetricsConfiguration {
+
+    // Replaces Boot's default Jackson converter, which backs off when one is already defined.
+    @Bean
+    public MappingJackson2HttpMessageConverter timedJacksonHttpMessageConverter(ObjectMapper objectMapper,
+                                                                               MeterRegistry meterRegistry) {
+        return new TimedJacksonHttpMessageConverter(objectMapper, meterRegistry);
+    }
+}
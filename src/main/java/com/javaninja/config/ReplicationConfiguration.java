@@ -0,0 +1,46 @@
+package com.javaninja.config;
+
+import com.javaninja.replication.LeaderWriteForwarder;
+import com.javaninja.replication.ReplicationProperties;
+import com.javaninja.replication.UserReplicator;
+import com.javaninja.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+@Configuration
+@ConditionalOnProperty(prefix = "users.replication", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ReplicationProperties.class)
+public class ReplicationConfiguration {
+
+    @Bean(initMethod = "start")
+    public UserReplicator userReplicator(ReplicationProperties properties, UserService userService,
+                                         DiscoveryClient discoveryClient,
+                                         MappingJackson2SmileHttpMessageConverter smileConverter,
+                                         MeterRegistry meterRegistry, Environment environment) {
+        String serviceId = properties.getServiceId() != null
+                ? properties.getServiceId()
+                : environment.getRequiredProperty("spring.application.name");
+        return new UserReplicator(serviceId, properties, userService, discoveryClient,
+                smileConverter.getObjectMapper(), meterRegistry);
+    }
+
+    // Followers relay user writes to the leader; reads are always served locally.
+    @Bean
+    public WebMvcConfigurer replicaWriteForwarding(UserReplicator replicator, ReplicationProperties properties) {
+        LeaderWriteForwarder forwarder = new LeaderWriteForwarder(replicator, properties);
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(forwarder).addPathPatterns("/api/users", "/api/users/**");
+            }
+        };
+    }
+}
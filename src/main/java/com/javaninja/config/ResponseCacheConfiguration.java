@@ -0,0 +1,33 @@
+package com.javaninja.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.javaninja.controller.ResponseBodyCache;
+import com.javaninja.controller.ResponseCacheProperties;
+import com.javaninja.service.ExternalService;
+import com.javaninja.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ResponseCacheProperties.class)
+public class ResponseCacheConfiguration {
+
+    // User writes, snapshot installs and external cache replacements drop the affected bodies right away.
+    @Bean
+    public ResponseBodyCache responseBodyCache(ResponseCacheProperties properties, ObjectMapper objectMapper,
+                                               MeterRegistry meterRegistry, ObjectProvider<UserService> userService,
+                                               ObjectProvider<ExternalService> externalService) {
+        ResponseBodyCache cache = new ResponseBodyCache(properties, objectMapper, meterRegistry);
+        if (cache.isEnabled()) {
+            userService.ifAvailable(users -> {
+                users.addChangeListener(event -> cache.invalidateUser(event.id()));
+                users.addResetListener(sequence -> cache.invalidateUsers());
+            });
+            externalService.ifAvailable(external -> external.addInvalidationListener(cache::invalidate));
+        }
+        return cache;
+    }
+}
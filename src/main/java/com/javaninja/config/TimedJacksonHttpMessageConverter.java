@@ -0,0 +1,71 @@
+package com.javaninja.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson message converter that times reading request bodies and writing response bodies. Writes
+ * stream straight into the response buffer, so a body larger than the buffer also includes the time
+ * spent flushing it to the client.
+ */
+public class TimedJacksonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    private final Timer reads;
+
+    private final Timer writes;
+
+    public TimedJacksonHttpMessageConverter(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        super(objectMapper);
+        this.reads = timer("read", meterRegistry);
+        this.writes = timer("write", meterRegistry);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return super.read(type, contextClass, inputMessage);
+        } finally {
+            reads.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        long start = System.nanoTime();
+        try {
+            return super.readInternal(clazz, inputMessage);
+        } finally {
+            reads.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        long start = System.nanoTime();
+        try {
+            super.writeInternal(object, type, outputMessage);
+        } finally {
+            writes.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static Timer timer(String operation, MeterRegistry meterRegistry) {
+        return Timer.builder("http.json.serialization")
+                .description("Time spent converting HTTP message bodies with Jackson")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(500))
+                .maximumExpectedValue(Duration.ofSeconds(1))
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,28 @@
+package com.javaninja.config;
+
+import com.javaninja.controller.UserChangeStreams;
+import com.javaninja.service.UserChangeFeed;
+import com.javaninja.service.UserChangeFeedProperties;
+import com.javaninja.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(UserChangeFeedProperties.class)
+public class UserChangeFeedConfiguration {
+
+    @Bean
+    public UserChangeFeed userChangeFeed(UserChangeFeedProperties properties, UserService userService) {
+        UserChangeFeed feed = new UserChangeFeed(properties.getCapacity());
+        userService.addChangeFeed(feed);
+        return feed;
+    }
+
+    @Bean
+    public UserChangeStreams userChangeStreams(UserChangeFeed feed, UserChangeFeedProperties properties,
+                                               MeterRegistry meterRegistry) {
+        return new UserChangeStreams(feed, properties, meterRegistry);
+    }
+}
@@ -0,0 +1,20 @@
+package com.javaninja.config;
+
+import com.javaninja.persistence.MappedUserJournal;
+import com.javaninja.persistence.UserJournal;
+import com.javaninja.persistence.UserJournalProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(UserJournalProperties.class)
+public class UserJournalConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "users.journal", name = "enabled", havingValue = "true")
+    public UserJournal userJournal(UserJournalProperties properties) {
+        return new MappedUserJournal(properties);
+    }
+}
@@ -0,0 +1,24 @@
+package com.javaninja.config;
+
+import com.javaninja.service.CompactUserStore;
+import com.javaninja.service.HeapUserStore;
+import com.javaninja.service.UserStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class UserStoreConfiguration {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "users.storage", name = "engine", havingValue = "heap", matchIfMissing = true)
+    public UserStore heapUserStore() {
+        return new HeapUserStore();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "users.storage", name = "engine", havingValue = "compact")
+    public UserStore compactUserStore() {
+        return new CompactUserStore();
+    }
+}
@@ -0,0 +1,76 @@
+package com.javaninja.controller;
+
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.util.List;
+
+/**
+ * Content negotiation shortcuts for endpoints that can answer with ready-made JSON bytes.
+ */
+final class AcceptHeaders {
+
+    static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+
+    private AcceptHeaders() {
+    }
+
+    static boolean prefersJson(String accept) {
+        return MediaType.APPLICATION_JSON.equals(negotiate(accept));
+    }
+
+    // Returns whichever of JSON, CBOR and Smile ranks highest in the caller's Accept header, or null
+    // if it accepts none of them. Types we never produce are skipped, and malformed headers are left
+    // for content negotiation to reject.
+    static MediaType negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        try {
+            List<MediaType> mediaTypes = MediaType.parseMediaTypes(accept);
+            MimeTypeUtils.sortBySpecificity(mediaTypes);
+            for (MediaType mediaType : mediaTypes) {
+                if (mediaType.includes(MediaType.APPLICATION_JSON)) {
+                    return MediaType.APPLICATION_JSON;
+                }
+                if (mediaType.includes(MediaType.APPLICATION_CBOR)) {
+                    return MediaType.APPLICATION_CBOR;
+                }
+                if (mediaType.includes(SMILE)) {
+                    return SMILE;
+                }
+            }
+            return null;
+        } catch (IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim();
+            if ((name.equalsIgnoreCase("gzip") || name.equals("*")) && !isZeroQuality(parts)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isZeroQuality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2)) == 0;
+                } catch (NumberFormatException ex) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,88 @@
+package com.javaninja.controller;
+
+import org.springframework.http.MediaType;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.LongPredicate;
+
+/**
+ * Strong entity tags built from {@code UserService} versions. Since a version is the sequence of
+ * the mutation that produced the data, comparing tags never needs the representation itself.
+ * Representations other than identity-encoded JSON add a suffix after the version, such as
+ * {@code "7-cbor"} or {@code "7-gzip"}, so each one has its own strong tag.
+ */
+final class ETags {
+
+    private static final LongPredicate ANY_VERSION = version -> true;
+
+    private ETags() {
+    }
+
+    static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    // JSON, and a type content negotiation will reject (null), keep the bare version.
+    static String of(long version, MediaType mediaType) {
+        if (MediaType.APPLICATION_CBOR.equalsTypeAndSubtype(mediaType)) {
+            return "\"" + version + "-cbor\"";
+        }
+        if (AcceptHeaders.SMILE.equalsTypeAndSubtype(mediaType)) {
+            return "\"" + version + "-smile\"";
+        }
+        return of(version);
+    }
+
+    static String gzip(String etag) {
+        return etag.substring(0, etag.length() - 1) + "-gzip\"";
+    }
+
+    // If-None-Match uses weak comparison, so W/"7" also matches "7". Every representation of the
+    // current version matches; the matching tag is returned for the 304, or null if there is none.
+    static String notModified(String ifNoneMatch, long version) {
+        if (ifNoneMatch == null) {
+            return null;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*")) {
+                return of(version);
+            }
+            String strong = tag.startsWith("W/") ? tag.substring(2) : tag;
+            if (versionOf(strong) == version) {
+                return strong;
+            }
+        }
+        return null;
+    }
+
+    // If-Match uses strong comparison; weak or malformed tags never match.
+    static LongPredicate ifMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return ANY_VERSION;
+        }
+        Set<Long> versions = new HashSet<>();
+        for (String candidate : ifMatch.split(",")) {
+            long version = versionOf(candidate.trim());
+            if (version >= 0) {
+                versions.add(version);
+            }
+        }
+        return versions::contains;
+    }
+
+    // Returns the version of one of our strong tags, or -1 for anything else.
+    private static long versionOf(String tag) {
+        if (tag.length() <= 2 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            return -1;
+        }
+        String value = tag.substring(1, tag.length() - 1);
+        int suffix = value.indexOf('-');
+        try {
+            return Long.parseLong(suffix < 0 ? value : value.substring(0, suffix));
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+}
@@ -1,11 +1,16 @@
 package com.javaninja.controller;
 
+import com.javaninja.model.ExternalUser;
+import com.javaninja.model.Post;
 import com.javaninja.service.ExternalService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/external")
@@ -13,21 +18,68 @@ public class ExternalController {
     
     private final ExternalService externalService;
     
+    private final ResponseBodyCache responseBodies;
+    
     @Autowired
-    public ExternalController(ExternalService externalService) {
+    public ExternalController(ExternalService externalService, ResponseBodyCache responseBodies) {
         this.externalService = externalService;
+        this.responseBodies = responseBodies;
     }
     
     @GetMapping("/posts/{id}")
-    public ResponseEntity<Map<String, Object>> getPost(@PathVariable Long id) {
-        Map<String, Object> post = externalService.getPost(id);
-        return ResponseEntity.ok(post);
+    public CompletableFuture<ResponseEntity<?>> getPost(@PathVariable Long id,
+                                                        @RequestHeader(value = HttpHeaders.ACCEPT, required = false)
+                                                        String accept,
+                                                        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+                                                        String acceptEncoding) {
+        boolean json = AcceptHeaders.prefersJson(accept);
+        if (externalService.isPassThrough() && json) {
+            return externalService.relayPostAsync(id).thenApply(ExternalController::relayed);
+        }
+        if (responseBodies.isEnabled() && json) {
+            return externalService.getPostAsync(id).thenApply(post -> responseBodies.external(post, acceptEncoding));
+        }
+        return externalService.getPostAsync(id).thenApply(ExternalController::negotiated);
+    }
+    
+    @GetMapping("/posts")
+    public CompletableFuture<ResponseEntity<List<Post>>> getPosts(@RequestParam("id") List<Long> ids) {
+        return externalService.getPostsAsync(ids).thenApply(ResponseEntity::ok);
     }
     
     @GetMapping("/users/{id}")
-    public ResponseEntity<Map<String, Object>> getExternalUser(@PathVariable Long id) {
-        Map<String, Object> user = externalService.getExternalUser(id);
-        return ResponseEntity.ok(user);
+    public CompletableFuture<ResponseEntity<?>> getExternalUser(@PathVariable Long id,
+                                                                @RequestHeader(value = HttpHeaders.ACCEPT, required = false)
+                                                                String accept,
+                                                                @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+                                                                String acceptEncoding) {
+        boolean json = AcceptHeaders.prefersJson(accept);
+        if (externalService.isPassThrough() && json) {
+            return externalService.relayExternalUserAsync(id).thenApply(ExternalController::relayed);
+        }
+        if (responseBodies.isEnabled() && json) {
+            return externalService.getExternalUserAsync(id).thenApply(user -> responseBodies.external(user, acceptEncoding));
+        }
+        return externalService.getExternalUserAsync(id).thenApply(ExternalController::negotiated);
+    }
+    
+    @GetMapping("/users")
+    public CompletableFuture<ResponseEntity<List<ExternalUser>>> getExternalUsers(@RequestParam("id") List<Long> ids) {
+        return externalService.getExternalUsersAsync(ids).thenApply(ResponseEntity::ok);
+    }
+    
+    // The Accept header picks between relayed or cached JSON bytes and the message converters, so
+    // every answer varies by it.
+    private static ResponseEntity<?> relayed(byte[] body) {
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(body);
+    }
+    
+    private static ResponseEntity<?> negotiated(Object body) {
+        return ResponseEntity.ok()
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(body);
     }
 }
-
@@ -0,0 +1,113 @@
+package com.javaninja.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.javaninja.model.ReplicaStatus;
+import com.javaninja.model.UserEvent;
+import com.javaninja.model.UserEventBatch;
+import com.javaninja.replication.ReplicationProperties;
+import com.javaninja.replication.UserReplicator;
+import com.javaninja.service.SequenceExpiredException;
+import com.javaninja.service.UserChangeFeed;
+import com.javaninja.service.UserService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Endpoints replicas call on each other. Events and snapshots are Smile, gzipped when the caller
+ * accepts it; every answer names the replica that gave it.
+ */
+@RestController
+@RequestMapping("/internal/replication")
+@ConditionalOnProperty(prefix = "users.replication", name = "enabled", havingValue = "true")
+public class ReplicationController {
+    
+    static final int MAX_BATCH_SIZE = 10_000;
+    
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+    
+    private final UserReplicator replicator;
+    
+    private final UserService userService;
+    
+    private final UserChangeFeed changeFeed;
+    
+    private final ObjectWriter smileWriter;
+    
+    private final Duration pollTimeout;
+    
+    public ReplicationController(UserReplicator replicator, UserService userService, UserChangeFeed changeFeed,
+                                 MappingJackson2SmileHttpMessageConverter smileConverter,
+                                 ReplicationProperties properties) {
+        this.replicator = replicator;
+        this.userService = userService;
+        this.changeFeed = changeFeed;
+        this.smileWriter = smileConverter.getObjectMapper().writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        this.pollTimeout = properties.getPollTimeout();
+    }
+    
+    @ModelAttribute
+    public void identify(HttpServletResponse response) {
+        response.setHeader(UserReplicator.NODE_HEADER, replicator.getNode());
+    }
+    
+    @GetMapping("/status")
+    public ReplicaStatus status() {
+        return replicator.status();
+    }
+    
+    // Long poll: with nothing after the given sequence yet, the request waits up to poll-timeout.
+    @GetMapping("/events")
+    public ResponseEntity<StreamingResponseBody> events(@RequestParam long after,
+                                                        @RequestParam(defaultValue = "1000") int limit,
+                                                        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING,
+                                                                required = false) String acceptEncoding)
+            throws InterruptedException {
+        changeFeed.read(after, 0);
+        changeFeed.await(after, pollTimeout);
+        List<UserEvent> events = changeFeed.read(after, Math.max(1, Math.min(limit, MAX_BATCH_SIZE)));
+        return encoded(new UserEventBatch(changeFeed.getLastSequence(), events), acceptEncoding);
+    }
+    
+    @GetMapping("/snapshot")
+    public ResponseEntity<StreamingResponseBody> snapshot(@RequestHeader(value = HttpHeaders.ACCEPT_ENCODING,
+                                                                  required = false) String acceptEncoding) {
+        return encoded(userService.exportSnapshot(), acceptEncoding);
+    }
+    
+    private ResponseEntity<StreamingResponseBody> encoded(Object value, String acceptEncoding) {
+        boolean gzip = AcceptHeaders.acceptsGzip(acceptEncoding);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(SMILE);
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(out -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(out, 8192);
+                smileWriter.writeValue(compressed, value);
+                compressed.finish();
+            } else {
+                smileWriter.writeValue(out, value);
+            }
+        });
+    }
+    
+    @ExceptionHandler(SequenceExpiredException.class)
+    public ResponseEntity<String> handleSequenceExpired(SequenceExpiredException ex) {
+        return ResponseEntity.status(HttpStatus.GONE)
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(ex.getMessage());
+    }
+}
@@ -0,0 +1,165 @@
+package com.javaninja.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.javaninja.model.ExternalResource;
+import com.javaninja.model.ExternalUser;
+import com.javaninja.model.Post;
+import com.javaninja.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Ready-made JSON bodies for hot GET endpoints, so repeat reads of an unchanged resource skip Jackson
+ * and, for large bodies, gzip as well. Each body remembers the tag it was built from (a user or
+ * store version, or the external resource itself), and a lookup with any other tag rebuilds it, so
+ * a stale body is never served while an invalidation is still in flight. Invalidations only free
+ * memory early. A gzipped body is tagged apart from the identity body. Every response varies by
+ * Accept, since callers only come here once negotiation picked JSON, and by Accept-Encoding, since
+ * whether a body is gzipped depends on its size.
+ */
+public class ResponseBodyCache {
+
+    private static final Key USER_LIST = new Key(Kind.USER_LIST, 0);
+
+    private final boolean enabled;
+
+    private final ObjectMapper objectMapper;
+
+    private final int gzipMinSize;
+
+    private final Cache<Key, Body> bodies;
+
+    private final Counter hits;
+
+    private final Counter misses;
+
+    public ResponseBodyCache(ResponseCacheProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.enabled = properties.isEnabled();
+        this.objectMapper = objectMapper;
+        this.gzipMinSize = (int) properties.getGzipMinSize().toBytes();
+        this.bodies = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaximumSize().toBytes())
+                .weigher((Key key, Body body) -> body.size())
+                .build();
+        this.hits = lookups("hit", meterRegistry);
+        this.misses = lookups("miss", meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void invalidateUser(long id) {
+        bodies.invalidate(new Key(Kind.USER, id));
+        bodies.invalidate(USER_LIST);
+    }
+
+    public void invalidateUsers() {
+        bodies.asMap().keySet().removeIf(key -> key.kind() == Kind.USER || key.kind() == Kind.USER_LIST);
+    }
+
+    public void invalidate(ExternalResource resource) {
+        if (resource instanceof Post post && post.id() != null) {
+            bodies.invalidate(new Key(Kind.POST, post.id()));
+        } else if (resource instanceof ExternalUser user && user.id() != null) {
+            bodies.invalidate(new Key(Kind.EXTERNAL_USER, user.id()));
+        }
+    }
+
+    ResponseEntity<byte[]> user(User user, String acceptEncoding) {
+        return respond(new Key(Kind.USER, user.getId()), user.getVersion(), ETags.of(user.getVersion()),
+                () -> user, acceptEncoding);
+    }
+
+    // The list is only built on a miss; an unchanged store is answered from the cached bytes.
+    ResponseEntity<byte[]> users(long version, Supplier<List<User>> users, String acceptEncoding) {
+        return respond(USER_LIST, version, ETags.of(version), users, acceptEncoding);
+    }
+
+    ResponseEntity<byte[]> external(ExternalResource resource, String acceptEncoding) {
+        Kind kind = resource instanceof Post ? Kind.POST : Kind.EXTERNAL_USER;
+        return respond(new Key(kind, resource.id()), resource, null, () -> resource, acceptEncoding);
+    }
+
+    // The etag may be null for resources that have no version to tag them with.
+    private ResponseEntity<byte[]> respond(Key key, Object tag, String etag, Supplier<?> value,
+                                           String acceptEncoding) {
+        Body body = bodies.getIfPresent(key);
+        if (body != null && body.tag().equals(tag)) {
+            hits.increment();
+        } else {
+            misses.increment();
+            body = serialize(tag, value.get());
+            bodies.put(key, body);
+        }
+        boolean gzipped = body.gzip() != null && AcceptHeaders.acceptsGzip(acceptEncoding);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        if (etag != null) {
+            response.eTag(gzipped ? ETags.gzip(etag) : etag);
+        }
+        if (gzipped) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(body.gzip());
+        }
+        return response.body(body.json());
+    }
+
+    private Body serialize(Object tag, Object value) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Could not serialize response body", ex);
+        }
+        byte[] gzip = json.length >= gzipMinSize ? gzip(json) : null;
+        return new Body(tag, json, gzip != null && gzip.length < json.length ? gzip : null);
+    }
+
+    private static byte[] gzip(byte[] json) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return out.toByteArray();
+    }
+
+    private static Counter lookups(String result, MeterRegistry meterRegistry) {
+        return Counter.builder("http.response.cache.lookups")
+                .description("Pre-serialized response body lookups, by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    enum Kind {
+        USER,
+        USER_LIST,
+        POST,
+        EXTERNAL_USER
+    }
+
+    private record Key(Kind kind, long id) {
+    }
+
+    private record Body(Object tag, byte[] json, byte[] gzip) {
+
+        int size() {
+            return json.length + (gzip == null ? 0 : gzip.length);
+        }
+    }
+}
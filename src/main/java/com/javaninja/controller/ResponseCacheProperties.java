@@ -0,0 +1,40 @@
+package com.javaninja.controller;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@ConfigurationProperties(prefix = "response-cache")
+public class ResponseCacheProperties {
+
+    private boolean enabled = true;
+
+    // Bounds plain and gzipped copies together.
+    private DataSize maximumSize = DataSize.ofMegabytes(64);
+
+    // Bodies at least this large also keep a gzipped copy.
+    private DataSize gzipMinSize = DataSize.ofKilobytes(2);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public DataSize getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(DataSize maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public DataSize getGzipMinSize() {
+        return gzipMinSize;
+    }
+
+    public void setGzipMinSize(DataSize gzipMinSize) {
+        this.gzipMinSize = gzipMinSize;
+    }
+}
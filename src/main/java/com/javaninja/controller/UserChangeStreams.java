@@ -0,0 +1,154 @@
+package com.javaninja.controller;
+
+import com.javaninja.model.UserEvent;
+import com.javaninja.service.SequenceExpiredException;
+import com.javaninja.service.UserChangeFeed;
+import com.javaninja.service.UserChangeFeedProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter.DataWithMediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves the {@link UserChangeFeed} as Server-Sent Events. Every subscriber has its own thread that
+ * pulls from its own cursor and blocks on the socket, so a slow client only slows itself down. One
+ * that falls further behind than the feed retains gets a {@code reset} event carrying the current
+ * sequence, and its stream ends.
+ */
+public class UserChangeStreams implements AutoCloseable {
+
+    static final String RESET = "reset";
+
+    private final UserChangeFeed feed;
+
+    private final int batchSize;
+
+    private final Duration heartbeatInterval;
+
+    private final long timeoutMillis;
+
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    private final Counter resets;
+
+    public UserChangeStreams(UserChangeFeed feed, UserChangeFeedProperties properties, MeterRegistry meterRegistry) {
+        this.feed = feed;
+        this.batchSize = Math.max(1, properties.getBatchSize());
+        this.heartbeatInterval = properties.getHeartbeatInterval();
+        this.timeoutMillis = properties.getTimeout().toMillis();
+        // No queue: a subscriber beyond the limit is rejected instead of waiting for a thread.
+        this.executor = new ThreadPoolExecutor(0, properties.getMaxSubscribers(), 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "user-changes");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Gauge.builder("users.changes.subscribers", subscribers, AtomicInteger::get)
+                .description("Open user change streams")
+                .register(meterRegistry);
+        this.resets = Counter.builder("users.changes.resets")
+                .description("Change streams ended because the subscriber fell behind the feed")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a stream of the changes after the given sequence.
+     *
+     * @throws SequenceExpiredException if those changes are no longer retained
+     * @throws java.util.concurrent.RejectedExecutionException if every subscriber slot is taken
+     */
+    SseEmitter open(long since) {
+        feed.read(since, 0);
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscription subscription = new Subscription(emitter, since);
+        emitter.onCompletion(subscription::close);
+        emitter.onError(error -> subscription.close());
+        emitter.onTimeout(() -> {
+            subscription.close();
+            emitter.complete();
+        });
+        executor.execute(subscription);
+        return emitter;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private final class Subscription implements Runnable {
+
+        private final SseEmitter emitter;
+
+        private long cursor;
+
+        private volatile boolean closed;
+
+        Subscription(SseEmitter emitter, long since) {
+            this.emitter = emitter;
+            this.cursor = since;
+        }
+
+        void close() {
+            closed = true;
+        }
+
+        @Override
+        public void run() {
+            subscribers.incrementAndGet();
+            try {
+                while (!closed) {
+                    List<UserEvent> events;
+                    try {
+                        events = feed.read(cursor, batchSize);
+                    } catch (SequenceExpiredException ex) {
+                        resets.increment();
+                        emitter.send(SseEmitter.event().name(RESET).data(ex.getLastSequence()));
+                        emitter.complete();
+                        return;
+                    }
+                    if (events.isEmpty()) {
+                        if (!feed.await(cursor, heartbeatInterval) && !closed) {
+                            // Keeps proxies from closing an idle stream and detects clients that left.
+                            emitter.send(SseEmitter.event().comment("heartbeat"));
+                        }
+                        continue;
+                    }
+                    // A whole batch goes out in one write and one flush.
+                    Set<DataWithMediaType> frames = new LinkedHashSet<>();
+                    for (UserEvent event : events) {
+                        frames.addAll(SseEmitter.event()
+                                .id(Long.toString(event.sequence()))
+                                .name(event.type().name().toLowerCase(Locale.ROOT))
+                                .data(event, MediaType.APPLICATION_JSON)
+                                .build());
+                    }
+                    emitter.send(frames);
+                    cursor = events.get(events.size() - 1).sequence();
+                }
+            } catch (IOException | IllegalStateException ex) {
+                // The client went away or the stream already ended.
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                emitter.complete();
+            } finally {
+                subscribers.decrementAndGet();
+            }
+        }
+    }
+}
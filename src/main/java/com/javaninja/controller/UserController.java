@@ -1,62 +1,338 @@
 package com.javaninja.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.javaninja.model.BatchItemResult;
 import com.javaninja.model.User;
+import com.javaninja.model.UserPage;
+import com.javaninja.service.DuplicateEmailException;
+import com.javaninja.service.SequenceExpiredException;
 import com.javaninja.service.UserService;
+import com.javaninja.service.UserTooLargeException;
+import com.javaninja.service.VersionMismatchException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/users")
 public class UserController {
     
+    static final int MAX_PAGE_SIZE = 1000;
+    
+    static final int DEFAULT_PAGE_SIZE = 100;
+    
+    static final int NDJSON_CHUNK_SIZE = 10_000;
+    
     private final UserService userService;
     
+    private final ObjectMapper objectMapper;
+    
+    private final ResponseBodyCache responseBodies;
+    
+    private final UserChangeStreams changeStreams;
+    
+    private final Counter notModified;
+    
+    private final Counter preconditionFailed;
+    
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, ObjectMapper objectMapper, ResponseBodyCache responseBodies,
+                          UserChangeStreams changeStreams, MeterRegistry meterRegistry) {
         this.userService = userService;
+        this.objectMapper = objectMapper;
+        this.responseBodies = responseBodies;
+        this.changeStreams = changeStreams;
+        this.notModified = conditionalRequests("not_modified", meterRegistry);
+        this.preconditionFailed = conditionalRequests("precondition_failed", meterRegistry);
     }
     
+    // Collection reads are tagged with the store version, taken before the data so the tag is
+    // never newer than the body; an unchanged store answers 304 without building the list.
     @GetMapping
-    public ResponseEntity<List<User>> getAllUsers() {
+    public ResponseEntity<?> getAllUsers(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        long version = userService.getVersion();
+        String matched = ETags.notModified(ifNoneMatch, version);
+        if (matched != null) {
+            return notModified(matched, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        }
+        MediaType mediaType = AcceptHeaders.negotiate(accept);
+        if (responseBodies.isEnabled() && MediaType.APPLICATION_JSON.equals(mediaType)) {
+            return responseBodies.users(version, userService::getAllUsers, acceptEncoding);
+        }
         List<User> users = userService.getAllUsers();
+        return negotiated(mediaType).eTag(ETags.of(version, mediaType)).body(users);
+    }
+    
+    @GetMapping(params = {"limit", "!email", "!namePrefix"})
+    public ResponseEntity<UserPage> getUsersPage(@RequestParam(defaultValue = "0") long after,
+                                                 @RequestParam int limit,
+                                                 @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                 String ifNoneMatch,
+                                                 @RequestHeader(value = HttpHeaders.ACCEPT, required = false)
+                                                 String accept) {
+        long version = userService.getVersion();
+        String matched = ETags.notModified(ifNoneMatch, version);
+        if (matched != null) {
+            return notModified(matched, HttpHeaders.ACCEPT);
+        }
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<User> users = userService.getUsersAfter(after, pageSize);
+        Long nextAfter = users.size() == pageSize ? users.get(users.size() - 1).getId() : null;
+        MediaType mediaType = AcceptHeaders.negotiate(accept);
+        return negotiated(mediaType).eTag(ETags.of(version, mediaType)).body(new UserPage(users, nextAfter));
+    }
+    
+    // A cursor without a limit is still a page request; it must not fall through to the full list.
+    @GetMapping(params = {"after", "!limit", "!email", "!namePrefix"})
+    public ResponseEntity<UserPage> getUsersPageAfter(@RequestParam long after,
+                                                      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                                      String ifNoneMatch,
+                                                      @RequestHeader(value = HttpHeaders.ACCEPT, required = false)
+                                                      String accept) {
+        return getUsersPage(after, DEFAULT_PAGE_SIZE, ifNoneMatch, accept);
+    }
+    
+    @GetMapping(value = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamUsers() {
+        ObjectWriter userWriter = objectMapper.writerFor(User.class)
+                .withRootValueSeparator("\n")
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        StreamingResponseBody body = out -> {
+            boolean written = false;
+            try (Stream<User> users = userService.streamUsers();
+                 SequenceWriter writer = userWriter.writeValues(out)) {
+                Iterator<User> iterator = users.iterator();
+                while (iterator.hasNext()) {
+                    writer.write(iterator.next());
+                    written = true;
+                }
+            }
+            if (written) {
+                out.write('\n');
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+    
+    // Sequences match store versions, so a client can take the ETag of a full read as its starting
+    // point. A reconnecting EventSource sends Last-Event-ID, which takes precedence over the original
+    // since; with neither the stream starts at the current version.
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(required = false) Long since,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        long from = lastEventId != null ? lastEventId : since != null ? since : userService.getVersion();
+        return changeStreams.open(from);
+    }
+    
+    @GetMapping(params = {"email", "!namePrefix"})
+    public ResponseEntity<List<User>> getUsersByEmail(@RequestParam String email) {
+        List<User> users = userService.getUserByEmail(email)
+                .map(List::of)
+                .orElse(List.of());
         return ResponseEntity.ok(users);
     }
     
+    @GetMapping(params = {"namePrefix", "!email"})
+    public ResponseEntity<List<User>> getUsersByNamePrefix(@RequestParam String namePrefix,
+                                                           @RequestParam(defaultValue = "100") int limit) {
+        List<User> users = userService.getUsersByNamePrefix(namePrefix, limit);
+        return ResponseEntity.ok(users);
+    }
+    
+    // Without this mapping the combination would match no lookup and fall through to the full list.
+    @GetMapping(params = {"email", "namePrefix"})
+    public ResponseEntity<String> rejectEmailWithNamePrefix() {
+        return ResponseEntity.badRequest().body("Search by either email or namePrefix, not both");
+    }
+    
     @GetMapping("/{id}")
-    public ResponseEntity<User> getUserById(@PathVariable Long id) {
+    public ResponseEntity<?> getUserById(@PathVariable Long id,
+                                         @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false)
+                                         String ifNoneMatch,
+                                         @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                         @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false)
+                                         String acceptEncoding) {
         Optional<User> user = userService.getUserById(id);
-        return user.map(ResponseEntity::ok)
+        String matched = user.map(found -> ETags.notModified(ifNoneMatch, found.getVersion())).orElse(null);
+        if (matched != null) {
+            return notModified(matched, HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        }
+        MediaType mediaType = AcceptHeaders.negotiate(accept);
+        if (user.isPresent() && responseBodies.isEnabled() && MediaType.APPLICATION_JSON.equals(mediaType)) {
+            return responseBodies.user(user.get(), acceptEncoding);
+        }
+        return user.map(found -> negotiated(mediaType).eTag(ETags.of(found.getVersion(), mediaType)).body(found))
                   .orElse(ResponseEntity.notFound().build());
     }
     
     @PostMapping
     public ResponseEntity<User> createUser(@RequestBody User user) {
         User createdUser = userService.createUser(user);
-        return ResponseEntity.status(HttpStatus.CREATED).body(createdUser);
+        return ResponseEntity.status(HttpStatus.CREATED).eTag(ETags.of(createdUser.getVersion())).body(createdUser);
     }
     
     @PutMapping("/{id}")
-    public ResponseEntity<User> updateUser(@PathVariable Long id, @RequestBody User user) {
-        Optional<User> updatedUser = userService.updateUser(id, user);
-        return updatedUser.map(ResponseEntity::ok)
+    public ResponseEntity<User> updateUser(@PathVariable Long id, @RequestBody User user,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                           String ifMatch) {
+        Optional<User> updatedUser = userService.updateUser(id, user, ETags.ifMatch(ifMatch));
+        return updatedUser.map(UserController::tagged)
                          .orElse(ResponseEntity.notFound().build());
     }
     
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
-        boolean deleted = userService.deleteUser(id);
+    public ResponseEntity<Void> deleteUser(@PathVariable Long id,
+                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                           String ifMatch) {
+        boolean deleted = userService.deleteUser(id, ETags.ifMatch(ifMatch));
         return deleted ? ResponseEntity.noContent().build() 
                       : ResponseEntity.notFound().build();
     }
     
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<BatchItemResult>> createUsers(@RequestBody List<User> users) {
+        return ResponseEntity.ok(userService.createUsers(users));
+    }
+    
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<List<BatchItemResult>> createUsersFromNdjson(InputStream body) throws IOException {
+        return ResponseEntity.ok(applyInChunks(body, User.class, userService::createUsers));
+    }
+    
+    @PutMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<BatchItemResult>> updateUsers(@RequestBody List<User> users) {
+        return ResponseEntity.ok(userService.updateUsers(users));
+    }
+    
+    @PutMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<List<BatchItemResult>> updateUsersFromNdjson(InputStream body) throws IOException {
+        return ResponseEntity.ok(applyInChunks(body, User.class, userService::updateUsers));
+    }
+    
+    @DeleteMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<BatchItemResult>> deleteUsers(@RequestBody List<Long> ids) {
+        return ResponseEntity.ok(userService.deleteUsers(ids));
+    }
+    
+    @DeleteMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<List<BatchItemResult>> deleteUsersFromNdjson(InputStream body) throws IOException {
+        return ResponseEntity.ok(applyInChunks(body, Long.class, userService::deleteUsers));
+    }
+    
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("User service is healthy!");
     }
+    
+    private static ResponseEntity<User> tagged(User user) {
+        return ResponseEntity.ok().eTag(ETags.of(user.getVersion())).body(user);
+    }
+    
+    // Sets the content type negotiation would pick, so the tag always names the body that is sent.
+    // A null type is left for content negotiation to reject.
+    private static ResponseEntity.BodyBuilder negotiated(MediaType mediaType) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().varyBy(HttpHeaders.ACCEPT);
+        return mediaType == null ? response : response.contentType(mediaType);
+    }
+    
+    // A 304 repeats the Vary header the full response would have carried.
+    private <T> ResponseEntity<T> notModified(String etag, String... varyBy) {
+        notModified.increment();
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(varyBy).build();
+    }
+    
+    private static Counter conditionalRequests(String result, MeterRegistry meterRegistry) {
+        return Counter.builder("users.conditional.requests")
+                .description("Conditional user requests answered from the ETag alone, by result")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+    
+    // Large NDJSON imports are applied in bounded chunks so a single request
+    // never holds the user store's write lock for the whole upload.
+    private <T> List<BatchItemResult> applyInChunks(InputStream body, Class<T> type,
+                                                    Function<List<T>, List<BatchItemResult>> apply) throws IOException {
+        List<BatchItemResult> results = new ArrayList<>();
+        List<T> chunk = new ArrayList<>();
+        try (MappingIterator<T> items = objectMapper.readerFor(type).readValues(body)) {
+            while (items.hasNextValue()) {
+                chunk.add(items.nextValue());
+                if (chunk.size() == NDJSON_CHUNK_SIZE) {
+                    results.addAll(apply.apply(chunk));
+                    chunk = new ArrayList<>();
+                }
+            }
+        }
+        if (!chunk.isEmpty()) {
+            results.addAll(apply.apply(chunk));
+        }
+        return results;
+    }
+    
+    @ExceptionHandler(DuplicateEmailException.class)
+    public ResponseEntity<String> handleDuplicateEmail(DuplicateEmailException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+    }
+    
+    @ExceptionHandler(UserTooLargeException.class)
+    public ResponseEntity<String> handleUserTooLarge(UserTooLargeException ex) {
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(ex.getMessage());
+    }
+    
+    @ExceptionHandler(VersionMismatchException.class)
+    public ResponseEntity<String> handleVersionMismatch(VersionMismatchException ex) {
+        preconditionFailed.increment();
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .eTag(ETags.of(ex.getCurrentVersion()))
+                .body(ex.getMessage());
+    }
+    
+    @ExceptionHandler(SequenceExpiredException.class)
+    public ResponseEntity<String> handleSequenceExpired(SequenceExpiredException ex) {
+        return ResponseEntity.status(HttpStatus.GONE)
+                .eTag(ETags.of(ex.getLastSequence()))
+                .contentType(MediaType.TEXT_PLAIN)
+                .body(ex.getMessage());
+    }
+    
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> handleTooManySubscribers(RejectedExecutionException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .contentType(MediaType.TEXT_PLAIN)
+                .body("Too many open change streams");
+    }
+    
+    @ExceptionHandler(JsonProcessingException.class)
+    public ResponseEntity<String> handleMalformedBody(JsonProcessingException ex) {
+        return ResponseEntity.badRequest().body(ex.getOriginalMessage());
+    }
 }
-
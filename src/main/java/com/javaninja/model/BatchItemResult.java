@@ -0,0 +1,28 @@
+package com.javaninja.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchItemResult(
+        @JsonProperty("id") Long id,
+        @JsonProperty("status") Status status,
+        @JsonProperty("error") String error) {
+
+    public enum Status {
+        CREATED,
+        UPDATED,
+        DELETED,
+        NOT_FOUND,
+        CONFLICT,
+        INVALID
+    }
+
+    public static BatchItemResult of(Long id, Status status) {
+        return new BatchItemResult(id, status, null);
+    }
+
+    public static BatchItemResult failed(Long id, Status status, String error) {
+        return new BatchItemResult(id, status, error);
+    }
+}
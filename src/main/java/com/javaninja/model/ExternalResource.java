@@ -0,0 +1,9 @@
+package com.javaninja.model;
+
+/**
+ * A resource fetched from the external API, identified by its upstream id.
+ */
+public interface ExternalResource {
+
+    Long id();
+}
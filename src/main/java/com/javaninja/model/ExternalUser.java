@@ -0,0 +1,25 @@
+package com.javaninja.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ExternalUser(
+        @JsonProperty("id") Long id,
+        @JsonProperty("name") String name,
+        @JsonProperty("username") String username,
+        @JsonProperty("email") String email,
+        @JsonProperty("phone") String phone,
+        @JsonProperty("website") String website,
+        @JsonProperty("error") String error) implements ExternalResource {
+
+    public ExternalUser(Long id, String name, String email) {
+        this(id, name, null, email, null, null, null);
+    }
+
+    public ExternalUser withId(Long id) {
+        return new ExternalUser(id, name, username, email, phone, website, error);
+    }
+}
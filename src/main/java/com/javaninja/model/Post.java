@@ -0,0 +1,23 @@
+package com.javaninja.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record Post(
+        @JsonProperty("id") Long id,
+        @JsonProperty("userId") Long userId,
+        @JsonProperty("title") String title,
+        @JsonProperty("body") String body,
+        @JsonProperty("error") String error) implements ExternalResource {
+
+    public Post(Long id, Long userId, String title, String body) {
+        this(id, userId, title, body, null);
+    }
+
+    public Post withId(Long id) {
+        return new Post(id, userId, title, body, error);
+    }
+}
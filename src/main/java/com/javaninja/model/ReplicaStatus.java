@@ -0,0 +1,12 @@
+package com.javaninja.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ReplicaStatus(
+        @JsonProperty("node") String node,
+        @JsonProperty("startedAt") long startedAt,
+        @JsonProperty("sequence") long sequence,
+        @JsonProperty("leader") String leader) {
+}
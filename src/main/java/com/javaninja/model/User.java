@@ -1,5 +1,6 @@
 package com.javaninja.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 public class User {
@@ -13,6 +14,10 @@ public class User {
     @JsonProperty("email")
     private String email;
     
+    // Sequence of the mutation that produced this state; clients only see it as the ETag.
+    @JsonIgnore
+    private long version;
+    
     public User() {}
     
     public User(Long id, String name, String email) {
@@ -45,6 +50,14 @@ public class User {
         this.email = email;
     }
     
+    public long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(long version) {
+        this.version = version;
+    }
+    
     @Override
     public String toString() {
         return "User{" +
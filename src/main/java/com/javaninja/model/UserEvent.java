@@ -0,0 +1,35 @@
+package com.javaninja.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserEvent(
+        @JsonProperty("sequence") long sequence,
+        @JsonProperty("type") Type type,
+        @JsonProperty("id") long id,
+        @JsonProperty("name") String name,
+        @JsonProperty("email") String email) {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    public static UserEvent created(long sequence, User user) {
+        return new UserEvent(sequence, Type.CREATED, user.getId(), user.getName(), user.getEmail());
+    }
+
+    public static UserEvent updated(long sequence, User user) {
+        return new UserEvent(sequence, Type.UPDATED, user.getId(), user.getName(), user.getEmail());
+    }
+
+    public static UserEvent deleted(long sequence, long id) {
+        return new UserEvent(sequence, Type.DELETED, id, null, null);
+    }
+
+    public User toUser() {
+        return new User(id, name, email);
+    }
+}
@@ -0,0 +1,10 @@
+package com.javaninja.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public record UserEventBatch(
+        @JsonProperty("lastSequence") long lastSequence,
+        @JsonProperty("events") List<UserEvent> events) {
+}
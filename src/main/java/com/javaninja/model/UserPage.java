@@ -0,0 +1,10 @@
+package com.javaninja.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public record UserPage(
+        @JsonProperty("users") List<User> users,
+        @JsonProperty("nextAfter") Long nextAfter) {
+}
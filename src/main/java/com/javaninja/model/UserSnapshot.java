@@ -0,0 +1,14 @@
+package com.javaninja.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+/**
+ * Every user as of {@code sequence}, listed as CREATED events whose sequence is the user's version.
+ */
+public record UserSnapshot(
+        @JsonProperty("sequence") long sequence,
+        @JsonProperty("lastId") long lastId,
+        @JsonProperty("users") List<UserEvent> users) {
+}
@@ -0,0 +1,656 @@
+package com.javaninja.persistence;
+
+import com.javaninja.model.User;
+import com.javaninja.model.UserEvent;
+import com.javaninja.persistence.UserJournalProperties.FsyncPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Append-only journal of user events stored in memory-mapped segment files, plus periodic
+ * snapshots so that startup only replays the events written since the last snapshot.
+ *
+ * <p>Segment records are laid out as {@code [int length][int crc32c][payload]}; a zero length marks
+ * the end of the written region. Durability is tracked with byte tickets: appends return the
+ * logical end offset of their record and a single flusher thread forces everything written so far,
+ * so concurrent writers waiting in {@link #awaitDurable(long)} share one fsync.
+ */
+public class MappedUserJournal implements UserJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(MappedUserJournal.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+
+    private static final int SNAPSHOT_MAGIC = 0x55534E56;
+    // Snapshots written before user versions were stored; their users replay at the snapshot sequence.
+    private static final int UNVERSIONED_SNAPSHOT_MAGIC = 0x55534E50;
+
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private static final UserEvent.Type[] TYPES = UserEvent.Type.values();
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final FsyncPolicy fsyncPolicy;
+
+    private final long flushIntervalNanos;
+
+    private final long snapshotEvery;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition flushRequested = lock.newCondition();
+
+    private final Condition durableAdvanced = lock.newCondition();
+
+    private final CRC32C appendChecksum = new CRC32C();
+
+    private final ExecutorService snapshotExecutor;
+
+    private final Thread flusher;
+
+    private Segment active;
+
+    private long writtenTicket;
+
+    private volatile long durableTicket;
+
+    private long eventsSinceSnapshot;
+
+    private boolean flushPending;
+
+    private boolean closed;
+
+    public MappedUserJournal(UserJournalProperties properties) {
+        this.directory = properties.getDirectory();
+        this.segmentSize = Math.toIntExact(properties.getSegmentSize().toBytes());
+        this.fsyncPolicy = properties.getFsyncPolicy();
+        this.flushIntervalNanos = properties.getFlushInterval().toNanos();
+        this.snapshotEvery = properties.getSnapshotEvery();
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot create journal directory " + directory, ex);
+        }
+        this.snapshotExecutor = Executors.newSingleThreadExecutor(daemon("user-journal-snapshot"));
+        this.flusher = daemon("user-journal-flusher").newThread(this::flushLoop);
+    }
+
+    @Override
+    public Replay replay(Consumer<UserEvent> handler) {
+        lock.lock();
+        try {
+            if (active != null) {
+                throw new IllegalStateException("Journal has already been replayed");
+            }
+            long lastSequence = 0;
+            long lastId = 0;
+            SnapshotHeader snapshot = loadLatestSnapshot(handler);
+            if (snapshot != null) {
+                lastSequence = snapshot.sequence();
+                lastId = snapshot.lastId();
+            }
+            List<Path> segments = listFiles(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+            for (int i = 0; i < segments.size(); i++) {
+                boolean last = i == segments.size() - 1;
+                Segment segment = openSegment(segments.get(i), 0);
+                int end = scanSegment(segment.buffer, last);
+                ByteBuffer records = segment.buffer.duplicate().position(0).limit(end);
+                while (records.hasRemaining()) {
+                    UserEvent event = readRecord(records);
+                    if (event.sequence() <= lastSequence) {
+                        continue;
+                    }
+                    if (event.sequence() != lastSequence + 1) {
+                        throw new IllegalStateException("Journal gap: expected sequence " + (lastSequence + 1)
+                                + " but found " + event.sequence() + " in " + segment.path);
+                    }
+                    handler.accept(event);
+                    lastSequence = event.sequence();
+                    if (event.type() == UserEvent.Type.CREATED) {
+                        lastId = Math.max(lastId, event.id());
+                    }
+                    eventsSinceSnapshot++;
+                }
+                if (last) {
+                    segment.buffer.position(end);
+                    active = segment;
+                }
+            }
+            if (active == null) {
+                active = createSegment(segmentPath(lastSequence + 1), 0);
+            }
+            writtenTicket = active.buffer.position();
+            durableTicket = writtenTicket;
+            flusher.start();
+            log.info("Replayed user journal in {} up to sequence {}", directory, lastSequence);
+            return new Replay(lastSequence, lastId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean fits(User user) {
+        return recordLength(encode(user.getName()), encode(user.getEmail())) + Integer.BYTES <= segmentSize;
+    }
+
+    @Override
+    public long append(UserEvent event) {
+        byte[] name = encode(event.name());
+        byte[] email = encode(event.email());
+        int recordLength = recordLength(name, email);
+        int payloadLength = recordLength - RECORD_HEADER_BYTES;
+        if (recordLength + Integer.BYTES > segmentSize) {
+            throw new IllegalArgumentException("Event of " + recordLength + " bytes does not fit in a journal segment");
+        }
+        lock.lock();
+        try {
+            ensureWritable();
+            if (active.buffer.remaining() < recordLength + Integer.BYTES) {
+                roll(event.sequence());
+            }
+            MappedByteBuffer buffer = active.buffer;
+            int start = buffer.position();
+            buffer.position(start + RECORD_HEADER_BYTES);
+            buffer.putLong(event.sequence());
+            buffer.put((byte) event.type().ordinal());
+            buffer.putLong(event.id());
+            putString(buffer, name);
+            putString(buffer, email);
+            appendChecksum.reset();
+            appendChecksum.update(buffer.duplicate().position(start + RECORD_HEADER_BYTES).limit(start + recordLength));
+            buffer.putInt(start + Integer.BYTES, (int) appendChecksum.getValue());
+            buffer.putInt(start, payloadLength);
+            writtenTicket = active.baseTicket + buffer.position();
+            eventsSinceSnapshot++;
+            return writtenTicket;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void awaitDurable(long ticket) {
+        if (fsyncPolicy == FsyncPolicy.ASYNC || ticket <= durableTicket) {
+            return;
+        }
+        lock.lock();
+        try {
+            while (durableTicket < ticket && !closed) {
+                flushPending = true;
+                flushRequested.signal();
+                durableAdvanced.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isSnapshotDue() {
+        lock.lock();
+        try {
+            return eventsSinceSnapshot >= snapshotEvery;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void snapshot(long sequence, long lastId, Collection<User> users) {
+        lock.lock();
+        try {
+            ensureWritable();
+            roll(sequence + 1);
+            eventsSinceSnapshot = 0;
+        } finally {
+            lock.unlock();
+        }
+        snapshotExecutor.execute(() -> {
+            try {
+                writeSnapshot(sequence, lastId, users);
+                deleteObsoleteFiles(sequence);
+            } catch (IOException | RuntimeException ex) {
+                log.error("Failed to write user snapshot at sequence {}", sequence, ex);
+            }
+        });
+    }
+
+    // The files are replaced on the snapshot thread, after any snapshot queued before, so no earlier
+    // snapshot can write or delete files once the new history has started.
+    @Override
+    public void install(long sequence, long lastId, Collection<User> users) {
+        lock.lock();
+        try {
+            ensureWritable();
+        } finally {
+            lock.unlock();
+        }
+        Future<?> replaced = snapshotExecutor.submit(() -> {
+            replaceFiles(sequence, lastId, users);
+            return null;
+        });
+        try {
+            replaced.get();
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException("Failed to install user snapshot at sequence " + sequence, ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while installing user snapshot at sequence " + sequence, ex);
+        }
+        lock.lock();
+        try {
+            ensureWritable();
+            Segment previous = active;
+            durableTicket = writtenTicket;
+            durableAdvanced.signalAll();
+            active = createSegment(segmentPath(sequence + 1), previous.baseTicket + previous.buffer.position());
+            eventsSinceSnapshot = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            flushRequested.signalAll();
+            durableAdvanced.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        snapshotExecutor.shutdown();
+        try {
+            if (flusher.isAlive()) {
+                flusher.join();
+            }
+            snapshotExecutor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        if (active != null) {
+            active.buffer.force();
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            Segment segment;
+            long target;
+            int from;
+            int to;
+            lock.lock();
+            try {
+                if (!closed && !flushPending) {
+                    flushRequested.awaitNanos(flushIntervalNanos);
+                }
+                if (closed) {
+                    return;
+                }
+                flushPending = false;
+                target = writtenTicket;
+                if (target <= durableTicket) {
+                    continue;
+                }
+                segment = active;
+                from = (int) Math.max(0, durableTicket - segment.baseTicket);
+                to = segment.buffer.position();
+            } catch (InterruptedException ex) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            segment.buffer.force(from, to - from);
+            lock.lock();
+            try {
+                durableTicket = Math.max(durableTicket, target);
+                durableAdvanced.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private void ensureWritable() {
+        if (closed) {
+            throw new IllegalStateException("Journal is closed");
+        }
+        if (active == null) {
+            throw new IllegalStateException("Journal must be replayed before it is written to");
+        }
+    }
+
+    // Caller holds the lock. Forces the current segment, so rolls also advance durability.
+    private void roll(long nextSequence) {
+        Segment previous = active;
+        previous.buffer.force();
+        durableTicket = writtenTicket;
+        durableAdvanced.signalAll();
+        long baseTicket = previous.baseTicket + previous.buffer.position();
+        if (previous.buffer.position() == 0) {
+            deleteQuietly(previous.path);
+        }
+        active = createSegment(segmentPath(nextSequence), baseTicket);
+    }
+
+    private Segment openSegment(Path path, long baseTicket) {
+        return mapSegment(path, baseTicket, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    // A new segment starts empty even if a file of that name is left over from a replaced history.
+    private Segment createSegment(Path path, long baseTicket) {
+        return mapSegment(path, baseTicket, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private Segment mapSegment(Path path, long baseTicket, StandardOpenOption... options) {
+        try (FileChannel channel = FileChannel.open(path, options)) {
+            long size = Math.max(segmentSize, channel.size());
+            return new Segment(path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size), baseTicket);
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot map journal segment " + path, ex);
+        }
+    }
+
+    // Returns the end of the valid region. A torn record is only tolerated at the tail of the last
+    // segment, where it is the result of a crash mid-append; it is zeroed so new appends start clean.
+    private int scanSegment(MappedByteBuffer buffer, boolean last) {
+        CRC32C checksum = new CRC32C();
+        int position = 0;
+        while (position + RECORD_HEADER_BYTES <= buffer.limit()) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                return position;
+            }
+            // A torn header can hold any length; compare it with the bytes left so the sum cannot overflow.
+            boolean valid = length > 0 && length <= buffer.limit() - position - RECORD_HEADER_BYTES;
+            int end = valid ? position + RECORD_HEADER_BYTES + length : position;
+            if (valid) {
+                checksum.reset();
+                checksum.update(buffer.duplicate().position(position + RECORD_HEADER_BYTES).limit(end));
+                valid = (int) checksum.getValue() == buffer.getInt(position + Integer.BYTES);
+            }
+            if (!valid) {
+                if (!last) {
+                    throw new IllegalStateException("Corrupt journal record at offset " + position);
+                }
+                log.warn("Discarding torn journal tail at offset {}", position);
+                for (int i = position; i < buffer.limit(); i++) {
+                    buffer.put(i, (byte) 0);
+                }
+                return position;
+            }
+            position = end;
+        }
+        return position;
+    }
+
+    private static UserEvent readRecord(ByteBuffer records) {
+        records.position(records.position() + RECORD_HEADER_BYTES);
+        long sequence = records.getLong();
+        UserEvent.Type type = TYPES[records.get()];
+        long id = records.getLong();
+        String name = getString(records);
+        String email = getString(records);
+        return new UserEvent(sequence, type, id, name, email);
+    }
+
+    private SnapshotHeader loadLatestSnapshot(Consumer<UserEvent> handler) {
+        List<Path> snapshots = listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path snapshot = snapshots.get(i);
+            try {
+                if (!verifySnapshot(snapshot)) {
+                    log.warn("Ignoring snapshot {} with bad checksum", snapshot);
+                    continue;
+                }
+                return readSnapshot(snapshot, handler);
+            } catch (IOException ex) {
+                log.warn("Ignoring unreadable snapshot {}", snapshot, ex);
+            }
+        }
+        return null;
+    }
+
+    private static boolean verifySnapshot(Path snapshot) throws IOException {
+        long size = Files.size(snapshot);
+        if (size < Long.BYTES) {
+            return false;
+        }
+        CRC32C checksum = new CRC32C();
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(snapshot));
+             DataInputStream data = new DataInputStream(in)) {
+            byte[] chunk = new byte[8192];
+            long remaining = size - Long.BYTES;
+            while (remaining > 0) {
+                int read = data.read(chunk, 0, (int) Math.min(chunk.length, remaining));
+                if (read < 0) {
+                    return false;
+                }
+                checksum.update(chunk, 0, read);
+                remaining -= read;
+            }
+            return data.readLong() == checksum.getValue();
+        }
+    }
+
+    private static SnapshotHeader readSnapshot(Path snapshot, Consumer<UserEvent> handler) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            int magic = in.readInt();
+            if (magic != SNAPSHOT_MAGIC && magic != UNVERSIONED_SNAPSHOT_MAGIC) {
+                throw new IOException("Not a user snapshot: " + snapshot);
+            }
+            long sequence = in.readLong();
+            long lastId = in.readLong();
+            long count = in.readLong();
+            for (long i = 0; i < count; i++) {
+                long id = in.readLong();
+                long version = magic == SNAPSHOT_MAGIC ? in.readLong() : sequence;
+                String name = readString(in);
+                String email = readString(in);
+                handler.accept(new UserEvent(version, UserEvent.Type.CREATED, id, name, email));
+            }
+            return new SnapshotHeader(sequence, lastId);
+        }
+    }
+
+    private void writeSnapshot(long sequence, long lastId, Collection<User> users) throws IOException {
+        Path target = snapshotPath(sequence);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            CheckedOutputStream checked = new CheckedOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(channel)), new CRC32C());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(sequence);
+            out.writeLong(lastId);
+            out.writeLong(users.size());
+            for (User user : users) {
+                out.writeLong(user.getId());
+                out.writeLong(user.getVersion());
+                writeString(out, user.getName());
+                writeString(out, user.getEmail());
+            }
+            out.flush();
+            out.writeLong(checked.getChecksum().getValue());
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        log.debug("Wrote user snapshot {} with {} users", target, users.size());
+    }
+
+    // Every segment and every newer snapshot is deleted before the new snapshot is written, so a crash
+    // in between restarts from an older state of this node instead of mixing the two histories.
+    private void replaceFiles(long sequence, long lastId, Collection<User> users) throws IOException {
+        for (Path segment : listFiles(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            Files.deleteIfExists(segment);
+        }
+        for (Path snapshot : listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (sequenceOf(snapshot, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) > sequence) {
+                Files.deleteIfExists(snapshot);
+            }
+        }
+        writeSnapshot(sequence, lastId, users);
+        deleteObsoleteFiles(sequence);
+    }
+
+    // Segments are named after their first sequence and every snapshot rolls the log, so all
+    // segments that start at or before the snapshot sequence are fully covered by it.
+    private void deleteObsoleteFiles(long snapshotSequence) {
+        for (Path segment : listFiles(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (sequenceOf(segment, SEGMENT_PREFIX, SEGMENT_SUFFIX) <= snapshotSequence) {
+                deleteQuietly(segment);
+            }
+        }
+        for (Path snapshot : listFiles(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (sequenceOf(snapshot, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX) < snapshotSequence) {
+                deleteQuietly(snapshot);
+            }
+        }
+    }
+
+    private List<Path> listFiles(String prefix, String suffix) {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(prefix) && name.endsWith(suffix);
+                    })
+                    .sorted(Comparator.comparingLong(path -> sequenceOf(path, prefix, suffix)))
+                    .toList();
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot list journal directory " + directory, ex);
+        }
+    }
+
+    private Path segmentPath(long firstSequence) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+    }
+
+    private Path snapshotPath(long sequence) {
+        return directory.resolve(String.format("%s%020d%s", SNAPSHOT_PREFIX, sequence, SNAPSHOT_SUFFIX));
+    }
+
+    private static long sequenceOf(Path path, String prefix, String suffix) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ex) {
+            log.warn("Could not delete journal file {}", path, ex);
+        }
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int recordLength(byte[] name, byte[] email) {
+        return RECORD_HEADER_BYTES + Long.BYTES + 1 + Long.BYTES + stringLength(name) + stringLength(email);
+    }
+
+    private static int stringLength(byte[] value) {
+        return Integer.BYTES + (value == null ? 0 : value.length);
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] value) {
+        if (value == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(value.length);
+            buffer.put(value);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] value = new byte[length];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = encode(value);
+        if (bytes == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private record Segment(Path path, MappedByteBuffer buffer, long baseTicket) {
+    }
+
+    private record SnapshotHeader(long sequence, long lastId) {
+    }
+}
@@ -0,0 +1,55 @@
+package com.javaninja.persistence;
+
+import com.javaninja.model.User;
+import com.javaninja.model.UserEvent;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+public interface UserJournal extends Closeable {
+
+    /**
+     * Replays the latest snapshot (as CREATED events whose sequence is the user's version) followed by
+     * the log tail.
+     * Must be called once, before the first append.
+     */
+    Replay replay(Consumer<UserEvent> handler);
+
+    /**
+     * Returns whether an event carrying the given user fits in the journal. Events that do not fit are
+     * rejected by {@link #append(UserEvent)}.
+     */
+    boolean fits(User user);
+
+    /**
+     * Appends an event and returns a ticket that can be passed to {@link #awaitDurable(long)}.
+     */
+    long append(UserEvent event);
+
+    /**
+     * Blocks until the event identified by the ticket is on disk, as far as the fsync policy requires.
+     */
+    void awaitDurable(long ticket);
+
+    boolean isSnapshotDue();
+
+    /**
+     * Rolls the log and writes a snapshot of the given state in the background. Callers must make
+     * sure no event after {@code sequence} has been appended yet.
+     */
+    void snapshot(long sequence, long lastId, Collection<User> users);
+
+    /**
+     * Replaces the whole journal with a snapshot of the given state, such as one taken on another node.
+     * Every segment and every other snapshot is dropped, so no event of the replaced history is
+     * replayed after a restart. Blocks until the snapshot is on disk.
+     */
+    void install(long sequence, long lastId, Collection<User> users);
+
+    @Override
+    void close();
+
+    record Replay(long lastSequence, long lastId) {
+    }
+}
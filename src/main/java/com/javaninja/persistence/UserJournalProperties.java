@@ -0,0 +1,78 @@
+package com.javaninja.persistence;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "users.journal")
+public class UserJournalProperties {
+
+    public enum FsyncPolicy {
+        /** Writers wait until their event is forced to disk; concurrent writers share one fsync. */
+        SYNC,
+        /** Writers return immediately; the log is forced every flush interval. */
+        ASYNC
+    }
+
+    private boolean enabled;
+
+    private Path directory = Path.of("data", "journal");
+
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+    private FsyncPolicy fsyncPolicy = FsyncPolicy.SYNC;
+
+    private Duration flushInterval = Duration.ofMillis(5);
+
+    private long snapshotEvery = 100_000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(Path directory) {
+        this.directory = directory;
+    }
+
+    public DataSize getSegmentSize() {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(DataSize segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    public void setFsyncPolicy(FsyncPolicy fsyncPolicy) {
+        this.fsyncPolicy = fsyncPolicy;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public long getSnapshotEvery() {
+        return snapshotEvery;
+    }
+
+    public void setSnapshotEvery(long snapshotEvery) {
+        this.snapshotEvery = snapshotEvery;
+    }
+}
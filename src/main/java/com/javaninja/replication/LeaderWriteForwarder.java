@@ -0,0 +1,95 @@
+package com.javaninja.replication;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Relays user writes that reach a follower to the leader and returns the leader's answer, so clients
+ * can write through any replica. The follower sees the write once it pulls it from the leader's feed.
+ */
+public class LeaderWriteForwarder implements HandlerInterceptor {
+
+    static final String FORWARDED_HEADER = "X-Replica-Forwarded-By";
+
+    private static final Set<String> SAFE_METHODS = Set.of("GET", "HEAD", "OPTIONS");
+
+    private static final List<String> REQUEST_HEADERS = List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.ACCEPT,
+            HttpHeaders.IF_MATCH);
+
+    private static final List<String> RESPONSE_HEADERS = List.of(HttpHeaders.CONTENT_TYPE, HttpHeaders.ETAG,
+            HttpHeaders.LOCATION);
+
+    private final UserReplicator replicator;
+
+    private final Duration timeout;
+
+    private final HttpClient httpClient;
+
+    public LeaderWriteForwarder(UserReplicator replicator, ReplicationProperties properties) {
+        this.replicator = replicator;
+        this.timeout = properties.getRequestTimeout();
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(properties.getRequestTimeout())
+                .build();
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException, InterruptedException {
+        if (SAFE_METHODS.contains(request.getMethod()) || replicator.isLeader()) {
+            return true;
+        }
+        Optional<UserReplicator.Peer> leader = replicator.getLeader();
+        // A write forwarded once is never forwarded again, so replicas that disagree on the leader
+        // cannot bounce it between them.
+        if (leader.isEmpty() || request.getHeader(FORWARDED_HEADER) != null) {
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "No user replication leader available");
+            return false;
+        }
+        forward(leader.get(), request, response);
+        return false;
+    }
+
+    private void forward(UserReplicator.Peer leader, HttpServletRequest request, HttpServletResponse response)
+            throws IOException, InterruptedException {
+        String target = request.getQueryString() == null
+                ? request.getRequestURI()
+                : request.getRequestURI() + "?" + request.getQueryString();
+        byte[] body = request.getInputStream().readAllBytes();
+        HttpRequest.Builder forwarded = HttpRequest.newBuilder(leader.uri().resolve(target))
+                .timeout(timeout)
+                .header(FORWARDED_HEADER, replicator.getNode())
+                .method(request.getMethod(), HttpRequest.BodyPublishers.ofByteArray(body));
+        for (String name : REQUEST_HEADERS) {
+            String value = request.getHeader(name);
+            if (value != null) {
+                forwarded.header(name, value);
+            }
+        }
+        HttpResponse<byte[]> answer;
+        try {
+            answer = httpClient.send(forwarded.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException ex) {
+            replicator.leaderUnreachable();
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "User replication leader unavailable");
+            return;
+        }
+        response.setStatus(answer.statusCode());
+        for (String name : RESPONSE_HEADERS) {
+            answer.headers().firstValue(name).ifPresent(value -> response.setHeader(name, value));
+        }
+        response.getOutputStream().write(answer.body());
+    }
+}
@@ -0,0 +1,81 @@
+package com.javaninja.replication;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "users.replication")
+public class ReplicationProperties {
+
+    private boolean enabled;
+
+    // Discovery service id of the replicas; defaults to spring.application.name.
+    private String serviceId;
+
+    private Duration electionInterval = Duration.ofSeconds(5);
+
+    // How long the leader holds an events request open while there is nothing new.
+    private Duration pollTimeout = Duration.ofSeconds(5);
+
+    private Duration requestTimeout = Duration.ofSeconds(2);
+
+    private Duration retryDelay = Duration.ofSeconds(1);
+
+    private int batchSize = 1000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getServiceId() {
+        return serviceId;
+    }
+
+    public void setServiceId(String serviceId) {
+        this.serviceId = serviceId;
+    }
+
+    public Duration getElectionInterval() {
+        return electionInterval;
+    }
+
+    public void setElectionInterval(Duration electionInterval) {
+        this.electionInterval = electionInterval;
+    }
+
+    public Duration getPollTimeout() {
+        return pollTimeout;
+    }
+
+    public void setPollTimeout(Duration pollTimeout) {
+        this.pollTimeout = pollTimeout;
+    }
+
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public void setRequestTimeout(Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    public Duration getRetryDelay() {
+        return retryDelay;
+    }
+
+    public void setRetryDelay(Duration retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+}
@@ -0,0 +1,305 @@
+package com.javaninja.replication;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.javaninja.model.ReplicaStatus;
+import com.javaninja.model.UserEventBatch;
+import com.javaninja.model.UserSnapshot;
+import com.javaninja.service.UserService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.discovery.DiscoveryClient;
+import org.springframework.http.HttpHeaders;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Keeps this node's users in step with the other replicas registered under the same service id. The
+ * replica that has been running longest leads and takes every write. Followers pull its change feed
+ * in batches and apply the events with their original sequences, so versions and ETags agree on all
+ * nodes. A follower that is new, fell behind the feed or switches to another leader installs a full
+ * snapshot first. Replication is asynchronous: writes no follower has pulled yet are lost if the
+ * leader fails.
+ */
+public class UserReplicator implements AutoCloseable {
+
+    public static final String NODE_HEADER = "X-Replica-Node";
+
+    static final String SMILE = "application/x-jackson-smile";
+
+    private static final Logger log = LoggerFactory.getLogger(UserReplicator.class);
+
+    private final String node = UUID.randomUUID().toString();
+
+    private final long startedAt = System.currentTimeMillis();
+
+    private final String serviceId;
+
+    private final ReplicationProperties properties;
+
+    private final UserService userService;
+
+    private final DiscoveryClient discoveryClient;
+
+    private final ObjectMapper smileMapper;
+
+    private final HttpClient httpClient;
+
+    private final Thread worker;
+
+    private final Counter snapshots;
+
+    private volatile Peer leader;
+
+    private volatile boolean electionDue = true;
+
+    private volatile long leaderSequence;
+
+    private volatile boolean closed;
+
+    // Node whose history this replica's users follow; null until the first snapshot. Only the
+    // worker thread touches it.
+    private String source;
+
+    public UserReplicator(String serviceId, ReplicationProperties properties, UserService userService,
+                          DiscoveryClient discoveryClient, ObjectMapper smileMapper, MeterRegistry meterRegistry) {
+        this.serviceId = serviceId;
+        this.properties = properties;
+        this.userService = userService;
+        this.discoveryClient = discoveryClient;
+        this.smileMapper = smileMapper;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(properties.getRequestTimeout())
+                .build();
+        this.worker = new Thread(this::run, "user-replication");
+        this.worker.setDaemon(true);
+        Gauge.builder("users.replication.lag", this, UserReplicator::lag)
+                .description("Events the leader has applied that this replica has not")
+                .register(meterRegistry);
+        this.snapshots = Counter.builder("users.replication.snapshots")
+                .description("Full snapshots installed from the leader")
+                .register(meterRegistry);
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public ReplicaStatus status() {
+        Peer current = leader;
+        return new ReplicaStatus(node, startedAt, userService.getVersion(), current == null ? null : current.node());
+    }
+
+    /**
+     * Returns the elected leader, which may be this node; empty until the first election.
+     */
+    public Optional<Peer> getLeader() {
+        return Optional.ofNullable(leader);
+    }
+
+    public boolean isLeader() {
+        Peer current = leader;
+        return current != null && current.node().equals(node);
+    }
+
+    /**
+     * Asks for a new election before the next pull, for callers that failed to reach the leader.
+     */
+    public void leaderUnreachable() {
+        electionDue = true;
+    }
+
+    public void start() {
+        worker.start();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        worker.interrupt();
+    }
+
+    private void run() {
+        long nextElection = System.nanoTime();
+        while (!closed) {
+            try {
+                if (electionDue || System.nanoTime() - nextElection >= 0) {
+                    electionDue = false;
+                    elect();
+                    nextElection = System.nanoTime() + properties.getElectionInterval().toNanos();
+                }
+                Peer current = leader;
+                if (current.node().equals(node)) {
+                    lead();
+                    Thread.sleep(Math.max(0, (nextElection - System.nanoTime()) / 1_000_000));
+                } else {
+                    follow(current);
+                }
+            } catch (InterruptedException ex) {
+                return;
+            } catch (IOException | RuntimeException ex) {
+                log.warn("User replication from {} failed: {}", leader == null ? null : leader.uri(), ex.toString());
+                electionDue = true;
+                try {
+                    Thread.sleep(properties.getRetryDelay().toMillis());
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // The oldest reachable replica wins; a restarted node is the youngest, so it follows and catches
+    // up instead of taking over with whatever state it came back with.
+    private void elect() throws InterruptedException {
+        List<ServiceInstance> instances = discoveryClient.getInstances(serviceId);
+        List<CompletableFuture<HttpResponse<InputStream>>> requests = new ArrayList<>(instances.size());
+        for (ServiceInstance instance : instances) {
+            requests.add(httpClient.sendAsync(request(instance.getUri(), "/internal/replication/status",
+                    properties.getRequestTimeout()), HttpResponse.BodyHandlers.ofInputStream()));
+        }
+        Peer elected = new Peer(node, null, startedAt);
+        for (int i = 0; i < instances.size(); i++) {
+            ReplicaStatus status = status(instances.get(i).getUri(), requests.get(i));
+            if (status != null && !status.node().equals(node) && precedes(status, elected)) {
+                elected = new Peer(status.node(), instances.get(i).getUri(), status.startedAt());
+            }
+        }
+        Peer previous = leader;
+        if (previous == null || !previous.node().equals(elected.node())) {
+            log.info("Replica {} elected {} ({}) as user replication leader", node, elected.node(),
+                    elected.uri() == null ? "this node" : elected.uri());
+        }
+        leader = elected;
+    }
+
+    private ReplicaStatus status(URI uri, CompletableFuture<HttpResponse<InputStream>> request)
+            throws InterruptedException {
+        try {
+            HttpResponse<InputStream> response = request.get();
+            try (InputStream body = decode(response)) {
+                if (response.statusCode() != 200) {
+                    return null;
+                }
+                return smileMapper.readValue(body, ReplicaStatus.class);
+            }
+        } catch (ExecutionException | IOException ex) {
+            log.debug("Replica {} did not report its status: {}", uri, ex.toString());
+            return null;
+        }
+    }
+
+    private static boolean precedes(ReplicaStatus status, Peer peer) {
+        return status.startedAt() < peer.startedAt()
+                || status.startedAt() == peer.startedAt() && status.node().compareTo(peer.node()) < 0;
+    }
+
+    private void lead() {
+        if (!node.equals(source)) {
+            log.info("Replica {} leads user replication from sequence {}", node, userService.getVersion());
+            source = node;
+        }
+    }
+
+    private void follow(Peer current) throws IOException, InterruptedException {
+        if (!current.node().equals(source)) {
+            installSnapshot(current);
+        }
+        String path = "/internal/replication/events?after=" + userService.getVersion()
+                + "&limit=" + properties.getBatchSize();
+        HttpResponse<InputStream> response = send(current, path,
+                properties.getPollTimeout().plus(properties.getRequestTimeout()));
+        try (InputStream body = decode(response)) {
+            if (response.statusCode() == 410) {
+                // Fell behind the leader's feed; the next pass starts over from a snapshot.
+                source = null;
+                return;
+            }
+            expectOk(response);
+            UserEventBatch batch = smileMapper.readValue(body, UserEventBatch.class);
+            try {
+                userService.applyReplicated(batch.events());
+            } catch (IllegalStateException ex) {
+                source = null;
+                throw ex;
+            }
+            leaderSequence = batch.lastSequence();
+        }
+    }
+
+    private void installSnapshot(Peer current) throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = send(current, "/internal/replication/snapshot",
+                properties.getRequestTimeout());
+        try (InputStream body = decode(response)) {
+            expectOk(response);
+            UserSnapshot snapshot = smileMapper.readValue(body, UserSnapshot.class);
+            userService.installSnapshot(snapshot);
+            source = current.node();
+            leaderSequence = snapshot.sequence();
+            snapshots.increment();
+            log.info("Installed snapshot of {} users at sequence {} from {}", snapshot.users().size(),
+                    snapshot.sequence(), current.uri());
+        }
+    }
+
+    private HttpResponse<InputStream> send(Peer peer, String path, Duration timeout)
+            throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = httpClient.send(request(peer.uri(), path, timeout),
+                HttpResponse.BodyHandlers.ofInputStream());
+        String answeredBy = response.headers().firstValue(NODE_HEADER).orElse(null);
+        if (!peer.node().equals(answeredBy)) {
+            response.body().close();
+            throw new IOException("Expected replica " + peer.node() + " at " + peer.uri() + " but found " + answeredBy);
+        }
+        return response;
+    }
+
+    private static HttpRequest request(URI uri, String path, Duration timeout) {
+        return HttpRequest.newBuilder(uri.resolve(path))
+                .timeout(timeout)
+                .header(HttpHeaders.ACCEPT, SMILE)
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .GET()
+                .build();
+    }
+
+    private static InputStream decode(HttpResponse<InputStream> response) throws IOException {
+        boolean gzip = response.headers().firstValue(HttpHeaders.CONTENT_ENCODING)
+                .map("gzip"::equalsIgnoreCase)
+                .orElse(false);
+        return gzip ? new GZIPInputStream(response.body()) : response.body();
+    }
+
+    private static void expectOk(HttpResponse<?> response) throws IOException {
+        if (response.statusCode() != 200) {
+            throw new IOException("Unexpected status " + response.statusCode() + " from " + response.uri());
+        }
+    }
+
+    private double lag() {
+        return isLeader() ? 0 : Math.max(0, leaderSequence - userService.getVersion());
+    }
+
+    /**
+     * A replica; {@code uri} is null for this node.
+     */
+    public record Peer(String node, URI uri, long startedAt) {
+    }
+}
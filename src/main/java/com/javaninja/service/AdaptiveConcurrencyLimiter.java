@@ -0,0 +1,107 @@
+package com.javaninja.service;
+
+import io.micrometer.core.instrument.Counter;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Caps in-flight upstream calls with a limit that adapts to observed latency (AIMD).
+ *
+ * <p>Every call that finishes within the latency threshold while the limiter is at least half
+ * used raises the limit by one; a slower call, or a failure that signals overload, cuts it by the
+ * backoff ratio. The limit is cut at most once per round trip: calls that were already in flight
+ * when it was last cut ran under the old limit, so their samples do not cut it again. Calls beyond
+ * the current limit are rejected immediately rather than queued, so callers shed to their fallback
+ * instead of piling onto a struggling upstream.
+ */
+class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private final double backoffRatio;
+
+    private final long latencyThresholdNanos;
+
+    private final Predicate<RuntimeException> overload;
+
+    private final Counter rejected;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile double limit;
+
+    // When the limit was last cut; guarded by lock.
+    private long lastDecreaseNanos;
+
+    AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double backoffRatio,
+                               Duration latencyThreshold, Predicate<RuntimeException> overload, Counter rejected) {
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.overload = overload;
+        this.rejected = rejected;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.lastDecreaseNanos = System.nanoTime();
+    }
+
+    <T> T execute(Supplier<T> call) {
+        int current = acquire();
+        long start = System.nanoTime();
+        boolean dropped = false;
+        try {
+            return call.get();
+        } catch (RuntimeException ex) {
+            dropped = overload.test(ex);
+            throw ex;
+        } finally {
+            inFlight.decrementAndGet();
+            onSample(start, System.nanoTime(), current, dropped);
+        }
+    }
+
+    int getLimit() {
+        return (int) limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    private int acquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.increment();
+                throw new ConcurrencyLimitExceededException((int) limit);
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    private void onSample(long startNanos, long endNanos, int inFlightAtStart, boolean dropped) {
+        lock.lock();
+        try {
+            if (dropped || endNanos - startNanos > latencyThresholdNanos) {
+                if (startNanos - lastDecreaseNanos >= 0) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastDecreaseNanos = endNanos;
+                }
+            } else if (inFlightAtStart * 2 >= limit) {
+                limit = Math.min(maxLimit, limit + 1);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,620 @@
+package com.javaninja.service;
+
+import com.javaninja.model.User;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import static com.javaninja.service.UserStore.normalize;
+
+/**
+ * Columnar store for very large user sets. Ids and versions live in primitive arrays sorted by id,
+ * and names and the local part of emails are UTF-8 encoded into a single direct (off-heap) buffer.
+ * Email domains go through a dictionary, so a domain shared by millions of users is stored once.
+ * {@link User} objects only exist while a read hands them out.
+ *
+ * <p>An update appends the new strings and a delete leaves a tombstone row; both are reclaimed once
+ * dead space passes half of the store. Prefix searches use an array of ids kept in name order;
+ * a write that adds or changes a name shifts part of that array, so this engine suits large,
+ * read-mostly sets.
+ */
+public class CompactUserStore implements UserStore {
+
+    private static final long DELETED = -1;
+
+    private static final int NONE = -1;
+
+    private static final int REMOVED_SLOT = -1;
+
+    private static final int INITIAL_ROWS = 1024;
+
+    private static final int INITIAL_BYTES = 64 * 1024;
+
+    private static final int STREAM_PAGE = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Row columns, sorted by id. A deleted row keeps its id and has a DELETED version.
+    private long[] ids = new long[INITIAL_ROWS];
+
+    private long[] versions = new long[INITIAL_ROWS];
+
+    // Buffer offsets of the name and of the email up to its last '@', or NONE for null.
+    private int[] names = new int[INITIAL_ROWS];
+
+    private int[] emailLocals = new int[INITIAL_ROWS];
+
+    // Dictionary code of the email after its last '@', or NONE if it has none.
+    private int[] emailDomains = new int[INITIAL_ROWS];
+
+    private int[] emailHashes = new int[INITIAL_ROWS];
+
+    private int rows;
+
+    private volatile int live;
+
+    // Length-prefixed UTF-8 strings; bytes of replaced and deleted strings count as garbage.
+    private ByteBuffer data = ByteBuffer.allocateDirect(INITIAL_BYTES);
+
+    private int dataEnd;
+
+    private int garbageBytes;
+
+    private final Map<String, Integer> domainCodes = new HashMap<>();
+
+    private final List<String> domains = new ArrayList<>();
+
+    // Open-addressing table from normalized email to row + 1, with 0 for empty slots. It is null
+    // while row positions are out of date and rebuilt by the next email lookup.
+    private int[] emailSlots = new int[INITIAL_ROWS * 2];
+
+    private int usedSlots;
+
+    // Ids of named live users sorted by normalized name, then id. It holds ids rather than rows
+    // because rows move when an out-of-order id is inserted or the store is compacted.
+    private long[] nameOrder = new long[INITIAL_ROWS];
+
+    private int namedUsers;
+
+    @Override
+    public int size() {
+        return live;
+    }
+
+    @Override
+    public User get(long id) {
+        lock.readLock().lock();
+        try {
+            int row = Arrays.binarySearch(ids, 0, rows, id);
+            return row >= 0 && versions[row] != DELETED ? materialize(row) : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public User getByEmail(String email) {
+        lock.readLock().lock();
+        try {
+            if (emailSlots != null) {
+                int row = findEmail(email);
+                return row == NONE ? null : materialize(row);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            if (emailSlots == null) {
+                rebuildEmailSlots();
+            }
+            int row = findEmail(email);
+            return row == NONE ? null : materialize(row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<User> getAll() {
+        lock.readLock().lock();
+        try {
+            List<User> result = new ArrayList<>(live);
+            for (int row = 0; row < rows; row++) {
+                if (versions[row] != DELETED) {
+                    result.add(materialize(row));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<User> getAfter(long afterId, int limit) {
+        List<User> result = new ArrayList<>(Math.max(0, Math.min(limit, live)));
+        if (limit <= 0) {
+            return result;
+        }
+        lock.readLock().lock();
+        try {
+            int row = Arrays.binarySearch(ids, 0, rows, afterId);
+            for (row = row >= 0 ? row + 1 : -row - 1; row < rows && result.size() < limit; row++) {
+                if (versions[row] != DELETED) {
+                    result.add(materialize(row));
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Pages through the store so a slow consumer never holds the read lock.
+    @Override
+    public Stream<User> stream() {
+        return Stream.iterate(getAfter(Long.MIN_VALUE, STREAM_PAGE), page -> !page.isEmpty(),
+                        page -> page.size() < STREAM_PAGE ? List.of()
+                                : getAfter(page.get(page.size() - 1).getId(), STREAM_PAGE))
+                .flatMap(List::stream);
+    }
+
+    @Override
+    public List<User> getByNamePrefix(String prefix, int limit) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        lock.readLock().lock();
+        try {
+            return scanNames(prefix, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Only the row columns are copied. Strings are never overwritten in place, since writes append
+    // them and compaction fills a new buffer, so the copy can keep reading the current buffer.
+    @Override
+    public List<User> snapshot() {
+        lock.readLock().lock();
+        try {
+            long[] liveIds = new long[live];
+            long[] liveVersions = new long[live];
+            int[] liveNames = new int[live];
+            int[] liveEmailLocals = new int[live];
+            int[] liveEmailDomains = new int[live];
+            int count = 0;
+            for (int row = 0; row < rows; row++) {
+                if (versions[row] != DELETED) {
+                    liveIds[count] = ids[row];
+                    liveVersions[count] = versions[row];
+                    liveNames[count] = names[row];
+                    liveEmailLocals[count] = emailLocals[row];
+                    liveEmailDomains[count] = emailDomains[row];
+                    count++;
+                }
+            }
+            return new FrozenUsers(data, domains.toArray(new String[0]), liveIds, liveVersions,
+                    liveNames, liveEmailLocals, liveEmailDomains);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void put(User user) {
+        lock.writeLock().lock();
+        try {
+            String name = normalize(user.getName());
+            boolean renamed = true;
+            int row = Arrays.binarySearch(ids, 0, rows, user.getId());
+            if (row < 0) {
+                row = insertRow(-row - 1, user.getId());
+                live++;
+            } else if (versions[row] == DELETED) {
+                live++;
+            } else {
+                String previousName = normalizedName(row);
+                renamed = !Objects.equals(previousName, name);
+                if (renamed && previousName != null) {
+                    removeName(previousName, user.getId());
+                }
+                release(row);
+            }
+            write(row, user);
+            if (renamed && name != null) {
+                addName(name, user.getId());
+            }
+            compactIfWasteful();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            int row = Arrays.binarySearch(ids, 0, rows, id);
+            if (row < 0 || versions[row] == DELETED) {
+                return;
+            }
+            String name = normalizedName(row);
+            if (name != null) {
+                removeName(name, id);
+            }
+            release(row);
+            versions[row] = DELETED;
+            live--;
+            compactIfWasteful();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private User materialize(int row) {
+        return user(data, ids[row], versions[row], names[row], email(row));
+    }
+
+    private String email(int row) {
+        return email(data, emailLocals[row], emailDomains[row] == NONE ? null : domains.get(emailDomains[row]));
+    }
+
+    private static User user(ByteBuffer buffer, long id, long version, int name, String email) {
+        User user = new User(id, readString(buffer, name), email);
+        user.setVersion(version);
+        return user;
+    }
+
+    private static String email(ByteBuffer buffer, int local, String domain) {
+        String localPart = readString(buffer, local);
+        return localPart == null || domain == null ? localPart : localPart + '@' + domain;
+    }
+
+    // Ids normally arrive in increasing order and are appended; only an out-of-order id (such as one
+    // replayed from an unordered snapshot) shifts the rows after it.
+    private int insertRow(int row, long id) {
+        if (rows == ids.length) {
+            growRows();
+        }
+        if (row < rows) {
+            int tail = rows - row;
+            System.arraycopy(ids, row, ids, row + 1, tail);
+            System.arraycopy(versions, row, versions, row + 1, tail);
+            System.arraycopy(names, row, names, row + 1, tail);
+            System.arraycopy(emailLocals, row, emailLocals, row + 1, tail);
+            System.arraycopy(emailDomains, row, emailDomains, row + 1, tail);
+            System.arraycopy(emailHashes, row, emailHashes, row + 1, tail);
+            emailSlots = null;
+        }
+        ids[row] = id;
+        rows++;
+        return row;
+    }
+
+    private void growRows() {
+        int capacity = ids.length + (ids.length >> 1);
+        ids = Arrays.copyOf(ids, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        names = Arrays.copyOf(names, capacity);
+        emailLocals = Arrays.copyOf(emailLocals, capacity);
+        emailDomains = Arrays.copyOf(emailDomains, capacity);
+        emailHashes = Arrays.copyOf(emailHashes, capacity);
+    }
+
+    private void write(int row, User user) {
+        versions[row] = user.getVersion();
+        names[row] = writeString(user.getName());
+        String email = user.getEmail();
+        if (email == null) {
+            emailLocals[row] = NONE;
+            emailDomains[row] = NONE;
+            return;
+        }
+        int at = email.lastIndexOf('@');
+        emailLocals[row] = writeString(at < 0 ? email : email.substring(0, at));
+        emailDomains[row] = at < 0 ? NONE : domainCode(email.substring(at + 1));
+        emailHashes[row] = normalize(email).hashCode();
+        addEmailSlot(row);
+    }
+
+    private void release(int row) {
+        removeEmailSlot(row);
+        garbageBytes += stringSize(data, names[row]) + stringSize(data, emailLocals[row]);
+    }
+
+    private int domainCode(String domain) {
+        Integer code = domainCodes.get(domain);
+        if (code == null) {
+            code = domains.size();
+            domains.add(domain);
+            domainCodes.put(domain, code);
+        }
+        return code;
+    }
+
+    private int findEmail(String email) {
+        int hash = email.hashCode();
+        int mask = emailSlots.length - 1;
+        for (int slot = spread(hash) & mask; emailSlots[slot] != 0; slot = (slot + 1) & mask) {
+            int row = emailSlots[slot] - 1;
+            if (row >= 0 && emailHashes[row] == hash && versions[row] != DELETED
+                    && email.equals(normalize(email(row)))) {
+                return row;
+            }
+        }
+        return NONE;
+    }
+
+    private void addEmailSlot(int row) {
+        if (emailSlots == null) {
+            return;
+        }
+        if ((usedSlots + 1) * 2 > emailSlots.length) {
+            rebuildEmailSlots();
+        } else {
+            insertSlot(row);
+        }
+    }
+
+    private void removeEmailSlot(int row) {
+        if (emailSlots == null || emailLocals[row] == NONE) {
+            return;
+        }
+        int mask = emailSlots.length - 1;
+        for (int slot = spread(emailHashes[row]) & mask; emailSlots[slot] != 0; slot = (slot + 1) & mask) {
+            if (emailSlots[slot] == row + 1) {
+                emailSlots[slot] = REMOVED_SLOT;
+                return;
+            }
+        }
+    }
+
+    private void rebuildEmailSlots() {
+        int capacity = INITIAL_ROWS * 2;
+        while (capacity < 4L * live) {
+            capacity <<= 1;
+        }
+        emailSlots = new int[capacity];
+        usedSlots = 0;
+        for (int row = 0; row < rows; row++) {
+            if (versions[row] != DELETED && emailLocals[row] != NONE) {
+                insertSlot(row);
+            }
+        }
+    }
+
+    private void insertSlot(int row) {
+        int mask = emailSlots.length - 1;
+        int slot = spread(emailHashes[row]) & mask;
+        while (emailSlots[slot] > 0) {
+            slot = (slot + 1) & mask;
+        }
+        if (emailSlots[slot] == 0) {
+            usedSlots++;
+        }
+        emailSlots[slot] = row + 1;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private List<User> scanNames(String prefix, int limit) {
+        List<User> result = new ArrayList<>();
+        for (int i = namePosition(prefix, Long.MIN_VALUE); i < namedUsers && result.size() < limit; i++) {
+            int row = Arrays.binarySearch(ids, 0, rows, nameOrder[i]);
+            if (!normalizedName(row).startsWith(prefix)) {
+                break;
+            }
+            result.add(materialize(row));
+        }
+        return result;
+    }
+
+    private void addName(String name, long id) {
+        if (namedUsers == nameOrder.length) {
+            nameOrder = Arrays.copyOf(nameOrder, nameOrder.length + (nameOrder.length >> 1));
+        }
+        int position = namePosition(name, id);
+        System.arraycopy(nameOrder, position, nameOrder, position + 1, namedUsers - position);
+        nameOrder[position] = id;
+        namedUsers++;
+    }
+
+    // Must run before the row's name changes, while the entry still sorts under the given name.
+    private void removeName(String name, long id) {
+        int position = namePosition(name, id);
+        System.arraycopy(nameOrder, position + 1, nameOrder, position, namedUsers - position - 1);
+        namedUsers--;
+    }
+
+    // Returns the first position in the name order whose entry is not below the given name and id.
+    private int namePosition(String name, long id) {
+        int low = 0;
+        int high = namedUsers;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            long other = nameOrder[middle];
+            int byName = normalizedName(Arrays.binarySearch(ids, 0, rows, other)).compareTo(name);
+            if (byName < 0 || byName == 0 && other < id) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private String normalizedName(int row) {
+        return normalize(readString(data, names[row]));
+    }
+
+    private void compactIfWasteful() {
+        int deadRows = rows - live;
+        if (deadRows > Math.max(rows / 2, INITIAL_ROWS) || garbageBytes > Math.max(dataEnd / 2, INITIAL_BYTES)) {
+            compact();
+        }
+    }
+
+    // Drops tombstone rows and copies live strings into a right-sized buffer.
+    private void compact() {
+        ByteBuffer source = data;
+        data = ByteBuffer.allocateDirect(Math.max(INITIAL_BYTES, dataEnd - garbageBytes));
+        dataEnd = 0;
+        garbageBytes = 0;
+        int kept = 0;
+        for (int row = 0; row < rows; row++) {
+            if (versions[row] == DELETED) {
+                continue;
+            }
+            ids[kept] = ids[row];
+            versions[kept] = versions[row];
+            names[kept] = copyString(source, names[row]);
+            emailLocals[kept] = copyString(source, emailLocals[row]);
+            emailDomains[kept] = emailDomains[row];
+            emailHashes[kept] = emailHashes[row];
+            kept++;
+        }
+        rows = kept;
+        rebuildEmailSlots();
+    }
+
+    private int copyString(ByteBuffer source, int offset) {
+        if (offset == NONE) {
+            return NONE;
+        }
+        int size = stringSize(source, offset);
+        int copied = dataEnd;
+        data.put(copied, source, offset, size);
+        dataEnd += size;
+        return copied;
+    }
+
+    private int writeString(String value) {
+        if (value == null) {
+            return NONE;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int offset = dataEnd;
+        int position = offset;
+        ensureDataCapacity(headerSize(bytes.length) + bytes.length);
+        for (int length = bytes.length; ; length >>>= 7) {
+            if (length < 0x80) {
+                data.put(position++, (byte) length);
+                break;
+            }
+            data.put(position++, (byte) (length | 0x80));
+        }
+        data.put(position, bytes);
+        dataEnd = position + bytes.length;
+        return offset;
+    }
+
+    private static String readString(ByteBuffer buffer, int offset) {
+        if (offset == NONE) {
+            return null;
+        }
+        int length = readLength(buffer, offset);
+        byte[] bytes = new byte[length];
+        buffer.get(offset + headerSize(length), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void ensureDataCapacity(int bytes) {
+        long required = (long) dataEnd + bytes;
+        if (required <= data.capacity()) {
+            return;
+        }
+        if (required > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Compact user store is full: string data exceeds 2 GB");
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect((int) Math.min(Integer.MAX_VALUE,
+                Math.max(required, 2L * data.capacity())));
+        grown.put(0, data, 0, dataEnd);
+        data = grown;
+    }
+
+    private static int stringSize(ByteBuffer buffer, int offset) {
+        if (offset == NONE) {
+            return 0;
+        }
+        int length = readLength(buffer, offset);
+        return headerSize(length) + length;
+    }
+
+    // Lengths are unsigned varints: seven bits per byte, high bit set on all but the last byte.
+    private static int readLength(ByteBuffer buffer, int offset) {
+        int length = 0;
+        int shift = 0;
+        byte next;
+        do {
+            next = buffer.get(offset++);
+            length |= (next & 0x7F) << shift;
+            shift += 7;
+        } while (next < 0);
+        return length;
+    }
+
+    private static int headerSize(int length) {
+        int size = 1;
+        while (length >= 0x80) {
+            length >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    // Live rows as of a snapshot; users are materialized as they are read.
+    private static final class FrozenUsers extends AbstractList<User> implements RandomAccess {
+
+        private final ByteBuffer data;
+
+        private final String[] domains;
+
+        private final long[] ids;
+
+        private final long[] versions;
+
+        private final int[] names;
+
+        private final int[] emailLocals;
+
+        private final int[] emailDomains;
+
+        FrozenUsers(ByteBuffer data, String[] domains, long[] ids, long[] versions, int[] names,
+                    int[] emailLocals, int[] emailDomains) {
+            this.data = data;
+            this.domains = domains;
+            this.ids = ids;
+            this.versions = versions;
+            this.names = names;
+            this.emailLocals = emailLocals;
+            this.emailDomains = emailDomains;
+        }
+
+        @Override
+        public User get(int index) {
+            String email = email(data, emailLocals[index],
+                    emailDomains[index] == NONE ? null : domains[emailDomains[index]]);
+            return user(data, ids[index], versions[index], names[index], email);
+        }
+
+        @Override
+        public int size() {
+            return ids.length;
+        }
+    }
+}
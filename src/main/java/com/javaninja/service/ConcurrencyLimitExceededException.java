@@ -0,0 +1,8 @@
+package com.javaninja.service;
+
+public class ConcurrencyLimitExceededException extends RuntimeException {
+
+    public ConcurrencyLimitExceededException(int limit) {
+        super("Concurrency limit of " + limit + " in-flight upstream calls reached");
+    }
+}
@@ -0,0 +1,19 @@
+package com.javaninja.service;
+
+public class DuplicateEmailException extends RuntimeException {
+
+    private final String email;
+
+    public DuplicateEmailException(String email) {
+        super(messageFor(email));
+        this.email = email;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    static String messageFor(String email) {
+        return "A user with email '" + email + "' already exists";
+    }
+}
@@ -0,0 +1,377 @@
+package com.javaninja.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "external-api")
+public class ExternalApiProperties {
+
+    // Left blank to resolve external-api through service discovery and the client-side load balancer.
+    private String url = "https://jsonplaceholder.typicode.com";
+
+    private final Cache cache = new Cache();
+
+    private final Coalescing coalescing = new Coalescing();
+
+    private final Batching batching = new Batching();
+
+    private final Limiter limiter = new Limiter();
+
+    private final Hedging hedging = new Hedging();
+
+    private final Retry retry = new Retry();
+
+    private final LoadBalancer loadBalancer = new LoadBalancer();
+
+    private boolean virtualThreads;
+
+    private boolean passThrough;
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public boolean isDiscovery() {
+        return url == null || url.isBlank();
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public Coalescing getCoalescing() {
+        return coalescing;
+    }
+
+    public Batching getBatching() {
+        return batching;
+    }
+
+    public Limiter getLimiter() {
+        return limiter;
+    }
+
+    public Hedging getHedging() {
+        return hedging;
+    }
+
+    public Retry getRetry() {
+        return retry;
+    }
+
+    public LoadBalancer getLoadBalancer() {
+        return loadBalancer;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    public boolean isPassThrough() {
+        return passThrough;
+    }
+
+    public void setPassThrough(boolean passThrough) {
+        this.passThrough = passThrough;
+    }
+
+    public static class Cache {
+
+        private boolean enabled = true;
+
+        private long maximumSize = 10_000;
+
+        private Duration expireAfterWrite = Duration.ofMinutes(10);
+
+        private Duration refreshAfterWrite = Duration.ofMinutes(1);
+
+        private Duration notFoundTtl = Duration.ofSeconds(30);
+
+        private Duration lastKnownGoodTtl = Duration.ofHours(1);
+
+        private boolean revalidate = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        public Duration getExpireAfterWrite() {
+            return expireAfterWrite;
+        }
+
+        public void setExpireAfterWrite(Duration expireAfterWrite) {
+            this.expireAfterWrite = expireAfterWrite;
+        }
+
+        public Duration getRefreshAfterWrite() {
+            return refreshAfterWrite;
+        }
+
+        public void setRefreshAfterWrite(Duration refreshAfterWrite) {
+            this.refreshAfterWrite = refreshAfterWrite;
+        }
+
+        public Duration getNotFoundTtl() {
+            return notFoundTtl;
+        }
+
+        public void setNotFoundTtl(Duration notFoundTtl) {
+            this.notFoundTtl = notFoundTtl;
+        }
+
+        public Duration getLastKnownGoodTtl() {
+            return lastKnownGoodTtl;
+        }
+
+        public void setLastKnownGoodTtl(Duration lastKnownGoodTtl) {
+            this.lastKnownGoodTtl = lastKnownGoodTtl;
+        }
+
+        public boolean isRevalidate() {
+            return revalidate;
+        }
+
+        public void setRevalidate(boolean revalidate) {
+            this.revalidate = revalidate;
+        }
+    }
+
+    public static class Coalescing {
+
+        private boolean enabled = true;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+    }
+
+    public static class Batching {
+
+        private boolean enabled;
+
+        private Duration window = Duration.ofMillis(2);
+
+        private int maxBatchSize = 50;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+    }
+
+    public static class Limiter {
+
+        private boolean enabled = true;
+
+        private int initialLimit = 20;
+
+        private int minLimit = 2;
+
+        private int maxLimit = 200;
+
+        private double backoffRatio = 0.9;
+
+        private Duration latencyThreshold = Duration.ofSeconds(1);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public void setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+
+        public double getBackoffRatio() {
+            return backoffRatio;
+        }
+
+        public void setBackoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+        }
+
+        public Duration getLatencyThreshold() {
+            return latencyThreshold;
+        }
+
+        public void setLatencyThreshold(Duration latencyThreshold) {
+            this.latencyThreshold = latencyThreshold;
+        }
+    }
+
+    public static class Hedging {
+
+        private boolean enabled;
+
+        private double percentile = 0.95;
+
+        private Duration minDelay = Duration.ofMillis(20);
+
+        private int sampleSize = 1000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getPercentile() {
+            return percentile;
+        }
+
+        public void setPercentile(double percentile) {
+            this.percentile = percentile;
+        }
+
+        public Duration getMinDelay() {
+            return minDelay;
+        }
+
+        public void setMinDelay(Duration minDelay) {
+            this.minDelay = minDelay;
+        }
+
+        public int getSampleSize() {
+            return sampleSize;
+        }
+
+        public void setSampleSize(int sampleSize) {
+            this.sampleSize = sampleSize;
+        }
+    }
+
+    public static class Retry {
+
+        private boolean enabled;
+
+        private int maxRetries = 1;
+
+        private double budgetRatio = 0.1;
+
+        private int maxBudget = 10;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getMaxRetries() {
+            return maxRetries;
+        }
+
+        public void setMaxRetries(int maxRetries) {
+            this.maxRetries = maxRetries;
+        }
+
+        public double getBudgetRatio() {
+            return budgetRatio;
+        }
+
+        public void setBudgetRatio(double budgetRatio) {
+            this.budgetRatio = budgetRatio;
+        }
+
+        public int getMaxBudget() {
+            return maxBudget;
+        }
+
+        public void setMaxBudget(int maxBudget) {
+            this.maxBudget = maxBudget;
+        }
+    }
+
+    public static class LoadBalancer {
+
+        private Duration decay = Duration.ofSeconds(10);
+
+        private Duration failurePenalty = Duration.ofSeconds(1);
+
+        public Duration getDecay() {
+            return decay;
+        }
+
+        public void setDecay(Duration decay) {
+            this.decay = decay;
+        }
+
+        public Duration getFailurePenalty() {
+            return failurePenalty;
+        }
+
+        public void setFailurePenalty(Duration failurePenalty) {
+            this.failurePenalty = failurePenalty;
+        }
+    }
+}
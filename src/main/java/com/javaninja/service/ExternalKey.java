@@ -0,0 +1,17 @@
+package com.javaninja.service;
+
+record ExternalKey(Endpoint endpoint, long id) {
+
+    enum Endpoint {
+        POSTS,
+        USERS
+    }
+
+    static ExternalKey post(long id) {
+        return new ExternalKey(Endpoint.POSTS, id);
+    }
+
+    static ExternalKey user(long id) {
+        return new ExternalKey(Endpoint.USERS, id);
+    }
+}
@@ -1,50 +1,798 @@
 package com.javaninja.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.javaninja.client.ExternalApiClient;
-import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import com.javaninja.client.ResponseBodies;
+import com.javaninja.model.ExternalResource;
+import com.javaninja.model.ExternalUser;
+import com.javaninja.model.Post;
+import feign.FeignException;
+import feign.Response;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkhead;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiter;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.annotation.PreDestroy;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Service
 public class ExternalService {
     
+    static final String CIRCUIT_BREAKER_NAME = "external-api";
+    
+    static final String CACHE_NAME = "external-api";
+    
+    static final String BULKHEAD_NAME = "external-api";
+    
+    static final String TIME_LIMITER_NAME = "external-api";
+    
+    static final String NOT_FOUND_CACHE_NAME = "external-api-not-found";
+    
+    private static final String UNAVAILABLE = "External service is currently unavailable";
+    
+    // Fallbacks are built once; a failed call only stamps the requested id onto them.
+    private static final Post FALLBACK_POST = new Post(null, 1L, "Fallback Post",
+            "This is a fallback response due to service unavailability", UNAVAILABLE);
+    
+    private static final ExternalUser FALLBACK_USER = new ExternalUser(null, "Fallback User", null,
+            "fallback@example.com", null, null, UNAVAILABLE);
+    
     private final ExternalApiClient externalApiClient;
     
-    @Autowired
+    // The application's mapper, so revalidated bodies and relayed fallbacks read and write JSON the
+    // same way as the Feign decoder and the HTTP message converters.
+    private final ObjectMapper objectMapper;
+    
+    private final ObjectWriter fallbackWriter;
+    
+    private final byte[] fallbackPostJson;
+    
+    private final byte[] fallbackUserJson;
+    
+    private final CircuitBreaker circuitBreaker;
+    
+    private final TimeLimiter timeLimiter;
+    
+    private final ThreadPoolBulkhead threadPoolBulkhead;
+    
+    private final Bulkhead bulkhead;
+    
+    private final Executor virtualThreadExecutor;
+    
+    private final ScheduledExecutorService timeoutScheduler;
+    
+    private final LoadingCache<ExternalKey, ExternalResource> cache;
+    
+    private final Cache<ExternalKey, Boolean> notFound;
+    
+    private final Cache<ExternalKey, ExternalResource> lastKnownGood;
+    
+    private final Cache<ExternalKey, Validator> validators;
+    
+    private final Counter revalidatedUnchanged;
+    
+    private final Counter revalidatedChanged;
+    
+    private final SingleFlight<ExternalKey, ExternalResource> singleFlight;
+    
+    private final Map<ExternalKey.Endpoint, MicroBatcher<ExternalResource>> batchers;
+    
+    private final AdaptiveConcurrencyLimiter limiter;
+    
+    private final ExecutorService hedgeExecutor;
+    
+    private final Hedger hedger;
+    
+    private final boolean passThrough;
+    
+    // Indexed by endpoint and outcome ordinal; every combination is registered up front so
+    // recording a lookup allocates no tags.
+    private final Timer[][] requestTimers;
+    
+    private final List<Consumer<ExternalResource>> invalidationListeners = new CopyOnWriteArrayList<>();
+    
     public ExternalService(ExternalApiClient externalApiClient) {
+        this(externalApiClient, CircuitBreakerRegistry.ofDefaults(), TimeLimiterRegistry.ofDefaults(),
+                ThreadPoolBulkheadRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(),
+                new ExternalApiProperties(), new SimpleMeterRegistry());
+    }
+    
+    public ExternalService(ExternalApiClient externalApiClient,
+                           CircuitBreakerRegistry circuitBreakerRegistry,
+                           TimeLimiterRegistry timeLimiterRegistry,
+                           ThreadPoolBulkheadRegistry threadPoolBulkheadRegistry,
+                           BulkheadRegistry bulkheadRegistry,
+                           ExternalApiProperties properties,
+                           MeterRegistry meterRegistry) {
+        this(externalApiClient, circuitBreakerRegistry, timeLimiterRegistry, threadPoolBulkheadRegistry,
+                bulkheadRegistry, properties, new ObjectMapper(), meterRegistry);
+    }
+    
+    @Autowired
+    public ExternalService(ExternalApiClient externalApiClient,
+                           CircuitBreakerRegistry circuitBreakerRegistry,
+                           TimeLimiterRegistry timeLimiterRegistry,
+                           ThreadPoolBulkheadRegistry threadPoolBulkheadRegistry,
+                           BulkheadRegistry bulkheadRegistry,
+                           ExternalApiProperties properties,
+                           ObjectMapper objectMapper,
+                           MeterRegistry meterRegistry) {
         this.externalApiClient = externalApiClient;
+        this.objectMapper = objectMapper;
+        this.fallbackWriter = objectMapper.writer();
+        this.fallbackPostJson = serialize(FALLBACK_POST);
+        this.fallbackUserJson = serialize(FALLBACK_USER);
+        // Behind the load balancer each instance has its own breaker, so there is no global one.
+        this.circuitBreaker = properties.isDiscovery()
+                ? null
+                : circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_NAME);
+        this.timeLimiter = timeLimiterRegistry.timeLimiter(TIME_LIMITER_NAME);
+        // With virtual threads every upstream call gets its own cheap thread, so concurrency is capped
+        // by the semaphore bulkhead instead of a fixed pool; otherwise the thread-pool bulkhead is both.
+        if (properties.isVirtualThreads()) {
+            this.threadPoolBulkhead = null;
+            this.bulkhead = bulkheadRegistry.bulkhead(BULKHEAD_NAME);
+            this.virtualThreadExecutor = new VirtualThreadTaskExecutor("external-api-");
+        } else {
+            this.threadPoolBulkhead = threadPoolBulkheadRegistry.bulkhead(BULKHEAD_NAME);
+            this.bulkhead = null;
+            this.virtualThreadExecutor = null;
+        }
+        this.timeoutScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "external-api-timeouts");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.singleFlight = properties.getCoalescing().isEnabled()
+                ? new SingleFlight<>(Counter.builder("external.api.coalesced")
+                        .description("Upstream calls avoided by joining an identical in-flight call")
+                        .register(meterRegistry))
+                : null;
+        this.batchers = properties.getBatching().isEnabled()
+                ? Map.of(ExternalKey.Endpoint.POSTS, buildBatcher(ExternalKey.Endpoint.POSTS, properties.getBatching(), meterRegistry),
+                         ExternalKey.Endpoint.USERS, buildBatcher(ExternalKey.Endpoint.USERS, properties.getBatching(), meterRegistry))
+                : null;
+        this.limiter = properties.getLimiter().isEnabled() ? buildLimiter(properties.getLimiter(), meterRegistry) : null;
+        // Callers already run on bulkhead threads, so each can have at most one first attempt and one
+        // hedge in flight; beyond that the hedger runs calls inline and skips the hedge.
+        this.hedgeExecutor = properties.getHedging().isEnabled() && virtualThreadExecutor == null
+                ? hedgeExecutor(2 * threadPoolBulkhead.getBulkheadConfig().getMaxThreadPoolSize())
+                : null;
+        this.hedger = properties.getHedging().isEnabled() || properties.getRetry().isEnabled()
+                ? buildHedger(properties.getHedging(), properties.getRetry(), meterRegistry)
+                : null;
+        this.validators = properties.getCache().isEnabled() && properties.getCache().isRevalidate()
+                ? Caffeine.newBuilder()
+                        .maximumSize(properties.getCache().getMaximumSize())
+                        .expireAfterWrite(properties.getCache().getExpireAfterWrite())
+                        .build()
+                : null;
+        this.revalidatedUnchanged = revalidations("not_modified", meterRegistry);
+        this.revalidatedChanged = revalidations("modified", meterRegistry);
+        this.cache = properties.getCache().isEnabled() ? buildCache(properties.getCache(), meterRegistry) : null;
+        this.notFound = buildNotFoundCache(properties.getCache(), meterRegistry);
+        this.lastKnownGood = buildLastKnownGoodCache(properties.getCache());
+        this.passThrough = properties.isPassThrough();
+        this.requestTimers = requestTimers(meterRegistry);
+    }
+    
+    // Single lookups share the async path, so blocking callers get the same bulkhead, time limiter
+    // and fast fallback; cache hits still complete without a thread hop.
+    public Post getPost(Long id) {
+        return getPostAsync(id).join();
+    }
+    
+    public ExternalUser getExternalUser(Long id) {
+        return getExternalUserAsync(id).join();
+    }
+    
+    public List<Post> getPosts(List<Long> ids) {
+        return getAll(ExternalKey.Endpoint.POSTS, ids, Post.class);
+    }
+    
+    public List<ExternalUser> getExternalUsers(List<Long> ids) {
+        return getAll(ExternalKey.Endpoint.USERS, ids, ExternalUser.class);
+    }
+    
+    // The async variants answer cache hits on the calling thread. Misses run behind the external-api
+    // bulkhead, on its thread pool or on virtual threads, under the time limiter, so request threads
+    // never wait on the upstream; a full bulkhead or a timeout sheds straight to the fallback.
+    public CompletableFuture<Post> getPostAsync(Long id) {
+        return getAsync(ExternalKey.post(id))
+                .thenApply(Post.class::cast)
+                .exceptionally(ex -> fallbackGetPost(id, unwrap(ex)));
+    }
+    
+    public CompletableFuture<ExternalUser> getExternalUserAsync(Long id) {
+        return getAsync(ExternalKey.user(id))
+                .thenApply(ExternalUser.class::cast)
+                .exceptionally(ex -> fallbackGetExternalUser(id, unwrap(ex)));
+    }
+    
+    public CompletableFuture<List<Post>> getPostsAsync(List<Long> ids) {
+        return offload(() -> getPosts(ids))
+                .exceptionally(ex -> fallbacks(ExternalKey.Endpoint.POSTS, new LinkedHashSet<>(ids), Post.class, unwrap(ex)));
+    }
+    
+    public CompletableFuture<List<ExternalUser>> getExternalUsersAsync(List<Long> ids) {
+        return offload(() -> getExternalUsers(ids))
+                .exceptionally(ex -> fallbacks(ExternalKey.Endpoint.USERS, new LinkedHashSet<>(ids), ExternalUser.class, unwrap(ex)));
+    }
+    
+    public boolean isPassThrough() {
+        return passThrough;
+    }
+    
+    /**
+     * Registers a listener for cached resources that are replaced by a refresh, expire or are evicted.
+     * It receives the old value and runs asynchronously, after the cache has already changed.
+     */
+    public void addInvalidationListener(Consumer<ExternalResource> listener) {
+        invalidationListeners.add(listener);
+    }
+    
+    // Pass-through relays the upstream body byte-for-byte, skipping decode, cache and re-encode.
+    // Breaker, bulkhead and time limiter still apply, and failures relay the serialized fallback.
+    public CompletableFuture<byte[]> relayPostAsync(Long id) {
+        return observed(ExternalKey.Endpoint.POSTS, System.nanoTime(), offload(() -> relay(ExternalKey.post(id))))
+                .exceptionally(ex -> relayFallback(ExternalKey.post(id), fallbackPostJson, unwrap(ex)));
+    }
+    
+    public CompletableFuture<byte[]> relayExternalUserAsync(Long id) {
+        return observed(ExternalKey.Endpoint.USERS, System.nanoTime(), offload(() -> relay(ExternalKey.user(id))))
+                .exceptionally(ex -> relayFallback(ExternalKey.user(id), fallbackUserJson, unwrap(ex)));
+    }
+    
+    // Fallbacks prefer the last value the upstream returned for the id, unless it reported the id
+    // as gone; otherwise the pre-built response is returned.
+    public Post fallbackGetPost(Long id, Exception ex) {
+        ExternalResource stale = lastKnownGood(ExternalKey.post(id), ex);
+        return stale != null ? (Post) stale : FALLBACK_POST.withId(id);
+    }
+    
+    public ExternalUser fallbackGetExternalUser(Long id, Exception ex) {
+        ExternalResource stale = lastKnownGood(ExternalKey.user(id), ex);
+        return stale != null ? (ExternalUser) stale : FALLBACK_USER.withId(id);
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        timeoutScheduler.shutdownNow();
+        if (hedgeExecutor != null) {
+            hedgeExecutor.shutdownNow();
+        }
+    }
+    
+    // Runs after getAsync has already looked the key up and counted the miss. The value is loaded
+    // outside the cache, with concurrent loads of a key shared by the single-flight, because
+    // Caffeine's own loading runs inside ConcurrentHashMap.compute: that would record the miss a
+    // second time and, on virtual threads, pin the carrier for the whole upstream call.
+    private ExternalResource load(ExternalKey key) {
+        if (cache == null) {
+            return fetch(key);
+        }
+        ExternalResource cached = cache.asMap().get(key);
+        if (cached != null) {
+            return cached;
+        }
+        ExternalResource loaded = fetch(key);
+        cache.put(key, loaded);
+        return loaded;
     }
     
-    @CircuitBreaker(name = "external-api", fallbackMethod = "fallbackGetPost")
-    public Map<String, Object> getPost(Long id) {
-        return externalApiClient.getPost(id);
+    private CompletableFuture<ExternalResource> getAsync(ExternalKey key) {
+        long start = System.nanoTime();
+        if (cache != null) {
+            ExternalResource cached = cache.getIfPresent(key);
+            if (cached != null) {
+                observe(key.endpoint(), Outcome.CACHE_HIT, start);
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+        return observed(key.endpoint(), start, offload(() -> load(key)));
     }
     
-    @CircuitBreaker(name = "external-api", fallbackMethod = "fallbackGetExternalUser")
-    public Map<String, Object> getExternalUser(Long id) {
-        return externalApiClient.getExternalUser(id);
+    private <T> CompletableFuture<T> observed(ExternalKey.Endpoint endpoint, long startNanos, CompletableFuture<T> call) {
+        return call.whenComplete((value, ex) -> observe(endpoint, outcome(ex), startNanos));
     }
     
-    public Map<String, Object> fallbackGetPost(Long id, Exception ex) {
-        Map<String, Object> fallback = new HashMap<>();
-        fallback.put("id", id);
-        fallback.put("title", "Fallback Post");
-        fallback.put("body", "This is a fallback response due to service unavailability");
-        fallback.put("userId", 1);
-        fallback.put("error", "External service is currently unavailable");
-        return fallback;
+    private void observe(ExternalKey.Endpoint endpoint, Outcome outcome, long startNanos) {
+        requestTimers[endpoint.ordinal()][outcome.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
     }
     
-    public Map<String, Object> fallbackGetExternalUser(Long id, Exception ex) {
-        Map<String, Object> fallback = new HashMap<>();
-        fallback.put("id", id);
-        fallback.put("name", "Fallback User");
-        fallback.put("email", "fallback@example.com");
-        fallback.put("error", "External service is currently unavailable");
-        return fallback;
+    private static Outcome outcome(Throwable ex) {
+        if (ex == null) {
+            return Outcome.SUCCESS;
+        }
+        Exception cause = unwrap(ex);
+        if (cause instanceof CallNotPermittedException) {
+            return Outcome.BREAKER_OPEN;
+        }
+        return isNotFound(cause) ? Outcome.NOT_FOUND : Outcome.FALLBACK;
+    }
+    
+    private <T> CompletableFuture<T> offload(Supplier<T> call) {
+        try {
+            if (virtualThreadExecutor != null) {
+                Supplier<T> guarded = () -> bulkhead.executeSupplier(call);
+                return timeLimiter.executeCompletionStage(timeoutScheduler,
+                                () -> CompletableFuture.supplyAsync(guarded, virtualThreadExecutor))
+                        .toCompletableFuture();
+            }
+            return timeLimiter.executeCompletionStage(timeoutScheduler, () -> threadPoolBulkhead.executeSupplier(call))
+                    .toCompletableFuture();
+        } catch (RuntimeException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+    
+    private <T extends ExternalResource> List<T> fallbacks(ExternalKey.Endpoint endpoint, Iterable<Long> ids,
+                                                            Class<T> type, Exception ex) {
+        List<T> fallbacks = new ArrayList<>();
+        for (Long id : ids) {
+            fallbacks.add(type.cast(endpoint == ExternalKey.Endpoint.POSTS
+                    ? fallbackGetPost(id, ex)
+                    : fallbackGetExternalUser(id, ex)));
+        }
+        return fallbacks;
+    }
+    
+    private byte[] relay(ExternalKey key) {
+        return unlessNotFound(key, () -> hedged(() -> {
+            try (Response response = switch (key.endpoint()) {
+                case POSTS -> externalApiClient.getPostResponse(key.id());
+                case USERS -> externalApiClient.getExternalUserResponse(key.id());
+            }) {
+                if (response.status() / 100 != 2) {
+                    throw FeignException.errorStatus("ExternalApiClient#relay", response);
+                }
+                if (response.body() == null) {
+                    return new byte[0];
+                }
+                try (InputStream body = ResponseBodies.open(response)) {
+                    return body.readAllBytes();
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }));
+    }
+    
+    private ExternalResource lastKnownGood(ExternalKey key, Exception ex) {
+        return lastKnownGood != null && !isNotFound(ex) ? lastKnownGood.getIfPresent(key) : null;
+    }
+    
+    private byte[] relayFallback(ExternalKey key, byte[] template, Exception ex) {
+        ExternalResource stale = lastKnownGood(key, ex);
+        return stale != null ? serialize(stale) : withId(template, key.id());
+    }
+    
+    // The templates are serialized without an id, so the id is spliced in as the first field.
+    private static byte[] withId(byte[] template, long id) {
+        byte[] prefix = ("{\"id\":" + id + ",").getBytes(StandardCharsets.US_ASCII);
+        byte[] json = Arrays.copyOf(prefix, prefix.length + template.length - 1);
+        System.arraycopy(template, 1, json, prefix.length, template.length - 1);
+        return json;
+    }
+    
+    private static boolean isNotFound(Exception ex) {
+        return ex instanceof UpstreamNotFoundException || ex instanceof FeignException.NotFound;
+    }
+    
+    private byte[] serialize(ExternalResource resource) {
+        try {
+            return fallbackWriter.writeValueAsBytes(resource);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+    
+    private static Exception unwrap(Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        return cause instanceof Exception exception ? exception : new CompletionException(cause);
+    }
+    
+    // Results follow the order of the requested ids; ids the upstream does not know are left out.
+    private <T extends ExternalResource> List<T> getAll(ExternalKey.Endpoint endpoint, List<Long> ids, Class<T> type) {
+        Set<ExternalKey> keys = new LinkedHashSet<>();
+        for (Long id : ids) {
+            keys.add(new ExternalKey(endpoint, id));
+        }
+        Map<ExternalKey, ExternalResource> found;
+        try {
+            found = cache != null ? cache.getAll(keys) : fetchAll(keys);
+        } catch (RuntimeException ex) {
+            return fallbacks(endpoint, keys.stream().map(ExternalKey::id).toList(), type, ex);
+        }
+        List<T> result = new ArrayList<>(found.size());
+        for (ExternalKey key : keys) {
+            ExternalResource value = found.get(key);
+            if (value != null) {
+                result.add(type.cast(value));
+            }
+        }
+        return result;
+    }
+    
+    // Cache misses for one key already share a single load; coalescing here also covers
+    // background refreshes and the uncached configuration.
+    private ExternalResource fetch(ExternalKey key) {
+        ExternalResource value = unlessNotFound(key, () -> singleFlight != null
+                ? singleFlight.execute(key, () -> callUpstream(key))
+                : callUpstream(key));
+        remember(key, value);
+        return value;
+    }
+    
+    // Ids the upstream recently reported missing are answered from the negative cache without a call.
+    private <T> T unlessNotFound(ExternalKey key, Supplier<T> call) {
+        if (notFound == null) {
+            return call.get();
+        }
+        if (notFound.getIfPresent(key) != null) {
+            throw new UpstreamNotFoundException(resourceName(key.endpoint()), key.id());
+        }
+        try {
+            return call.get();
+        } catch (RuntimeException ex) {
+            if (isNotFound(ex)) {
+                notFound.put(key, Boolean.TRUE);
+            }
+            throw ex;
+        }
+    }
+    
+    // Refreshes send the ETag the upstream gave for the cached value, so an unchanged resource costs a
+    // 304 with no body to transfer or decode. The first refresh of an entry loaded without an ETag
+    // is a plain GET that picks one up.
+    private ExternalResource revalidate(ExternalKey key, ExternalResource cached) {
+        Validator validator = validators.getIfPresent(key);
+        String etag = validator != null && validator.value() == cached ? validator.etag() : null;
+        ExternalResource value = unlessNotFound(key, () -> guarded(() -> conditionalGet(key, cached, etag)));
+        remember(key, value);
+        return value;
+    }
+    
+    private ExternalResource conditionalGet(ExternalKey key, ExternalResource cached, String etag) {
+        try (Response response = switch (key.endpoint()) {
+            case POSTS -> etag != null
+                    ? externalApiClient.getPostResponse(key.id(), etag)
+                    : externalApiClient.getPostResponse(key.id());
+            case USERS -> etag != null
+                    ? externalApiClient.getExternalUserResponse(key.id(), etag)
+                    : externalApiClient.getExternalUserResponse(key.id());
+        }) {
+            if (response.status() == 304 && etag != null) {
+                revalidatedUnchanged.increment();
+                return cached;
+            }
+            if (response.status() / 100 != 2 || response.body() == null) {
+                throw FeignException.errorStatus("ExternalApiClient#revalidate", response);
+            }
+            Class<? extends ExternalResource> type = switch (key.endpoint()) {
+                case POSTS -> Post.class;
+                case USERS -> ExternalUser.class;
+            };
+            ExternalResource value;
+            try (InputStream body = ResponseBodies.open(response)) {
+                value = objectMapper.readValue(body, type);
+            }
+            Collection<String> etags = response.headers().get(HttpHeaders.ETAG);
+            if (etags != null && !etags.isEmpty()) {
+                validators.put(key, new Validator(value, etags.iterator().next()));
+            }
+            revalidatedChanged.increment();
+            return value;
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+    
+    private void remember(ExternalKey key, ExternalResource value) {
+        if (lastKnownGood != null) {
+            lastKnownGood.put(key, value);
+        }
+    }
+    
+    private ExternalResource callUpstream(ExternalKey key) {
+        if (batchers != null) {
+            return batchers.get(key.endpoint()).get(key.id());
+        }
+        return hedged(() -> switch (key.endpoint()) {
+            case POSTS -> externalApiClient.getPost(key.id());
+            case USERS -> externalApiClient.getExternalUser(key.id());
+        });
+    }
+    
+    private Map<ExternalKey, ExternalResource> fetchAll(Set<? extends ExternalKey> keys) {
+        Map<ExternalKey.Endpoint, List<Long>> idsByEndpoint = new LinkedHashMap<>();
+        for (ExternalKey key : keys) {
+            if (notFound == null || notFound.getIfPresent(key) == null) {
+                idsByEndpoint.computeIfAbsent(key.endpoint(), endpoint -> new ArrayList<>()).add(key.id());
+            }
+        }
+        Map<ExternalKey, ExternalResource> result = new HashMap<>();
+        idsByEndpoint.forEach((endpoint, ids) -> {
+            Map<Long, ExternalResource> found = callUpstream(endpoint, ids);
+            for (Long id : ids) {
+                ExternalKey key = new ExternalKey(endpoint, id);
+                ExternalResource value = found.get(id);
+                if (value != null) {
+                    result.put(key, value);
+                    remember(key, value);
+                } else if (notFound != null) {
+                    notFound.put(key, Boolean.TRUE);
+                }
+            }
+        });
+        return result;
+    }
+    
+    private Map<Long, ExternalResource> callUpstream(ExternalKey.Endpoint endpoint, List<Long> ids) {
+        List<? extends ExternalResource> items = guarded(() -> switch (endpoint) {
+            case POSTS -> externalApiClient.getPosts(ids);
+            case USERS -> externalApiClient.getExternalUsers(ids);
+        });
+        Map<Long, ExternalResource> byId = new HashMap<>();
+        for (ExternalResource item : items) {
+            if (item.id() != null) {
+                byId.put(item.id(), item);
+            }
+        }
+        return byId;
+    }
+    
+    // Every upstream request passes the adaptive limiter first, then the circuit breaker.
+    private <T> T guarded(Supplier<T> call) {
+        Supplier<T> breaker = circuitBreaker != null ? () -> circuitBreaker.executeSupplier(call) : call;
+        return limiter != null ? limiter.execute(breaker) : breaker.get();
+    }
+    
+    // Single-resource calls may also be hedged and retried; each attempt is guarded on its own.
+    private <T> T hedged(Supplier<T> call) {
+        return hedger != null ? hedger.execute(() -> guarded(call)) : guarded(call);
+    }
+    
+    // Not-found answers and calls the open breaker refused say nothing about upstream load.
+    private static boolean isOverload(RuntimeException ex) {
+        if (ex instanceof UpstreamNotFoundException || ex instanceof CallNotPermittedException) {
+            return false;
+        }
+        return !(ex instanceof FeignException feign) || feign.status() < 400 || feign.status() >= 500;
+    }
+    
+    private AdaptiveConcurrencyLimiter buildLimiter(ExternalApiProperties.Limiter settings, MeterRegistry meterRegistry) {
+        AdaptiveConcurrencyLimiter adaptive = new AdaptiveConcurrencyLimiter(settings.getInitialLimit(),
+                settings.getMinLimit(), settings.getMaxLimit(), settings.getBackoffRatio(),
+                settings.getLatencyThreshold(), ExternalService::isOverload,
+                Counter.builder("external.api.limiter.rejected")
+                        .description("Upstream calls shed because the concurrency limit was reached")
+                        .register(meterRegistry));
+        Gauge.builder("external.api.limiter.limit", adaptive, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive limit on in-flight upstream calls")
+                .register(meterRegistry);
+        Gauge.builder("external.api.limiter.in.flight", adaptive, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Upstream calls currently in flight")
+                .register(meterRegistry);
+        return adaptive;
+    }
+    
+    private Hedger buildHedger(ExternalApiProperties.Hedging hedging, ExternalApiProperties.Retry retry,
+                               MeterRegistry meterRegistry) {
+        RetryBudget budget = new RetryBudget(retry.getBudgetRatio(), retry.getMaxBudget());
+        Gauge.builder("external.api.retry.budget", budget, RetryBudget::getBalance)
+                .description("Hedges and retries currently affordable")
+                .register(meterRegistry);
+        Hedger created = new Hedger(virtualThreadExecutor != null ? virtualThreadExecutor : hedgeExecutor,
+                hedging.isEnabled(), hedging.getPercentile(), hedging.getMinDelay(), hedging.getSampleSize(),
+                retry.isEnabled() ? retry.getMaxRetries() : 0, budget,
+                // A call shed by our own limiter must not come straight back as a retry.
+                ex -> isOverload(ex) && !(ex instanceof ConcurrencyLimitExceededException),
+                Counter.builder("external.api.hedge.calls")
+                        .description("Upstream calls eligible for hedging or retry")
+                        .register(meterRegistry),
+                Counter.builder("external.api.hedge.requests")
+                        .description("Hedge attempts started because the first attempt was slow")
+                        .register(meterRegistry),
+                Counter.builder("external.api.hedge.wins")
+                        .description("Hedge attempts that answered before the first attempt")
+                        .register(meterRegistry),
+                Counter.builder("external.api.retries")
+                        .description("Upstream calls retried after a failure")
+                        .register(meterRegistry),
+                Counter.builder("external.api.retry.budget.exhausted")
+                        .description("Hedges or retries skipped because the budget was spent")
+                        .register(meterRegistry));
+        Gauge.builder("external.api.hedge.delay", created, Hedger::getHedgeDelayMillis)
+                .description("Current hedge delay in milliseconds")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        return created;
+    }
+    
+    private static ExecutorService hedgeExecutor(int maxThreads) {
+        return new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                daemonThreads("external-api-hedge"));
+    }
+    
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    private MicroBatcher<ExternalResource> buildBatcher(ExternalKey.Endpoint endpoint,
+                                                           ExternalApiProperties.Batching settings,
+                                                           MeterRegistry meterRegistry) {
+        String resource = resourceName(endpoint);
+        return new MicroBatcher<>(settings.getWindow(), settings.getMaxBatchSize(),
+                ids -> callUpstream(endpoint, ids),
+                id -> new UpstreamNotFoundException(resource, id),
+                DistributionSummary.builder("external.api.batch.size")
+                        .description("Number of ids sent in one upstream request")
+                        .tag("endpoint", resource)
+                        .register(meterRegistry));
+    }
+    
+    private static Timer[][] requestTimers(MeterRegistry meterRegistry) {
+        ExternalKey.Endpoint[] endpoints = ExternalKey.Endpoint.values();
+        Outcome[] outcomes = Outcome.values();
+        Timer[][] timers = new Timer[endpoints.length][outcomes.length];
+        for (ExternalKey.Endpoint endpoint : endpoints) {
+            for (Outcome outcome : outcomes) {
+                timers[endpoint.ordinal()][outcome.ordinal()] = Timer.builder("external.api.requests")
+                        .description("Single-resource lookups as seen by callers, by how they were answered")
+                        .tag("endpoint", resourceName(endpoint))
+                        .tag("outcome", outcome.name().toLowerCase(Locale.ROOT))
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofNanos(100))
+                        .maximumExpectedValue(Duration.ofSeconds(10))
+                        .register(meterRegistry);
+            }
+        }
+        return timers;
+    }
+    
+    private static Counter revalidations(String result, MeterRegistry meterRegistry) {
+        return Counter.builder("external.api.revalidations")
+                .description("Cache refreshes sent upstream as conditional requests, by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+    
+    private static String resourceName(ExternalKey.Endpoint endpoint) {
+        return endpoint.name().toLowerCase(Locale.ROOT);
+    }
+    
+    private Cache<ExternalKey, Boolean> buildNotFoundCache(ExternalApiProperties.Cache settings,
+                                                          MeterRegistry meterRegistry) {
+        if (!settings.isEnabled() || settings.getNotFoundTtl().isZero()) {
+            return null;
+        }
+        Cache<ExternalKey, Boolean> negative = Caffeine.newBuilder()
+                .maximumSize(settings.getMaximumSize())
+                .expireAfterWrite(settings.getNotFoundTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, negative, NOT_FOUND_CACHE_NAME);
+        return negative;
+    }
+    
+    // Outlives the main cache so a fallback can still return real data long after the entry expired.
+    private Cache<ExternalKey, ExternalResource> buildLastKnownGoodCache(ExternalApiProperties.Cache settings) {
+        if (!settings.isEnabled() || settings.getLastKnownGoodTtl().isZero()) {
+            return null;
+        }
+        return Caffeine.newBuilder()
+                .maximumSize(settings.getMaximumSize())
+                .expireAfterWrite(settings.getLastKnownGoodTtl())
+                .build();
+    }
+    
+    // Caffeine's refreshAfterWrite keeps serving the cached value while a background reload runs,
+    // so hot entries are revalidated without blocking callers; failed reloads keep the old value.
+    // Reloads are offloaded like foreground misses rather than onto Caffeine's default common-pool
+    // executor, so a refresh storm is bounded by the bulkhead and time limiter and a refresh that
+    // finds the bulkhead full is shed.
+    private LoadingCache<ExternalKey, ExternalResource> buildCache(ExternalApiProperties.Cache settings,
+                                                                   MeterRegistry meterRegistry) {
+        LoadingCache<ExternalKey, ExternalResource> loadingCache = Caffeine.newBuilder()
+                .maximumSize(settings.getMaximumSize())
+                .expireAfterWrite(settings.getExpireAfterWrite())
+                .refreshAfterWrite(settings.getRefreshAfterWrite())
+                .removalListener((ExternalKey key, ExternalResource value, RemovalCause cause) -> {
+                    for (Consumer<ExternalResource> listener : invalidationListeners) {
+                        listener.accept(value);
+                    }
+                })
+                .recordStats()
+                .build(new CacheLoader<>() {
+                    @Override
+                    public ExternalResource load(ExternalKey key) {
+                        return fetch(key);
+                    }
+                    
+                    @Override
+                    public Map<ExternalKey, ExternalResource> loadAll(Set<? extends ExternalKey> keys) {
+                        return fetchAll(keys);
+                    }
+                    
+                    @Override
+                    public ExternalResource reload(ExternalKey key, ExternalResource oldValue) {
+                        return validators != null ? revalidate(key, oldValue) : fetch(key);
+                    }
+                    
+                    @Override
+                    public CompletableFuture<ExternalResource> asyncReload(ExternalKey key, ExternalResource oldValue,
+                                                                           Executor executor) {
+                        return offload(() -> reload(key, oldValue));
+                    }
+                });
+        CaffeineCacheMetrics.monitor(meterRegistry, loadingCache, CACHE_NAME);
+        return loadingCache;
+    }
+    
+    // Failures other than a refused call or a not-found answer are all served a fallback.
+    private enum Outcome {
+        CACHE_HIT, SUCCESS, NOT_FOUND, BREAKER_OPEN, FALLBACK
+    }
+    
+    // The ETag is only sent when the cached value is still the one it was received with.
+    private record Validator(ExternalResource value, String etag) {
     }
 }
-
@@ -0,0 +1,170 @@
+package com.javaninja.service;
+
+import com.javaninja.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Stream;
+
+import static com.javaninja.service.UserStore.normalize;
+
+/**
+ * Default store: one {@link User} object per user in a concurrent map, with concurrent indexes by
+ * id, email and name. Reads are lock-free and re-check the indexed value against the stored user,
+ * since an index and the map are not updated atomically.
+ */
+public class HeapUserStore implements UserStore {
+
+    private final Map<Long, User> users = new ConcurrentHashMap<>();
+
+    private final NavigableSet<Long> idIndex = new ConcurrentSkipListSet<>();
+
+    private final Map<String, Long> emailIndex = new ConcurrentHashMap<>();
+
+    private final NavigableSet<NameKey> nameIndex = new ConcurrentSkipListSet<>();
+
+    @Override
+    public int size() {
+        return users.size();
+    }
+
+    @Override
+    public User get(long id) {
+        return users.get(id);
+    }
+
+    @Override
+    public User getByEmail(String email) {
+        Long id = emailIndex.get(email);
+        if (id == null) {
+            return null;
+        }
+        User user = users.get(id);
+        return user != null && email.equals(normalize(user.getEmail())) ? user : null;
+    }
+
+    @Override
+    public List<User> getAll() {
+        return new ArrayList<>(users.values());
+    }
+
+    @Override
+    public List<User> getAfter(long afterId, int limit) {
+        List<User> result = new ArrayList<>(Math.max(0, Math.min(limit, users.size())));
+        if (limit <= 0) {
+            return result;
+        }
+        for (Long id : idIndex.tailSet(afterId, false)) {
+            User user = users.get(id);
+            if (user != null) {
+                result.add(user);
+                if (result.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Stream<User> stream() {
+        return idIndex.stream()
+                .map(users::get)
+                .filter(Objects::nonNull);
+    }
+
+    @Override
+    public List<User> getByNamePrefix(String prefix, int limit) {
+        List<User> result = new ArrayList<>();
+        if (limit <= 0) {
+            return result;
+        }
+        for (NameKey entry : nameIndex.tailSet(new NameKey(prefix, Long.MIN_VALUE), true)) {
+            if (!entry.name().startsWith(prefix)) {
+                break;
+            }
+            User user = users.get(entry.id());
+            if (user != null && entry.name().equals(normalize(user.getName()))) {
+                result.add(user);
+                if (result.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    // Stored users are replaced rather than modified, so copying the references is enough.
+    @Override
+    public List<User> snapshot() {
+        return List.copyOf(users.values());
+    }
+
+    @Override
+    public void put(User user) {
+        User previous = users.put(user.getId(), user);
+        if (previous == null) {
+            idIndex.add(user.getId());
+        }
+        index(user);
+        if (previous != null) {
+            unindexStale(previous, user);
+        }
+    }
+
+    @Override
+    public void remove(long id) {
+        User previous = users.remove(id);
+        if (previous != null) {
+            idIndex.remove(id);
+            unindex(previous);
+        }
+    }
+
+    private void index(User user) {
+        String email = normalize(user.getEmail());
+        if (email != null) {
+            emailIndex.put(email, user.getId());
+        }
+        String name = normalize(user.getName());
+        if (name != null) {
+            nameIndex.add(new NameKey(name, user.getId()));
+        }
+    }
+
+    private void unindex(User user) {
+        String email = normalize(user.getEmail());
+        if (email != null) {
+            emailIndex.remove(email, user.getId());
+        }
+        String name = normalize(user.getName());
+        if (name != null) {
+            nameIndex.remove(new NameKey(name, user.getId()));
+        }
+    }
+
+    private void unindexStale(User previous, User current) {
+        String previousEmail = normalize(previous.getEmail());
+        if (previousEmail != null && !previousEmail.equals(normalize(current.getEmail()))) {
+            emailIndex.remove(previousEmail, previous.getId());
+        }
+        String previousName = normalize(previous.getName());
+        if (previousName != null && !previousName.equals(normalize(current.getName()))) {
+            nameIndex.remove(new NameKey(previousName, previous.getId()));
+        }
+    }
+
+    private record NameKey(String name, long id) implements Comparable<NameKey> {
+
+        @Override
+        public int compareTo(NameKey other) {
+            int byName = name.compareTo(other.name);
+            return byName != 0 ? byName : Long.compare(id, other.id);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.javaninja.service;
+
+import io.micrometer.core.instrument.Counter;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Runs an upstream call with optional hedging and budgeted retries.
+ *
+ * <p>With hedging on, the call runs on the executor and, if it has not finished within the
+ * configured percentile of recent successful latencies, a second attempt is started and the first
+ * success wins. An attempt that has not started by then is dropped; one that is already running is
+ * left to finish and its answer discarded, because an interrupt would surface in the circuit breaker
+ * and concurrency limiter as an upstream failure. Calls that fail with a retryable error are tried
+ * again. Every hedge and retry draws on the shared {@link RetryBudget}, so neither can push extra
+ * load past a fixed fraction of traffic.
+ */
+class Hedger {
+
+    private static final int MIN_SAMPLES = 10;
+
+    private final Executor executor;
+
+    private final boolean hedging;
+
+    private final double percentile;
+
+    private final long minDelayNanos;
+
+    private final int maxRetries;
+
+    private final RetryBudget budget;
+
+    private final Predicate<RuntimeException> retryable;
+
+    private final Counter calls;
+
+    private final Counter hedges;
+
+    private final Counter hedgeWins;
+
+    private final Counter retries;
+
+    private final Counter budgetExhausted;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final long[] samples;
+
+    private int nextSample;
+
+    private int sampleCount;
+
+    private int sinceRecompute;
+
+    private volatile long delayNanos = Long.MAX_VALUE;
+
+    Hedger(Executor executor, boolean hedging, double percentile, Duration minDelay, int sampleSize,
+           int maxRetries, RetryBudget budget, Predicate<RuntimeException> retryable,
+           Counter calls, Counter hedges, Counter hedgeWins, Counter retries, Counter budgetExhausted) {
+        this.executor = executor;
+        this.hedging = hedging;
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.samples = new long[Math.max(MIN_SAMPLES, sampleSize)];
+        this.maxRetries = maxRetries;
+        this.budget = budget;
+        this.retryable = retryable;
+        this.calls = calls;
+        this.hedges = hedges;
+        this.hedgeWins = hedgeWins;
+        this.retries = retries;
+        this.budgetExhausted = budgetExhausted;
+    }
+
+    <T> T execute(Supplier<T> call) {
+        calls.increment();
+        budget.deposit();
+        RuntimeException failure;
+        int attempt = 0;
+        while (true) {
+            try {
+                return hedging ? hedged(call) : timed(call);
+            } catch (RuntimeException ex) {
+                failure = ex;
+            }
+            if (attempt++ >= maxRetries || !retryable.test(failure)) {
+                throw failure;
+            }
+            if (!budget.tryWithdraw()) {
+                budgetExhausted.increment();
+                throw failure;
+            }
+            retries.increment();
+        }
+    }
+
+    // NaN until enough successful calls have been seen to pick a delay; no hedges are sent before.
+    double getHedgeDelayMillis() {
+        long delay = delayNanos;
+        return delay == Long.MAX_VALUE ? Double.NaN : delay / 1_000_000.0;
+    }
+
+    // Until a delay is known no hedge can be sent, so the call runs on the caller's thread without a
+    // handoff. Afterwards the first attempt runs on the executor while the caller waits for the delay;
+    // a hedge is only started if it is still running by then, and whichever attempt loses is
+    // cancelled without an interrupt. An executor that is full runs the call inline and skips the hedge.
+    private <T> T hedged(Supplier<T> call) {
+        long delay = delayNanos;
+        if (delay == Long.MAX_VALUE) {
+            return timed(call);
+        }
+        CompletableFuture<Attempt<T>> winner = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger(1);
+        Attempt<T> primary = new Attempt<>(call, winner, running, false);
+        if (!submit(primary)) {
+            return timed(call);
+        }
+        Attempt<T> hedge = null;
+        try {
+            try {
+                return result(winner.get(delay, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException ex) {
+                // still running: consider a hedge below
+            } catch (ExecutionException ex) {
+                throw rethrow(ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(ex);
+            }
+            if (winner.isDone()) {
+                return result(join(winner));
+            }
+            if (!budget.tryWithdraw()) {
+                budgetExhausted.increment();
+                return result(join(winner));
+            }
+            running.incrementAndGet();
+            hedge = new Attempt<>(call, winner, running, true);
+            if (submit(hedge)) {
+                hedges.increment();
+            } else {
+                running.decrementAndGet();
+            }
+            return result(join(winner));
+        } finally {
+            primary.cancel(false);
+            if (hedge != null) {
+                hedge.cancel(false);
+            }
+        }
+    }
+
+    private boolean submit(Runnable attempt) {
+        try {
+            executor.execute(attempt);
+            return true;
+        } catch (RejectedExecutionException ex) {
+            return false;
+        }
+    }
+
+    // Runs on the caller's thread, so a hedge win is counted before the call returns.
+    private <T> T result(Attempt<T> first) {
+        if (first.hedge) {
+            hedgeWins.increment();
+        }
+        try {
+            return first.get();
+        } catch (ExecutionException ex) {
+            throw rethrow(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(ex);
+        }
+    }
+
+    private <T> T timed(Supplier<T> call) {
+        long start = System.nanoTime();
+        T value = call.get();
+        record(System.nanoTime() - start);
+        return value;
+    }
+
+    private void record(long latencyNanos) {
+        lock.lock();
+        try {
+            samples[nextSample] = latencyNanos;
+            nextSample = (nextSample + 1) % samples.length;
+            sampleCount = Math.min(sampleCount + 1, samples.length);
+            // Re-sorting the window on every call would cost more than it saves; refresh the delay
+            // once every hundredth of the window instead.
+            if (++sinceRecompute >= Math.max(1, samples.length / 100) && sampleCount >= MIN_SAMPLES) {
+                sinceRecompute = 0;
+                long[] window = Arrays.copyOf(samples, sampleCount);
+                Arrays.sort(window);
+                int index = Math.min(window.length - 1, (int) Math.ceil(percentile * window.length) - 1);
+                delayNanos = Math.max(minDelayNanos, window[Math.max(0, index)]);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            throw rethrow(ex.getCause());
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable cause) {
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new CompletionException(cause);
+    }
+
+    // The first success completes the shared result with itself; a failure only does once no other
+    // attempt is still running. Being a FutureTask, an attempt that lost is skipped if it has not
+    // started yet.
+    private final class Attempt<T> extends FutureTask<T> {
+
+        private final CompletableFuture<Attempt<T>> winner;
+
+        private final AtomicInteger running;
+
+        private final boolean hedge;
+
+        Attempt(Supplier<T> call, CompletableFuture<Attempt<T>> winner, AtomicInteger running, boolean hedge) {
+            super(() -> timed(call));
+            this.winner = winner;
+            this.running = running;
+            this.hedge = hedge;
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                return;
+            }
+            try {
+                get();
+                winner.complete(this);
+            } catch (ExecutionException ex) {
+                if (running.decrementAndGet() == 0) {
+                    winner.completeExceptionally(ex.getCause());
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
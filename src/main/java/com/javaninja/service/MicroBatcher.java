@@ -0,0 +1,133 @@
+package com.javaninja.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+
+/**
+ * Merges single-id lookups that arrive within a short window into one multi-id call.
+ *
+ * <p>No background threads are involved: the first caller of a batch waits out the window and then
+ * dispatches it on its own thread, unless another caller fills the batch first and dispatches it
+ * immediately. Every other caller just waits for its own result.
+ */
+class MicroBatcher<V> {
+
+    private final long windowNanos;
+
+    private final int maxBatchSize;
+
+    private final Function<List<Long>, Map<Long, V>> batchCall;
+
+    private final LongFunction<RuntimeException> missing;
+
+    private final DistributionSummary batchSizes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private Map<Long, CompletableFuture<V>> current;
+
+    MicroBatcher(Duration window, int maxBatchSize, Function<List<Long>, Map<Long, V>> batchCall,
+                 LongFunction<RuntimeException> missing, DistributionSummary batchSizes) {
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.batchCall = batchCall;
+        this.missing = missing;
+        this.batchSizes = batchSizes;
+    }
+
+    V get(long id) {
+        Map<Long, CompletableFuture<V>> batch;
+        CompletableFuture<V> result;
+        boolean leader = false;
+        boolean full = false;
+        lock.lock();
+        try {
+            if (current == null) {
+                current = new LinkedHashMap<>();
+                leader = true;
+            }
+            batch = current;
+            result = batch.computeIfAbsent(id, key -> new CompletableFuture<>());
+            if (batch.size() >= maxBatchSize) {
+                current = null;
+                full = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (full) {
+            dispatch(batch);
+        } else if (leader) {
+            waitForWindow(result);
+            if (detach(batch)) {
+                dispatch(batch);
+            }
+        }
+        return join(result);
+    }
+
+    // Returns early if a caller that filled the batch has already dispatched it.
+    private void waitForWindow(CompletableFuture<V> result) {
+        try {
+            result.get(windowNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException | ExecutionException ex) {
+            // window elapsed, or the batch already completed
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private boolean detach(Map<Long, CompletableFuture<V>> batch) {
+        lock.lock();
+        try {
+            if (current != batch) {
+                return false;
+            }
+            current = null;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void dispatch(Map<Long, CompletableFuture<V>> batch) {
+        batchSizes.record(batch.size());
+        try {
+            Map<Long, V> values = batchCall.apply(new ArrayList<>(batch.keySet()));
+            batch.forEach((id, future) -> {
+                V value = values.get(id);
+                if (value != null) {
+                    future.complete(value);
+                } else {
+                    future.completeExceptionally(missing.apply(id));
+                }
+            });
+        } catch (RuntimeException | Error ex) {
+            batch.values().forEach(future -> future.completeExceptionally(ex));
+        }
+    }
+
+    private static <V> V join(CompletableFuture<V> future) {
+        try {
+            return future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw ex;
+        }
+    }
+}
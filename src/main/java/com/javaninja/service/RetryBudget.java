@@ -0,0 +1,45 @@
+package com.javaninja.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token bucket that keeps extra attempts to a fixed fraction of traffic. Each original request
+ * deposits {@code ratio} of a token and each hedge or retry withdraws a whole one, so when the
+ * upstream starts failing the extra load it sees is capped instead of multiplying.
+ */
+class RetryBudget {
+
+    private static final long SCALE = 1_000;
+
+    private final long deposit;
+
+    private final long maxBalance;
+
+    private final AtomicLong balance;
+
+    RetryBudget(double ratio, int maxBalance) {
+        this.deposit = Math.round(ratio * SCALE);
+        this.maxBalance = maxBalance * SCALE;
+        this.balance = new AtomicLong(this.maxBalance);
+    }
+
+    void deposit() {
+        balance.getAndUpdate(current -> Math.min(maxBalance, current + deposit));
+    }
+
+    boolean tryWithdraw() {
+        while (true) {
+            long current = balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+            if (balance.compareAndSet(current, current - SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    double getBalance() {
+        return (double) balance.get() / SCALE;
+    }
+}
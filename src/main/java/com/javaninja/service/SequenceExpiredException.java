@@ -0,0 +1,15 @@
+package com.javaninja.service;
+
+public class SequenceExpiredException extends RuntimeException {
+
+    private final long lastSequence;
+
+    public SequenceExpiredException(long sequence, long lastSequence) {
+        super("Changes after sequence " + sequence + " are no longer available");
+        this.lastSequence = lastSequence;
+    }
+
+    public long getLastSequence() {
+        return lastSequence;
+    }
+}
@@ -0,0 +1,61 @@
+package com.javaninja.service;
+
+import io.micrometer.core.instrument.Counter;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates concurrent calls for the same key: the first caller runs the call and every caller
+ * that arrives while it is in flight waits for, and shares, its result or exception.
+ */
+class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter coalesced;
+
+    SingleFlight(Counter coalesced) {
+        this.coalesced = coalesced;
+    }
+
+    V execute(K key, Supplier<V> call) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            coalesced.increment();
+            return await(existing);
+        }
+        try {
+            V value = call.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error ex) {
+            flight.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            if (ex.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw ex;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package com.javaninja.service;
+
+public class UpstreamNotFoundException extends RuntimeException {
+
+    public UpstreamNotFoundException(String resource, long id) {
+        super(resource + " " + id + " was not found upstream");
+    }
+}
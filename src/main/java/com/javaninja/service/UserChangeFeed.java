@@ -0,0 +1,126 @@
+package com.javaninja.service;
+
+import com.javaninja.model.UserEvent;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded ring of the most recent user mutations, indexed by sequence. Readers keep their own cursor
+ * and pull at their own pace, so appending never waits for a reader; a reader that falls further
+ * behind than the ring holds gets a {@link SequenceExpiredException} and has to resync.
+ */
+public class UserChangeFeed {
+
+    private final UserEvent[] ring;
+
+    private final Lock lock = new ReentrantLock();
+
+    private final Condition appended = lock.newCondition();
+
+    // Events with sequences in (first, last] are retained; both guarded by lock.
+    private long first;
+
+    private long last;
+
+    public UserChangeFeed(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Change feed capacity must be positive");
+        }
+        this.ring = new UserEvent[capacity];
+    }
+
+    public long getLastSequence() {
+        lock.lock();
+        try {
+            return last;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops every retained event; the feed continues after the given sequence.
+     */
+    public void reset(long sequence) {
+        lock.lock();
+        try {
+            Arrays.fill(ring, null);
+            first = sequence;
+            last = sequence;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void append(UserEvent event) {
+        lock.lock();
+        try {
+            if (event.sequence() != last + 1) {
+                // A skipped sequence cannot be replayed, so readers before it must resync.
+                Arrays.fill(ring, null);
+                first = event.sequence() - 1;
+            }
+            ring[slot(event.sequence())] = event;
+            last = event.sequence();
+            first = Math.max(first, last - ring.length);
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} events after the given sequence, in sequence order; empty once the
+     * reader has caught up.
+     *
+     * @throws SequenceExpiredException if events right after {@code after} are no longer retained, or
+     *                                  {@code after} is ahead of this feed
+     */
+    public List<UserEvent> read(long after, int limit) {
+        lock.lock();
+        try {
+            if (after < first || after > last) {
+                throw new SequenceExpiredException(after, last);
+            }
+            int count = (int) Math.min(Math.max(limit, 0), last - after);
+            List<UserEvent> events = new ArrayList<>(count);
+            for (long sequence = after + 1; sequence <= after + count; sequence++) {
+                events.add(ring[slot(sequence)]);
+            }
+            return events;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until an event after the given sequence is appended or the timeout elapses, and returns
+     * whether one was.
+     */
+    public boolean await(long after, Duration timeout) throws InterruptedException {
+        long nanos = timeout.toNanos();
+        lock.lock();
+        try {
+            while (last <= after) {
+                if (nanos <= 0) {
+                    return false;
+                }
+                nanos = appended.awaitNanos(nanos);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int slot(long sequence) {
+        return (int) Math.floorMod(sequence, (long) ring.length);
+    }
+}
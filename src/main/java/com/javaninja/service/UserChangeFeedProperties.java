@@ -0,0 +1,63 @@
+package com.javaninja.service;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+@ConfigurationProperties(prefix = "users.change-feed")
+public class UserChangeFeedProperties {
+
+    // Most recent events kept for subscribers to resume from.
+    private int capacity = 65_536;
+
+    // Events written to a subscriber per flush while it catches up.
+    private int batchSize = 500;
+
+    private Duration heartbeatInterval = Duration.ofSeconds(15);
+
+    // Streams end after this long; clients reconnect with Last-Event-ID.
+    private Duration timeout = Duration.ofMinutes(30);
+
+    // Each open stream holds one thread.
+    private int maxSubscribers = 64;
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Duration getHeartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    public void setHeartbeatInterval(Duration heartbeatInterval) {
+        this.heartbeatInterval = heartbeatInterval;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public int getMaxSubscribers() {
+        return maxSubscribers;
+    }
+
+    public void setMaxSubscribers(int maxSubscribers) {
+        this.maxSubscribers = maxSubscribers;
+    }
+}
@@ -1,56 +1,585 @@
 package com.javaninja.service;
 
+import com.javaninja.model.BatchItemResult;
+import com.javaninja.model.BatchItemResult.Status;
 import com.javaninja.model.User;
+import com.javaninja.model.UserEvent;
+import com.javaninja.model.UserSnapshot;
+import com.javaninja.persistence.UserJournal;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
 
 @Service
 public class UserService {
-    
-    private final List<User> users = new ArrayList<>();
-    
+
+    private final UserStore users;
+
+    private final AtomicLong idSequence = new AtomicLong();
+
+    // Writes are serialized so the store only ever sees one writer at a time.
+    private final Lock writeLock = new ReentrantLock();
+
+    private final UserJournal journal;
+
+    // Sequence of the last applied mutation; guarded by writeLock.
+    private long sequence;
+
+    // Sequence of the last mutation visible to readers. It only moves after the maps are updated,
+    // so a reader that takes it before reading never pairs a version with older data.
+    private volatile long version;
+
+    // One pre-registered timer per operation, indexed by ordinal, so recording allocates nothing.
+    private final Timer[] timers;
+
+    private final List<Consumer<UserEvent>> changeListeners = new CopyOnWriteArrayList<>();
+
+    private final List<LongConsumer> resetListeners = new CopyOnWriteArrayList<>();
+
     public UserService() {
-        // Initialize with some sample data
-        users.add(new User(1L, "John Doe", "john.doe@example.com"));
-        users.add(new User(2L, "Jane Smith", "jane.smith@example.com"));
-        users.add(new User(3L, "Bob Johnson", "bob.johnson@example.com"));
+        this(Optional.empty());
+    }
+
+    public UserService(Optional<UserJournal> journal) {
+        this(journal, new SimpleMeterRegistry());
+    }
+
+    public UserService(Optional<UserJournal> journal, MeterRegistry meterRegistry) {
+        this(journal, meterRegistry, new HeapUserStore());
+    }
+
+    @Autowired
+    public UserService(Optional<UserJournal> journal, MeterRegistry meterRegistry, UserStore users) {
+        this.users = users;
+        this.timers = operationTimers(meterRegistry);
+        Gauge.builder("users.store.size", users, UserStore::size)
+                .description("Users currently held in the store")
+                .register(meterRegistry);
+        this.journal = journal.orElse(null);
+        if (this.journal != null) {
+            UserJournal.Replay replay = this.journal.replay(this::replayEvent);
+            sequence = replay.lastSequence();
+            idSequence.set(replay.lastId());
+            version = sequence;
+        }
+        if (sequence == 0) {
+            // Initialize with some sample data
+            createUser(new User(null, "John Doe", "john.doe@example.com"));
+            createUser(new User(null, "Jane Smith", "jane.smith@example.com"));
+            createUser(new User(null, "Bob Johnson", "bob.johnson@example.com"));
+        }
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Registers a listener for every applied mutation. Listeners run on the writing thread while it
+     * still holds the write lock, in sequence order, so they must be quick and must not call back
+     * into this service's write methods.
+     */
+    public void addChangeListener(Consumer<UserEvent> listener) {
+        changeListeners.add(listener);
+    }
+
+    /**
+     * Feeds every mutation after the current sequence into the given change feed. Registered under the
+     * write lock, so the feed neither misses nor repeats a sequence.
+     */
+    public void addChangeFeed(UserChangeFeed feed) {
+        writeLock.lock();
+        try {
+            feed.reset(sequence);
+            changeListeners.add(feed::append);
+            resetListeners.add(feed::reset);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Registers a listener for {@linkplain #installSnapshot(UserSnapshot) snapshot installs}, which
+     * replace every user without individual change events. It receives the snapshot's sequence and
+     * runs under the write lock.
+     */
+    public void addResetListener(LongConsumer listener) {
+        resetListeners.add(listener);
     }
-    
+
     public List<User> getAllUsers() {
-        return new ArrayList<>(users);
+        long start = System.nanoTime();
+        try {
+            return users.getAll();
+        } finally {
+            observe(Operation.LIST, start);
+        }
     }
-    
+
+    public List<User> getUsersAfter(long afterId, int limit) {
+        long start = System.nanoTime();
+        try {
+            return users.getAfter(afterId, limit);
+        } finally {
+            observe(Operation.PAGE, start);
+        }
+    }
+
+    public Stream<User> streamUsers() {
+        return users.stream();
+    }
+
     public Optional<User> getUserById(Long id) {
-        return users.stream()
-                .filter(user -> user.getId().equals(id))
-                .findFirst();
+        long start = System.nanoTime();
+        try {
+            if (id == null) {
+                return Optional.empty();
+            }
+            return Optional.ofNullable(users.get(id));
+        } finally {
+            observe(Operation.GET, start);
+        }
+    }
+
+    public Optional<User> getUserByEmail(String email) {
+        long start = System.nanoTime();
+        try {
+            String key = UserStore.normalize(email);
+            if (key == null) {
+                return Optional.empty();
+            }
+            return Optional.ofNullable(users.getByEmail(key));
+        } finally {
+            observe(Operation.GET_BY_EMAIL, start);
+        }
+    }
+
+    public List<User> getUsersByNamePrefix(String prefix, int limit) {
+        long start = System.nanoTime();
+        try {
+            String key = UserStore.normalize(prefix);
+            if (key == null || limit <= 0) {
+                return new ArrayList<>();
+            }
+            return users.getByNamePrefix(key, limit);
+        } finally {
+            observe(Operation.SEARCH_BY_NAME, start);
+        }
     }
-    
+
     public User createUser(User user) {
-        Long newId = users.stream()
-                .mapToLong(User::getId)
-                .max()
-                .orElse(0L) + 1;
-        user.setId(newId);
-        users.add(user);
-        return user;
-    }
-    
+        long start = System.nanoTime();
+        try {
+            checkFits(user);
+            long ticket;
+            writeLock.lock();
+            try {
+                checkEmailAvailable(user.getEmail(), null);
+                ticket = applyCreate(user, idSequence.incrementAndGet());
+                snapshotIfDue();
+            } finally {
+                writeLock.unlock();
+            }
+            awaitDurable(ticket);
+            return user;
+        } finally {
+            observe(Operation.CREATE, start);
+        }
+    }
+
+    public List<BatchItemResult> createUsers(List<User> newUsers) {
+        long start = System.nanoTime();
+        try {
+            List<BatchItemResult> results = new ArrayList<>(newUsers.size());
+            long ticket = 0;
+            writeLock.lock();
+            try {
+                long nextId = idSequence.getAndAdd(newUsers.size()) + 1;
+                for (User user : newUsers) {
+                    if (user == null) {
+                        results.add(BatchItemResult.failed(null, Status.INVALID, "User must not be null"));
+                    } else if (!fits(user)) {
+                        results.add(BatchItemResult.failed(null, Status.INVALID, UserTooLargeException.MESSAGE));
+                    } else if (!isEmailAvailable(user.getEmail(), null)) {
+                        results.add(BatchItemResult.failed(null, Status.CONFLICT,
+                                DuplicateEmailException.messageFor(user.getEmail())));
+                    } else {
+                        ticket = applyCreate(user, nextId++);
+                        results.add(BatchItemResult.of(user.getId(), Status.CREATED));
+                    }
+                }
+                snapshotIfDue();
+            } finally {
+                writeLock.unlock();
+            }
+            awaitDurable(ticket);
+            return results;
+        } finally {
+            observe(Operation.BATCH_CREATE, start);
+        }
+    }
+
     public Optional<User> updateUser(Long id, User updatedUser) {
-        for (int i = 0; i < users.size(); i++) {
-            if (users.get(i).getId().equals(id)) {
-                updatedUser.setId(id);
-                users.set(i, updatedUser);
-                return Optional.of(updatedUser);
+        return updateUser(id, updatedUser, currentVersion -> true);
+    }
+
+    // The expected version is checked under the write lock, so a concurrent writer cannot slip in
+    // between the check and the update.
+    public Optional<User> updateUser(Long id, User updatedUser, LongPredicate expectedVersion) {
+        long start = System.nanoTime();
+        try {
+            if (id == null) {
+                return Optional.empty();
+            }
+            checkFits(updatedUser);
+            long ticket;
+            writeLock.lock();
+            try {
+                User existing = users.get(id);
+                if (existing == null) {
+                    return Optional.empty();
+                }
+                checkVersion(existing, expectedVersion);
+                checkEmailAvailable(updatedUser.getEmail(), id);
+                ticket = applyUpdate(existing, updatedUser);
+                snapshotIfDue();
+            } finally {
+                writeLock.unlock();
             }
+            awaitDurable(ticket);
+            return Optional.of(updatedUser);
+        } finally {
+            observe(Operation.UPDATE, start);
         }
-        return Optional.empty();
     }
-    
+
+    public List<BatchItemResult> updateUsers(List<User> updatedUsers) {
+        long start = System.nanoTime();
+        try {
+            List<BatchItemResult> results = new ArrayList<>(updatedUsers.size());
+            long ticket = 0;
+            writeLock.lock();
+            try {
+                for (User user : updatedUsers) {
+                    Long id = user == null ? null : user.getId();
+                    User existing = id == null ? null : users.get(id);
+                    if (id == null) {
+                        results.add(BatchItemResult.failed(null, Status.INVALID, "User id is required"));
+                    } else if (existing == null) {
+                        results.add(BatchItemResult.of(id, Status.NOT_FOUND));
+                    } else if (!fits(user)) {
+                        results.add(BatchItemResult.failed(id, Status.INVALID, UserTooLargeException.MESSAGE));
+                    } else if (!isEmailAvailable(user.getEmail(), id)) {
+                        results.add(BatchItemResult.failed(id, Status.CONFLICT,
+                                DuplicateEmailException.messageFor(user.getEmail())));
+                    } else {
+                        ticket = applyUpdate(existing, user);
+                        results.add(BatchItemResult.of(id, Status.UPDATED));
+                    }
+                }
+                snapshotIfDue();
+            } finally {
+                writeLock.unlock();
+            }
+            awaitDurable(ticket);
+            return results;
+        } finally {
+            observe(Operation.BATCH_UPDATE, start);
+        }
+    }
+
     public boolean deleteUser(Long id) {
-        return users.removeIf(user -> user.getId().equals(id));
+        return deleteUser(id, currentVersion -> true);
+    }
+
+    public boolean deleteUser(Long id, LongPredicate expectedVersion) {
+        long start = System.nanoTime();
+        try {
+            if (id == null) {
+                return false;
+            }
+            long ticket;
+            writeLock.lock();
+            try {
+                User existing = users.get(id);
+                if (existing == null) {
+                    return false;
+                }
+                checkVersion(existing, expectedVersion);
+                ticket = applyDelete(existing);
+                snapshotIfDue();
+            } finally {
+                writeLock.unlock();
+            }
+            awaitDurable(ticket);
+            return true;
+        } finally {
+            observe(Operation.DELETE, start);
+        }
+    }
+
+    public List<BatchItemResult> deleteUsers(List<Long> ids) {
+        long start = System.nanoTime();
+        try {
+            List<BatchItemResult> results = new ArrayList<>(ids.size());
+            long ticket = 0;
+            writeLock.lock();
+            try {
+                for (Long id : ids) {
+                    User existing = id == null ? null : users.get(id);
+                    if (id == null) {
+                        results.add(BatchItemResult.failed(null, Status.INVALID, "User id is required"));
+                    } else if (existing == null) {
+                        results.add(BatchItemResult.of(id, Status.NOT_FOUND));
+                    } else {
+                        ticket = applyDelete(existing);
+                        results.add(BatchItemResult.of(id, Status.DELETED));
+                    }
+                }
+                snapshotIfDue();
+            } finally {
+                writeLock.unlock();
+            }
+            awaitDurable(ticket);
+            return results;
+        } finally {
+            observe(Operation.BATCH_DELETE, start);
+        }
+    }
+
+    /**
+     * Returns every user together with the sequence and id counter they are consistent with. Users
+     * are listed as CREATED events whose sequence is the user's version.
+     */
+    public UserSnapshot exportSnapshot() {
+        long snapshotSequence;
+        long lastId;
+        List<User> all;
+        writeLock.lock();
+        try {
+            snapshotSequence = sequence;
+            lastId = idSequence.get();
+            all = users.snapshot();
+        } finally {
+            writeLock.unlock();
+        }
+        List<UserEvent> entries = new ArrayList<>(all.size());
+        for (User user : all) {
+            entries.add(UserEvent.created(user.getVersion(), user));
+        }
+        return new UserSnapshot(snapshotSequence, lastId, entries);
+    }
+
+    /**
+     * Replaces every user with the contents of a snapshot taken on another node. Change feeds restart
+     * at the snapshot's sequence, so their subscribers resync.
+     */
+    public void installSnapshot(UserSnapshot snapshot) {
+        long start = System.nanoTime();
+        try {
+            writeLock.lock();
+            try {
+                for (User user : users.snapshot()) {
+                    users.remove(user.getId());
+                }
+                for (UserEvent entry : snapshot.users()) {
+                    replayEvent(entry);
+                }
+                sequence = snapshot.sequence();
+                idSequence.set(snapshot.lastId());
+                version = sequence;
+                if (journal != null) {
+                    journal.install(sequence, idSequence.get(), users.snapshot());
+                }
+                for (LongConsumer listener : resetListeners) {
+                    listener.accept(sequence);
+                }
+            } finally {
+                writeLock.unlock();
+            }
+        } finally {
+            observe(Operation.REPLICATE, start);
+        }
+    }
+
+    /**
+     * Applies mutations replicated from another node, keeping their sequences. Events at or below the
+     * current sequence are skipped.
+     *
+     * @throws IllegalStateException if the events do not follow on from the current sequence
+     */
+    public void applyReplicated(List<UserEvent> events) {
+        long start = System.nanoTime();
+        try {
+            long ticket = 0;
+            writeLock.lock();
+            try {
+                for (UserEvent event : events) {
+                    if (event.sequence() <= sequence) {
+                        continue;
+                    }
+                    if (event.sequence() != sequence + 1) {
+                        throw new IllegalStateException("Replication gap: expected sequence " + (sequence + 1)
+                                + " but received " + event.sequence());
+                    }
+                    ticket = record(event);
+                    sequence = event.sequence();
+                    replayEvent(event);
+                    if (event.type() == UserEvent.Type.CREATED) {
+                        idSequence.accumulateAndGet(event.id(), Math::max);
+                    }
+                    version = sequence;
+                    publish(event);
+                }
+                snapshotIfDue();
+            } finally {
+                writeLock.unlock();
+            }
+            awaitDurable(ticket);
+        } finally {
+            observe(Operation.REPLICATE, start);
+        }
+    }
+
+    // The apply methods run under writeLock. Each mutation is journaled before it becomes
+    // visible, so the log never lags what readers have already seen. The sequence only moves once
+    // the append has succeeded; a failed append must not leave a gap in the journal.
+    private long applyCreate(User user, long id) {
+        user.setId(id);
+        UserEvent event = UserEvent.created(sequence + 1, user);
+        long ticket = record(event);
+        sequence = event.sequence();
+        user.setVersion(sequence);
+        users.put(user);
+        version = sequence;
+        publish(event);
+        return ticket;
     }
-}
 
+    private long applyUpdate(User existing, User updatedUser) {
+        updatedUser.setId(existing.getId());
+        UserEvent event = UserEvent.updated(sequence + 1, updatedUser);
+        long ticket = record(event);
+        sequence = event.sequence();
+        updatedUser.setVersion(sequence);
+        users.put(updatedUser);
+        version = sequence;
+        publish(event);
+        return ticket;
+    }
+
+    private long applyDelete(User existing) {
+        UserEvent event = UserEvent.deleted(sequence + 1, existing.getId());
+        long ticket = record(event);
+        sequence = event.sequence();
+        users.remove(existing.getId());
+        version = sequence;
+        publish(event);
+        return ticket;
+    }
+
+    private void replayEvent(UserEvent event) {
+        if (event.type() == UserEvent.Type.DELETED) {
+            users.remove(event.id());
+            return;
+        }
+        User user = event.toUser();
+        user.setVersion(event.sequence());
+        users.put(user);
+    }
+
+    private boolean fits(User user) {
+        return journal == null || journal.fits(user);
+    }
+
+    private void checkFits(User user) {
+        if (!fits(user)) {
+            throw new UserTooLargeException();
+        }
+    }
+
+    private long record(UserEvent event) {
+        return journal == null ? 0 : journal.append(event);
+    }
+
+    private void publish(UserEvent event) {
+        for (Consumer<UserEvent> listener : changeListeners) {
+            listener.accept(event);
+        }
+    }
+
+    private void snapshotIfDue() {
+        if (journal != null && journal.isSnapshotDue()) {
+            journal.snapshot(sequence, idSequence.get(), users.snapshot());
+        }
+    }
+
+    private void awaitDurable(long ticket) {
+        if (journal != null && ticket > 0) {
+            journal.awaitDurable(ticket);
+        }
+    }
+
+    private static void checkVersion(User existing, LongPredicate expectedVersion) {
+        if (!expectedVersion.test(existing.getVersion())) {
+            throw new VersionMismatchException(existing.getId(), existing.getVersion());
+        }
+    }
+
+    private void checkEmailAvailable(String email, Long ownerId) {
+        if (!isEmailAvailable(email, ownerId)) {
+            throw new DuplicateEmailException(email);
+        }
+    }
+
+    private boolean isEmailAvailable(String email, Long ownerId) {
+        String key = UserStore.normalize(email);
+        if (key == null) {
+            return true;
+        }
+        User existing = users.getByEmail(key);
+        return existing == null || existing.getId().equals(ownerId);
+    }
+
+    private void observe(Operation operation, long startNanos) {
+        timers[operation.ordinal()].record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static Timer[] operationTimers(MeterRegistry meterRegistry) {
+        Operation[] operations = Operation.values();
+        Timer[] timers = new Timer[operations.length];
+        for (Operation operation : operations) {
+            timers[operation.ordinal()] = Timer.builder("users.operations")
+                    .description("Time spent in user store operations, including journal durability waits")
+                    .tag("operation", operation.name().toLowerCase(Locale.ROOT))
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(100))
+                    .maximumExpectedValue(Duration.ofSeconds(1))
+                    .register(meterRegistry);
+        }
+        return timers;
+    }
+
+    private enum Operation {
+        LIST, PAGE, GET, GET_BY_EMAIL, SEARCH_BY_NAME, CREATE, BATCH_CREATE, UPDATE, BATCH_UPDATE, DELETE, BATCH_DELETE,
+        REPLICATE
+    }
+}
@@ -0,0 +1,63 @@
+package com.javaninja.service;
+
+import com.javaninja.model.User;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Stream;
+
+/**
+ * Storage engine behind {@link UserService}. The service serializes all writes and owns ids,
+ * versions and the journal, so an engine only has to hold users and answer lookups while one
+ * writer and any number of readers run concurrently.
+ */
+public interface UserStore {
+
+    int size();
+
+    User get(long id);
+
+    /**
+     * Returns the user whose email matches the given {@linkplain #normalize(String) normalized} key.
+     */
+    User getByEmail(String email);
+
+    List<User> getAll();
+
+    /**
+     * Returns up to {@code limit} users with ids greater than {@code afterId}, in id order.
+     */
+    List<User> getAfter(long afterId, int limit);
+
+    /**
+     * Streams users in id order. The stream is weakly consistent: it may or may not reflect writes
+     * made while it is being consumed.
+     */
+    Stream<User> stream();
+
+    /**
+     * Returns up to {@code limit} users whose normalized name starts with the given normalized prefix,
+     * ordered by normalized name and then id.
+     */
+    List<User> getByNamePrefix(String prefix, int limit);
+
+    /**
+     * Returns every user as of this call. Later writes do not change the returned list, so a caller
+     * can take it under the service's write lock and read it after releasing the lock.
+     */
+    List<User> snapshot();
+
+    /**
+     * Inserts the user, or replaces the stored user with the same id.
+     */
+    void put(User user);
+
+    void remove(long id);
+
+    /**
+     * Lookup keys for emails and names are trimmed and lower-cased.
+     */
+    static String normalize(String value) {
+        return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
+    }
+}
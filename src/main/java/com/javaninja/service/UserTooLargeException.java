@@ -0,0 +1,10 @@
+package com.javaninja.service;
+
+public class UserTooLargeException extends RuntimeException {
+
+    static final String MESSAGE = "User is too large to be stored";
+
+    public UserTooLargeException() {
+        super(MESSAGE);
+    }
+}
@@ -0,0 +1,15 @@
+package com.javaninja.service;
+
+public class VersionMismatchException extends RuntimeException {
+
+    private final long currentVersion;
+
+    public VersionMismatchException(long id, long currentVersion) {
+        super("User " + id + " has been modified since it was read");
+        this.currentVersion = currentVersion;
+    }
+
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+}
@@ -1,16 +1,60 @@
 package com.javaninja;
 
+import feign.Client;
+import feign.hc5.ApacheHttp5Client;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.openfeign.FeignClientProperties;
+import org.springframework.cloud.openfeign.loadbalancer.FeignBlockingLoadBalancerClient;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
 @SpringBootTest
 @ActiveProfiles("test")
 class SpringCloudApplicationTests {
 
+    @Autowired
+    private Client feignClient;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private FeignClientProperties feignClientProperties;
+
+    @Autowired
+    private TimeLimiterRegistry timeLimiterRegistry;
+
     @Test
     void contextLoads() {
         // This test ensures that the Spring application context loads successfully
     }
-}
 
+    @Test
+    @DisplayName("Should use the pooled HTTP client and publish pool metrics")
+    void shouldUsePooledHttpClientAndPublishPoolMetrics() {
+        // URL-based clients bypass the load balancer and call its delegate directly
+        FeignBlockingLoadBalancerClient loadBalanced = assertInstanceOf(FeignBlockingLoadBalancerClient.class, feignClient);
+        assertInstanceOf(ApacheHttp5Client.class, loadBalanced.getDelegate());
+        assertEquals(400.0, meterRegistry.get("httpcomponents.httpclient.pool.total.max")
+                .tag("httpclient", "external-api")
+                .gauge()
+                .value());
+    }
+
+    @Test
+    @DisplayName("Should time out upstream reads before the time limiter gives up on the call")
+    void shouldTimeOutUpstreamReadsBeforeTimeLimiter() {
+        // The time limiter cannot interrupt a bulkhead thread, so only the read timeout frees it
+        Duration readTimeout = Duration.ofMillis(feignClientProperties.getConfig().get("external-api").getReadTimeout());
+        Duration limit = timeLimiterRegistry.timeLimiter("external-api").getTimeLimiterConfig().getTimeoutDuration();
+        assertTrue(readTimeout.compareTo(limit) <= 0, "read timeout " + readTimeout + " exceeds " + limit);
+    }
+}
@@ -0,0 +1,104 @@
+package com.javaninja.client;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.javaninja.model.Post;
+import feign.FeignException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.junit.jupiter.api.Assertions.*;
+
+// Two stub servers registered under external-api in the simple discovery client stand in for Eureka.
+@SpringBootTest(properties = {
+        "external-api.load-balancer.decay=200ms",
+        "resilience4j.circuitbreaker.configs.external-api.sliding-window-size=2",
+        "resilience4j.circuitbreaker.configs.external-api.minimum-number-of-calls=2"
+})
+@ActiveProfiles({"test", "discovery"})
+class ExternalApiLoadBalancingTest {
+
+    private static final String POST_JSON = "{\"id\":1,\"userId\":1,\"title\":\"Post\",\"body\":\"Body\"}";
+
+    private static final WireMockServer slow = new WireMockServer(options().dynamicPort());
+
+    private static final WireMockServer fast = new WireMockServer(options().dynamicPort());
+
+    @Autowired
+    private ExternalApiClient externalApiClient;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @DynamicPropertySource
+    static void externalApiInstances(DynamicPropertyRegistry registry) {
+        slow.start();
+        fast.start();
+        registry.add("spring.cloud.discovery.client.simple.instances.external-api[0].uri", slow::baseUrl);
+        registry.add("spring.cloud.discovery.client.simple.instances.external-api[1].uri", fast::baseUrl);
+    }
+
+    @AfterAll
+    static void stopServers() {
+        slow.stop();
+        fast.stop();
+    }
+
+    @Test
+    @DisplayName("Should spread calls by latency and steer away from an instance returning errors")
+    void shouldSpreadCallsByLatencyAndSteerAwayFromFailingInstance() {
+        // Given
+        slow.stubFor(get(urlEqualTo("/posts/1")).willReturn(json().withFixedDelay(200)));
+        fast.stubFor(get(urlEqualTo("/posts/1")).willReturn(json()));
+        // The first call to each instance also pays for connection setup and warm-up.
+        for (int i = 0; i < 10; i++) {
+            externalApiClient.getPost(1L);
+        }
+        slow.resetRequests();
+        fast.resetRequests();
+
+        // When
+        for (int i = 0; i < 20; i++) {
+            assertEquals("Post", externalApiClient.getPost(1L).title());
+        }
+
+        // Then
+        assertTrue(slow.getAllServeEvents().size() <= 3, "slow instance served " + slow.getAllServeEvents().size());
+
+        // Given
+        fast.resetAll();
+        fast.stubFor(get(urlEqualTo("/posts/1")).willReturn(aResponse().withStatus(500)));
+
+        // When
+        int succeeded = 0;
+        for (int i = 0; i < 10; i++) {
+            try {
+                Post post = externalApiClient.getPost(1L);
+                succeeded += post != null ? 1 : 0;
+            } catch (FeignException.InternalServerError ex) {
+                // expected while the failing instance is still being tried
+            }
+        }
+
+        // Then
+        assertTrue(succeeded >= 8, "succeeded " + succeeded);
+        assertEquals(CircuitBreaker.State.OPEN,
+                circuitBreakerRegistry.circuitBreaker("external-api@localhost:" + fast.port()).getState());
+    }
+
+    private static ResponseDefinitionBuilder json() {
+        return aResponse().withHeader("Content-Type", "application/json").withBody(POST_JSON);
+    }
+}
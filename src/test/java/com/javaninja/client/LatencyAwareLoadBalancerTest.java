@@ -0,0 +1,184 @@
+package com.javaninja.client;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.cloud.client.DefaultServiceInstance;
+import org.springframework.cloud.client.ServiceInstance;
+import org.springframework.cloud.client.loadbalancer.CompletionContext;
+import org.springframework.cloud.client.loadbalancer.DefaultRequest;
+import org.springframework.cloud.client.loadbalancer.RequestDataContext;
+import org.springframework.cloud.client.loadbalancer.Response;
+import org.springframework.cloud.loadbalancer.core.ServiceInstanceListSupplier;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LatencyAwareLoadBalancerTest {
+
+    private final ServiceInstance fast = instance("fast", 8081);
+
+    private final ServiceInstance slow = instance("slow", 8082);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+
+    private final InstanceStatistics statistics = new InstanceStatistics("external-api",
+            circuitBreakerRegistry,
+            CircuitBreakerConfig.custom()
+                    .slidingWindowSize(2)
+                    .minimumNumberOfCalls(2)
+                    .permittedNumberOfCallsInHalfOpenState(1)
+                    .waitDurationInOpenState(Duration.ofMinutes(1))
+                    .build(),
+            Duration.ofSeconds(10), Duration.ofSeconds(1), meterRegistry);
+
+    private final LatencyAwareLoadBalancer loadBalancer = new LatencyAwareLoadBalancer(
+            supplierOf(List.of(fast, slow)), statistics);
+
+    @Test
+    @DisplayName("Should prefer the instance with lower observed latency")
+    void shouldPreferInstanceWithLowerObservedLatency() {
+        // Given
+        record(fast, Duration.ofMillis(5), null);
+        record(slow, Duration.ofMillis(500), null);
+
+        // When / Then
+        for (int i = 0; i < 20; i++) {
+            assertEquals(fast, loadBalancer.choose(List.of(fast, slow)).getServer());
+        }
+    }
+
+    @Test
+    @DisplayName("Should prefer the instance with fewer requests in flight at equal latency")
+    void shouldPreferInstanceWithFewerRequestsInFlight() {
+        // Given
+        record(fast, Duration.ofMillis(50), null);
+        record(slow, Duration.ofMillis(50), null);
+        statistics.started(fast);
+        statistics.started(fast);
+
+        // When
+        Response<ServiceInstance> response = loadBalancer.choose(List.of(fast, slow));
+
+        // Then
+        assertEquals(slow, response.getServer());
+        assertEquals(2.0, meterRegistry.get("external.api.instance.in.flight")
+                .tag("instance", "fast:8081").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Should penalize failures so a fast-failing instance is not preferred")
+    void shouldPenalizeFailuresSoFastFailingInstanceIsNotPreferred() {
+        // Given
+        record(fast, Duration.ofMillis(1), new IllegalStateException("HTTP 500"));
+        record(slow, Duration.ofMillis(100), null);
+
+        // When
+        Response<ServiceInstance> response = loadBalancer.choose(List.of(fast, slow));
+
+        // Then
+        assertEquals(slow, response.getServer());
+    }
+
+    @Test
+    @DisplayName("Should skip an instance whose circuit breaker is open")
+    void shouldSkipInstanceWhoseCircuitBreakerIsOpen() {
+        // Given
+        record(fast, Duration.ofMillis(1), null);
+        record(slow, Duration.ofMillis(500), null);
+        record(fast, Duration.ofMillis(1), new IllegalStateException("HTTP 500"));
+        record(fast, Duration.ofMillis(1), new IllegalStateException("HTTP 500"));
+
+        // When
+        Response<ServiceInstance> response = loadBalancer.choose(List.of(fast, slow));
+
+        // Then
+        assertEquals(CircuitBreaker.State.OPEN, statistics.circuitBreaker(fast).getState());
+        assertEquals("external-api@fast:8081", statistics.circuitBreaker(fast).getName());
+        assertEquals(slow, response.getServer());
+    }
+
+    @Test
+    @DisplayName("Should return no instance when every circuit breaker is open")
+    void shouldReturnNoInstanceWhenEveryCircuitBreakerIsOpen() {
+        // Given
+        statistics.circuitBreaker(fast).transitionToOpenState();
+        statistics.circuitBreaker(slow).transitionToOpenState();
+
+        // When
+        Response<ServiceInstance> response = loadBalancer.choose(new DefaultRequest<>()).block();
+
+        // Then
+        assertNotNull(response);
+        assertFalse(response.hasServer());
+    }
+
+    @Test
+    @DisplayName("Should hand back the probe permit of a discarded request")
+    void shouldHandBackProbePermitOfDiscardedRequest() {
+        // Given
+        statistics.circuitBreaker(fast).transitionToOpenState();
+        statistics.circuitBreaker(fast).transitionToHalfOpenState();
+        Response<ServiceInstance> probe = loadBalancer.choose(List.of(fast));
+        assertEquals(fast, probe.getServer());
+        assertFalse(loadBalancer.choose(List.of(fast)).hasServer());
+
+        // When
+        statistics.onComplete(new CompletionContext<>(CompletionContext.Status.DISCARD,
+                new DefaultRequest<>(new RequestDataContext()), probe));
+
+        // Then
+        assertEquals(CircuitBreaker.State.HALF_OPEN, statistics.circuitBreaker(fast).getState());
+        assertEquals(fast, loadBalancer.choose(List.of(fast)).getServer());
+    }
+
+    @Test
+    @DisplayName("Should drop statistics of instances that are no longer discovered")
+    void shouldDropStatisticsOfInstancesNoLongerDiscovered() {
+        // Given
+        record(fast, Duration.ofMillis(5), null);
+        record(slow, Duration.ofMillis(500), null);
+        LatencyAwareLoadBalancer rediscovered = new LatencyAwareLoadBalancer(supplierOf(List.of(fast)), statistics);
+
+        // When
+        Response<ServiceInstance> response = rediscovered.choose(new DefaultRequest<>()).block();
+
+        // Then
+        assertNotNull(response);
+        assertEquals(fast, response.getServer());
+        assertNull(meterRegistry.find("external.api.instance.latency").tag("instance", "slow:8082").gauge());
+        assertNotNull(meterRegistry.find("external.api.instance.latency").tag("instance", "fast:8081").gauge());
+        assertTrue(circuitBreakerRegistry.find("external-api@slow:8082").isEmpty());
+        assertTrue(circuitBreakerRegistry.find("external-api@fast:8081").isPresent());
+    }
+
+    private void record(ServiceInstance instance, Duration elapsed, Throwable failure) {
+        statistics.started(instance);
+        statistics.completed(instance, elapsed.toNanos(), failure);
+    }
+
+    private static ServiceInstance instance(String host, int port) {
+        return new DefaultServiceInstance(host + "-" + port, "external-api", host, port, false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ObjectProvider<ServiceInstanceListSupplier> supplierOf(List<ServiceInstance> instances) {
+        ServiceInstanceListSupplier supplier = mock(ServiceInstanceListSupplier.class);
+        when(supplier.get(any())).thenReturn(Flux.just(instances));
+        ObjectProvider<ServiceInstanceListSupplier> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable(any())).thenReturn(supplier);
+        return provider;
+    }
+}
@@ -0,0 +1,94 @@
+package com.javaninja.client;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.javaninja.model.ExternalUser;
+import com.javaninja.model.Post;
+import feign.Request;
+import feign.Response;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingJacksonDecoderTest {
+
+    private final StreamingJacksonDecoder decoder = new StreamingJacksonDecoder(new ObjectMapper());
+
+    @Test
+    @DisplayName("Should decode a record and skip fields it does not declare")
+    void shouldDecodeRecordAndSkipUndeclaredFields() throws Exception {
+        // Given
+        String json = "{\"id\":1,\"name\":\"Leanne\",\"email\":\"leanne@example.com\","
+                + "\"address\":{\"city\":\"Gwenborough\",\"geo\":{\"lat\":\"-37.3\"}},\"company\":{\"name\":\"Acme\"}}";
+
+        // When
+        Object result = decoder.decode(response(200, json), ExternalUser.class);
+
+        // Then
+        assertEquals(new ExternalUser(1L, "Leanne", "leanne@example.com"), result);
+    }
+
+    @Test
+    @DisplayName("Should decode a generic list of records")
+    void shouldDecodeGenericListOfRecords() throws Exception {
+        // Given
+        String json = "[{\"id\":1,\"userId\":7,\"title\":\"First\",\"body\":\"A\"},{\"id\":2,\"userId\":7,\"title\":\"Second\",\"body\":\"B\"}]";
+
+        // When
+        Object result = decoder.decode(response(200, json), new TypeReference<List<Post>>() { }.getType());
+
+        // Then
+        assertEquals(List.of(new Post(1L, 7L, "First", "A"), new Post(2L, 7L, "Second", "B")), result);
+    }
+
+    @Test
+    @DisplayName("Should return empty value for no-content response")
+    void shouldReturnEmptyValueForNoContentResponse() throws Exception {
+        // When
+        Object result = decoder.decode(response(204, null), Post.class);
+
+        // Then
+        assertNull(result);
+    }
+
+    @Test
+    @DisplayName("Should inflate a gzip-encoded body")
+    void shouldInflateGzipEncodedBody() throws Exception {
+        // Given
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write("{\"id\":3,\"userId\":1,\"title\":\"Zipped\",\"body\":\"Z\"}".getBytes(StandardCharsets.UTF_8));
+        }
+        Response response = Response.builder()
+                .status(200)
+                .request(Request.create(Request.HttpMethod.GET, "/posts/3", Map.of(), null, StandardCharsets.UTF_8, null))
+                .headers(Map.of("Content-Encoding", List.of("gzip")))
+                .body(compressed.toByteArray())
+                .build();
+
+        // When
+        Object result = decoder.decode(response, Post.class);
+
+        // Then
+        assertEquals(new Post(3L, 1L, "Zipped", "Z"), result);
+    }
+
+    private static Response response(int status, String body) {
+        Request request = Request.create(Request.HttpMethod.GET, "/posts", Map.of(), null, StandardCharsets.UTF_8, null);
+        Response.Builder builder = Response.builder()
+                .status(status)
+                .request(request)
+                .headers(Map.of());
+        if (body != null) {
+            builder.body(body, StandardCharsets.UTF_8);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,59 @@
+package com.javaninja.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "external-api.url=http://localhost:${wiremock.server.port}",
+        "management.endpoints.web.exposure.include=health,prometheus"
+})
+@AutoConfigureObservability(tracing = false)
+@AutoConfigureWireMock(port = 0)
+@ActiveProfiles("test")
+class MetricsConfigurationTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    @DisplayName("Should expose hot-path timers and histograms on the Prometheus endpoint")
+    void shouldExposeHotPathTimersAndHistogramsOnPrometheusEndpoint() {
+        // Given
+        stubFor(get(urlEqualTo("/posts/1"))
+                .willReturn(okJson("{\"id\":1,\"userId\":1,\"title\":\"Post\",\"body\":\"Body\"}")));
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity("/api/users/1", String.class).getStatusCode());
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity("/api/external/posts/1", String.class).getStatusCode());
+        assertEquals(HttpStatus.OK, restTemplate.getForEntity("/api/external/posts/1", String.class).getStatusCode());
+
+        // When
+        ResponseEntity<String> scrape = restTemplate.getForEntity("/actuator/prometheus", String.class);
+
+        // Then
+        assertEquals(HttpStatus.OK, scrape.getStatusCode());
+        String metrics = scrape.getBody();
+        assertNotNull(metrics);
+        assertTrue(metrics.contains("users_operations_seconds_bucket{application=\"spring-cloud-project-test\",operation=\"get\",le="));
+        assertTrue(metrics.contains("users_operations_seconds_count{application=\"spring-cloud-project-test\",operation=\"get\"} 1"));
+        assertTrue(metrics.contains("users_store_size{"));
+        assertTrue(metrics.contains("external_api_requests_seconds_count{application=\"spring-cloud-project-test\",endpoint=\"posts\",outcome=\"success\"} 1"));
+        assertTrue(metrics.contains("external_api_requests_seconds_count{application=\"spring-cloud-project-test\",endpoint=\"posts\",outcome=\"cache_hit\"} 1"));
+        assertTrue(metrics.contains("http_json_serialization_seconds_count{application=\"spring-cloud-project-test\",operation=\"write\"}"));
+        assertTrue(metrics.contains("http_server_requests_seconds_bucket{"));
+        assertTrue(metrics.contains("feign_client_requests_seconds_bucket{"));
+        assertTrue(metrics.contains("http_url=\"/posts/{id}\""));
+    }
+}
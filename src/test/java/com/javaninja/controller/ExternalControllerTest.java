@@ -1,23 +1,40 @@
 package com.javaninja.controller;
 
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.javaninja.config.ResponseCacheConfiguration;
+import com.javaninja.config.WireFormatConfiguration;
+import com.javaninja.model.ExternalUser;
+import com.javaninja.model.Post;
 import com.javaninja.service.ExternalService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
-
-import java.util.HashMap;
-import java.util.Map;
-
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(ExternalController.class)
+@Import({SimpleMeterRegistry.class, WireFormatConfiguration.class, ResponseCacheConfiguration.class})
 @ActiveProfiles("test")
 class ExternalControllerTest {
 
@@ -32,18 +49,15 @@ class ExternalControllerTest {
     void shouldReturnExternalPost() throws Exception {
         // Given
         Long postId = 1L;
-        Map<String, Object> post = new HashMap<>();
-        post.put("id", postId);
-        post.put("title", "Test Post");
-        post.put("body", "Test Body");
-        post.put("userId", 1);
+        Post post = new Post(postId, 1L, "Test Post", "Test Body");
 
-        when(externalService.getPost(postId)).thenReturn(post);
+        when(externalService.getPostAsync(postId)).thenReturn(CompletableFuture.completedFuture(post));
 
         // When & Then
-        mockMvc.perform(get("/api/external/posts/1"))
+        performAsync(get("/api/external/posts/1"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().string("Vary", "Accept, Accept-Encoding"))
                 .andExpect(jsonPath("$.id").value(1))
                 .andExpect(jsonPath("$.title").value("Test Post"))
                 .andExpect(jsonPath("$.body").value("Test Body"))
@@ -55,20 +69,55 @@ class ExternalControllerTest {
     void shouldReturnExternalUser() throws Exception {
         // Given
         Long userId = 1L;
-        Map<String, Object> user = new HashMap<>();
-        user.put("id", userId);
-        user.put("name", "External User");
-        user.put("email", "external.user@example.com");
+        ExternalUser user = new ExternalUser(userId, "External User", "external.user@example.com");
 
-        when(externalService.getExternalUser(userId)).thenReturn(user);
+        when(externalService.getExternalUserAsync(userId)).thenReturn(CompletableFuture.completedFuture(user));
 
         // When & Then
-        mockMvc.perform(get("/api/external/users/1"))
+        performAsync(get("/api/external/users/1"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.id").value(1))
                 .andExpect(jsonPath("$.name").value("External User"))
-                .andExpect(jsonPath("$.email").value("external.user@example.com"));
+                .andExpect(jsonPath("$.email").value("external.user@example.com"))
+                .andExpect(jsonPath("$.error").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Should relay upstream bytes in pass-through mode")
+    void shouldRelayUpstreamBytesInPassThroughMode() throws Exception {
+        // Given
+        String upstream = "{\"id\":1,\"title\":\"Raw\",\"extra\":true}";
+        when(externalService.isPassThrough()).thenReturn(true);
+        when(externalService.relayPostAsync(1L))
+                .thenReturn(CompletableFuture.completedFuture(upstream.getBytes(StandardCharsets.UTF_8)));
+
+        // When & Then
+        performAsync(get("/api/external/posts/1"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().string(upstream));
+    }
+
+    @Test
+    @DisplayName("Should re-encode instead of relaying when the client prefers CBOR")
+    void shouldReEncodeInsteadOfRelayingWhenTheClientPrefersCbor() throws Exception {
+        // Given
+        when(externalService.isPassThrough()).thenReturn(true);
+        when(externalService.getPostAsync(1L))
+                .thenReturn(CompletableFuture.completedFuture(new Post(1L, 1L, "Typed", "Body")));
+
+        // When
+        MvcResult result = performAsync(get("/api/external/posts/1")
+                .accept(MediaType.APPLICATION_CBOR, MediaType.parseMediaType("application/json;q=0.5")))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn();
+
+        // Then
+        Post decoded = new CBORMapper().readValue(result.getResponse().getContentAsByteArray(), Post.class);
+        assertEquals("Typed", decoded.title());
+        verify(externalService, never()).relayPostAsync(anyLong());
     }
 
     @Test
@@ -76,22 +125,54 @@ class ExternalControllerTest {
     void shouldReturnFallbackResponseWhenExternalServiceFails() throws Exception {
         // Given
         Long postId = 1L;
-        Map<String, Object> fallbackPost = new HashMap<>();
-        fallbackPost.put("id", postId);
-        fallbackPost.put("title", "Fallback Post");
-        fallbackPost.put("body", "This is a fallback response due to service unavailability");
-        fallbackPost.put("userId", 1);
-        fallbackPost.put("error", "External service is currently unavailable");
+        Post fallbackPost = new Post(postId, 1L, "Fallback Post",
+                "This is a fallback response due to service unavailability",
+                "External service is currently unavailable");
 
-        when(externalService.getPost(postId)).thenReturn(fallbackPost);
+        when(externalService.getPostAsync(postId)).thenReturn(CompletableFuture.completedFuture(fallbackPost));
 
         // When & Then
-        mockMvc.perform(get("/api/external/posts/1"))
+        performAsync(get("/api/external/posts/1"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.id").value(1))
                 .andExpect(jsonPath("$.title").value("Fallback Post"))
                 .andExpect(jsonPath("$.error").value("External service is currently unavailable"));
     }
-}
 
+    @Test
+    @DisplayName("Should return several external posts in one call")
+    void shouldReturnSeveralExternalPostsInOneCall() throws Exception {
+        // Given
+        when(externalService.getPostsAsync(List.of(1L, 2L))).thenReturn(CompletableFuture.completedFuture(List.of(
+            new Post(1L, 1L, "First", "Body"),
+            new Post(2L, 1L, "Second", "Body"))));
+
+        // When & Then
+        performAsync(get("/api/external/posts").param("id", "1", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[1].title").value("Second"));
+    }
+
+    @Test
+    @DisplayName("Should return several external users in one call")
+    void shouldReturnSeveralExternalUsersInOneCall() throws Exception {
+        // Given
+        when(externalService.getExternalUsersAsync(List.of(3L, 4L))).thenReturn(CompletableFuture.completedFuture(List.of(
+            new ExternalUser(3L, "Third", "third@example.com"),
+            new ExternalUser(4L, "Fourth", "fourth@example.com"))));
+
+        // When & Then
+        performAsync(get("/api/external/users").param("id", "3").param("id", "4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Third"));
+    }
+
+    private ResultActions performAsync(MockHttpServletRequestBuilder builder) throws Exception {
+        MvcResult result = mockMvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+}
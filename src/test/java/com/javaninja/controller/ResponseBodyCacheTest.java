@@ -0,0 +1,142 @@
+package com.javaninja.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.javaninja.model.Post;
+import com.javaninja.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseBodyCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private ResponseBodyCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ResponseBodyCache(new ResponseCacheProperties(), objectMapper, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Should serve a user body from cache until its version changes")
+    void shouldServeUserBodyFromCacheUntilItsVersionChanges() throws Exception {
+        // Given
+        User user = user(1, "John Doe", 5);
+        ResponseEntity<byte[]> first = cache.user(user, null);
+
+        // When
+        ResponseEntity<byte[]> second = cache.user(user(1, "Stale Copy", 5), null);
+        ResponseEntity<byte[]> updated = cache.user(user(1, "John Updated", 6), null);
+
+        // Then
+        assertSame(first.getBody(), second.getBody());
+        assertEquals("\"5\"", second.getHeaders().getETag());
+        assertEquals("John Updated", objectMapper.readValue(updated.getBody(), User.class).getName());
+        assertEquals(1.0, lookups("hit"));
+        assertEquals(2.0, lookups("miss"));
+    }
+
+    @Test
+    @DisplayName("Should build the user list only when the store version changes")
+    void shouldBuildUserListOnlyWhenStoreVersionChanges() {
+        // Given
+        AtomicInteger builds = new AtomicInteger();
+        List<User> users = List.of(user(1, "John Doe", 1), user(2, "Jane Smith", 2));
+
+        // When
+        cache.users(2, () -> { builds.incrementAndGet(); return users; }, null);
+        cache.users(2, () -> { builds.incrementAndGet(); return users; }, null);
+        cache.users(3, () -> { builds.incrementAndGet(); return users; }, null);
+
+        // Then
+        assertEquals(2, builds.get());
+    }
+
+    @Test
+    @DisplayName("Should serve large bodies gzipped, with their own ETag, only to clients that accept gzip")
+    void shouldServeLargeBodiesGzippedOnlyToClientsThatAcceptGzip() throws Exception {
+        // Given
+        List<User> users = LongStream.rangeClosed(1, 200)
+                .mapToObj(id -> user(id, "User " + id, id))
+                .toList();
+
+        // When
+        ResponseEntity<byte[]> gzipped = cache.users(1, () -> users, "gzip, deflate");
+        ResponseEntity<byte[]> plain = cache.users(1, () -> users, "gzip;q=0");
+
+        // Then
+        assertEquals("gzip", gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("\"1-gzip\"", gzipped.getHeaders().getETag());
+        assertEquals("\"1\"", plain.getHeaders().getETag());
+        assertTrue(gzipped.getHeaders().getVary().contains(HttpHeaders.ACCEPT_ENCODING));
+        assertTrue(gzipped.getBody().length < plain.getBody().length);
+        assertArrayEquals(plain.getBody(), gunzip(gzipped.getBody()));
+        assertNull(plain.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertTrue(plain.getHeaders().getVary().contains(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    @Test
+    @DisplayName("Should not gzip small bodies but still vary by Accept-Encoding")
+    void shouldNotGzipSmallBodies() {
+        // When
+        ResponseEntity<byte[]> response = cache.user(user(1, "John Doe", 1), "gzip");
+
+        // Then
+        assertNull(response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("\"1\"", response.getHeaders().getETag());
+        assertEquals(List.of(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING), response.getHeaders().getVary());
+    }
+
+    @Test
+    @DisplayName("Should rebuild bodies after invalidation")
+    void shouldRebuildBodiesAfterInvalidation() {
+        // Given
+        Post post = new Post(1L, 1L, "Test Post", "Test Body");
+        cache.user(user(1, "John Doe", 1), null);
+        cache.users(1, List::of, null);
+        cache.external(post, null);
+
+        // When
+        cache.invalidateUser(1);
+        cache.invalidate(post);
+        cache.user(user(1, "John Doe", 1), null);
+        cache.users(1, List::of, null);
+        cache.external(post, null);
+
+        // Then
+        assertEquals(0.0, lookups("hit"));
+        assertEquals(6.0, lookups("miss"));
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.get("http.response.cache.lookups").tag("result", result).counter().count();
+    }
+
+    private static User user(long id, String name, long version) {
+        User user = new User(id, name, "user" + id + "@example.com");
+        user.setVersion(version);
+        return user;
+    }
+
+    private static byte[] gunzip(byte[] gzip) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip))) {
+            return in.readAllBytes();
+        }
+    }
+}
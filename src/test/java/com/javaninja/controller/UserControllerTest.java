@@ -1,40 +1,76 @@
 package com.javaninja.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.javaninja.config.ResponseCacheConfiguration;
+import com.javaninja.config.UserChangeFeedConfiguration;
+import com.javaninja.config.WireFormatConfiguration;
+import com.javaninja.model.BatchItemResult;
+import com.javaninja.model.BatchItemResult.Status;
 import com.javaninja.model.User;
+import com.javaninja.model.UserEvent;
+import com.javaninja.service.DuplicateEmailException;
+import com.javaninja.service.UserChangeFeed;
 import com.javaninja.service.UserService;
+import com.javaninja.service.VersionMismatchException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(UserController.class)
+@Import({SimpleMeterRegistry.class, WireFormatConfiguration.class, ResponseCacheConfiguration.class,
+        UserChangeFeedConfiguration.class})
 @ActiveProfiles("test")
 class UserControllerTest {
 
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @MockitoBean
     private UserService userService;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private UserChangeFeed changeFeed;
+
     @Test
     @DisplayName("Should return all users")
     void shouldReturnAllUsers() throws Exception {
@@ -101,13 +137,64 @@ class UserControllerTest {
                 .andExpect(jsonPath("$.email").value("alice.brown@example.com"));
     }
 
+    @Test
+    @DisplayName("Should return users as CBOR when the client asks for it")
+    void shouldReturnUsersAsCborWhenTheClientAsksForIt() throws Exception {
+        // Given
+        CBORMapper cborMapper = new CBORMapper();
+        List<User> users = List.of(new User(1L, "John Doe", "john@example.com"));
+        when(userService.getAllUsers()).thenReturn(users);
+
+        // When
+        MvcResult result = mockMvc.perform(get("/api/users").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string("ETag", "\"0-cbor\""))
+                .andExpect(header().string("Vary", "Accept"))
+                .andReturn();
+
+        // Then
+        List<User> decoded = cborMapper.readValue(result.getResponse().getContentAsByteArray(),
+                new TypeReference<List<User>>() {
+                });
+        assertEquals(1, decoded.size());
+        assertEquals("John Doe", decoded.get(0).getName());
+        assertEquals("john@example.com", decoded.get(0).getEmail());
+    }
+
+    @Test
+    @DisplayName("Should create user from a Smile request body")
+    void shouldCreateUserFromASmileRequestBody() throws Exception {
+        // Given
+        SmileMapper smileMapper = new SmileMapper();
+        MediaType smile = MediaType.parseMediaType("application/x-jackson-smile");
+        User createdUser = new User(4L, "Alice Brown", "alice.brown@example.com");
+        when(userService.createUser(any(User.class))).thenReturn(createdUser);
+
+        // When
+        MvcResult result = mockMvc.perform(post("/api/users")
+                        .contentType(smile)
+                        .accept(smile)
+                        .content(smileMapper.writeValueAsBytes(new User(null, "Alice Brown", "alice.brown@example.com"))))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(smile))
+                .andReturn();
+
+        // Then
+        ArgumentCaptor<User> captor = ArgumentCaptor.forClass(User.class);
+        verify(userService).createUser(captor.capture());
+        assertEquals("alice.brown@example.com", captor.getValue().getEmail());
+        User decoded = smileMapper.readValue(result.getResponse().getContentAsByteArray(), User.class);
+        assertEquals(4L, decoded.getId());
+    }
+
     @Test
     @DisplayName("Should update existing user")
     void shouldUpdateExistingUser() throws Exception {
         // Given
         User inputUser = new User(null, "John Updated", "john.updated@example.com");
         User updatedUser = new User(1L, "John Updated", "john.updated@example.com");
-        when(userService.updateUser(eq(1L), any(User.class))).thenReturn(Optional.of(updatedUser));
+        when(userService.updateUser(eq(1L), any(User.class), any(LongPredicate.class))).thenReturn(Optional.of(updatedUser));
 
         // When & Then
         mockMvc.perform(put("/api/users/1")
@@ -125,7 +212,7 @@ class UserControllerTest {
     void shouldReturn404WhenUpdatingNonExistentUser() throws Exception {
         // Given
         User inputUser = new User(null, "Non Existent", "non.existent@example.com");
-        when(userService.updateUser(eq(999L), any(User.class))).thenReturn(Optional.empty());
+        when(userService.updateUser(eq(999L), any(User.class), any(LongPredicate.class))).thenReturn(Optional.empty());
 
         // When & Then
         mockMvc.perform(put("/api/users/999")
@@ -138,7 +225,7 @@ class UserControllerTest {
     @DisplayName("Should delete existing user")
     void shouldDeleteExistingUser() throws Exception {
         // Given
-        when(userService.deleteUser(1L)).thenReturn(true);
+        when(userService.deleteUser(eq(1L), any(LongPredicate.class))).thenReturn(true);
 
         // When & Then
         mockMvc.perform(delete("/api/users/1"))
@@ -149,7 +236,7 @@ class UserControllerTest {
     @DisplayName("Should return 404 when deleting non-existent user")
     void shouldReturn404WhenDeletingNonExistentUser() throws Exception {
         // Given
-        when(userService.deleteUser(999L)).thenReturn(false);
+        when(userService.deleteUser(eq(999L), any(LongPredicate.class))).thenReturn(false);
 
         // When & Then
         mockMvc.perform(delete("/api/users/999"))
@@ -164,5 +251,423 @@ class UserControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().string("User service is healthy!"));
     }
-}
 
+    @Test
+    @DisplayName("Should return user matching email")
+    void shouldReturnUserMatchingEmail() throws Exception {
+        // Given
+        User user = new User(2L, "Jane Smith", "jane.smith@example.com");
+        when(userService.getUserByEmail("jane.smith@example.com")).thenReturn(Optional.of(user));
+
+        // When & Then
+        mockMvc.perform(get("/api/users").param("email", "jane.smith@example.com"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(2));
+    }
+
+    @Test
+    @DisplayName("Should return empty list when no user has email")
+    void shouldReturnEmptyListWhenNoUserHasEmail() throws Exception {
+        // Given
+        when(userService.getUserByEmail("missing@example.com")).thenReturn(Optional.empty());
+
+        // When & Then
+        mockMvc.perform(get("/api/users").param("email", "missing@example.com"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    @DisplayName("Should return users matching name prefix")
+    void shouldReturnUsersMatchingNamePrefix() throws Exception {
+        // Given
+        List<User> users = List.of(new User(1L, "John Doe", "john.doe@example.com"));
+        when(userService.getUsersByNamePrefix("jo", 5)).thenReturn(users);
+
+        // When & Then
+        mockMvc.perform(get("/api/users").param("namePrefix", "jo").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("John Doe"));
+    }
+
+    @Test
+    @DisplayName("Should return 409 when email already exists")
+    void shouldReturn409WhenEmailAlreadyExists() throws Exception {
+        // Given
+        User inputUser = new User(null, "John Again", "john.doe@example.com");
+        when(userService.createUser(any(User.class))).thenThrow(new DuplicateEmailException("john.doe@example.com"));
+
+        // When & Then
+        mockMvc.perform(post("/api/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(inputUser)))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    @DisplayName("Should return page of users with next cursor")
+    void shouldReturnPageOfUsersWithNextCursor() throws Exception {
+        // Given
+        List<User> users = List.of(
+            new User(3L, "Bob Johnson", "bob.johnson@example.com"),
+            new User(4L, "Alice Brown", "alice.brown@example.com")
+        );
+        when(userService.getUsersAfter(2L, 2)).thenReturn(users);
+
+        // When & Then
+        mockMvc.perform(get("/api/users").param("after", "2").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users.length()").value(2))
+                .andExpect(jsonPath("$.users[0].id").value(3))
+                .andExpect(jsonPath("$.nextAfter").value(4));
+    }
+
+    @Test
+    @DisplayName("Should omit next cursor on last page")
+    void shouldOmitNextCursorOnLastPage() throws Exception {
+        // Given
+        when(userService.getUsersAfter(anyLong(), eq(10)))
+                .thenReturn(List.of(new User(1L, "John Doe", "john.doe@example.com")));
+
+        // When & Then
+        mockMvc.perform(get("/api/users").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users.length()").value(1))
+                .andExpect(jsonPath("$.nextAfter").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Should page with the default size when only a cursor is given")
+    void shouldPageWithDefaultSizeWhenOnlyCursorIsGiven() throws Exception {
+        // Given
+        when(userService.getUsersAfter(2L, UserController.DEFAULT_PAGE_SIZE))
+                .thenReturn(List.of(new User(3L, "Bob Johnson", "bob.johnson@example.com")));
+
+        // When & Then
+        mockMvc.perform(get("/api/users").param("after", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users.length()").value(1))
+                .andExpect(jsonPath("$.users[0].id").value(3))
+                .andExpect(jsonPath("$.nextAfter").doesNotExist());
+        verify(userService, never()).getAllUsers();
+    }
+
+    @Test
+    @DisplayName("Should reject a search by both email and name prefix")
+    void shouldRejectSearchByBothEmailAndNamePrefix() throws Exception {
+        // When & Then
+        mockMvc.perform(get("/api/users").param("email", "john.doe@example.com").param("namePrefix", "Jo"))
+                .andExpect(status().isBadRequest());
+        verify(userService, never()).getAllUsers();
+        verify(userService, never()).getUserByEmail(anyString());
+        verify(userService, never()).getUsersByNamePrefix(anyString(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should stream users as newline-delimited JSON")
+    void shouldStreamUsersAsNdjson() throws Exception {
+        // Given
+        when(userService.streamUsers()).thenReturn(Stream.of(
+            new User(1L, "John Doe", "john.doe@example.com"),
+            new User(2L, "Jane Smith", "jane.smith@example.com")
+        ));
+
+        // When
+        MvcResult result = mockMvc.perform(get("/api/users/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                    "{\"id\":1,\"name\":\"John Doe\",\"email\":\"john.doe@example.com\"}\n" +
+                    "{\"id\":2,\"name\":\"Jane Smith\",\"email\":\"jane.smith@example.com\"}\n"));
+    }
+
+    @Test
+    @DisplayName("Should create users from JSON array batch")
+    void shouldCreateUsersFromJsonArrayBatch() throws Exception {
+        // Given
+        List<User> inputUsers = List.of(
+            new User(null, "Alice Brown", "alice.brown@example.com"),
+            new User(null, "John Again", "john.doe@example.com")
+        );
+        when(userService.createUsers(anyList())).thenReturn(List.of(
+            BatchItemResult.of(4L, Status.CREATED),
+            BatchItemResult.failed(null, Status.CONFLICT, "A user with email 'john.doe@example.com' already exists")
+        ));
+
+        // When & Then
+        mockMvc.perform(post("/api/users/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(inputUsers)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(4))
+                .andExpect(jsonPath("$[0].status").value("CREATED"))
+                .andExpect(jsonPath("$[0].error").doesNotExist())
+                .andExpect(jsonPath("$[1].status").value("CONFLICT"));
+    }
+
+    @Test
+    @DisplayName("Should create users from NDJSON batch")
+    void shouldCreateUsersFromNdjsonBatch() throws Exception {
+        // Given
+        String body = "{\"name\":\"Alice Brown\",\"email\":\"alice.brown@example.com\"}\n"
+                + "{\"name\":\"Carol White\",\"email\":\"carol.white@example.com\"}\n";
+        when(userService.createUsers(anyList())).thenAnswer(invocation -> {
+            List<User> users = invocation.getArgument(0);
+            return users.stream().map(user -> BatchItemResult.of(4L, Status.CREATED)).toList();
+        });
+
+        // When & Then
+        mockMvc.perform(post("/api/users/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    @Test
+    @DisplayName("Should return 400 for malformed NDJSON batch")
+    void shouldReturn400ForMalformedNdjsonBatch() throws Exception {
+        // When & Then
+        mockMvc.perform(post("/api/users/batch")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .content("{\"name\":"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("Should delete users in batch")
+    void shouldDeleteUsersInBatch() throws Exception {
+        // Given
+        when(userService.deleteUsers(List.of(1L, 999L))).thenReturn(List.of(
+            BatchItemResult.of(1L, Status.DELETED),
+            BatchItemResult.of(999L, Status.NOT_FOUND)
+        ));
+
+        // When & Then
+        mockMvc.perform(delete("/api/users/batch")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("[1, 999]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].status").value("DELETED"))
+                .andExpect(jsonPath("$[1].status").value("NOT_FOUND"));
+    }
+
+    @Test
+    @DisplayName("Should tag user with its version and answer 304 when it is unchanged")
+    void shouldTagUserWithVersionAndAnswer304WhenUnchanged() throws Exception {
+        // Given
+        User user = new User(1L, "John Doe", "john.doe@example.com");
+        user.setVersion(7L);
+        when(userService.getUserById(1L)).thenReturn(Optional.of(user));
+
+        // When & Then
+        mockMvc.perform(get("/api/users/1"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7\""))
+                .andExpect(jsonPath("$.version").doesNotExist());
+        mockMvc.perform(get("/api/users/1").header("If-None-Match", "\"7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"7\""))
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/api/users/1").header("If-None-Match", "\"6\""))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("Should answer 304 for an unchanged user list without reading it")
+    void shouldAnswer304ForUnchangedUserListWithoutReadingIt() throws Exception {
+        // Given
+        when(userService.getVersion()).thenReturn(42L);
+
+        // When & Then
+        mockMvc.perform(get("/api/users").header("If-None-Match", "W/\"42\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"42\""));
+        verify(userService, never()).getAllUsers();
+    }
+
+    @Test
+    @DisplayName("Should tag each negotiated format of a user apart and vary by Accept")
+    void shouldTagEachNegotiatedFormatOfUserApartAndVaryByAccept() throws Exception {
+        // Given
+        User user = new User(1L, "John Doe", "john.doe@example.com");
+        user.setVersion(7L);
+        when(userService.getUserById(1L)).thenReturn(Optional.of(user));
+        MediaType smile = MediaType.parseMediaType("application/x-jackson-smile");
+
+        // When & Then
+        mockMvc.perform(get("/api/users/1").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"7\""))
+                .andExpect(header().string("Vary", "Accept, Accept-Encoding"));
+        mockMvc.perform(get("/api/users/1").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string("ETag", "\"7-cbor\""))
+                .andExpect(header().string("Vary", "Accept"));
+        mockMvc.perform(get("/api/users/1").accept(smile))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(smile))
+                .andExpect(header().string("ETag", "\"7-smile\""));
+        mockMvc.perform(get("/api/users/1").accept(MediaType.APPLICATION_CBOR).header("If-None-Match", "\"7-cbor\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"7-cbor\""))
+                .andExpect(header().string("Vary", "Accept, Accept-Encoding"));
+    }
+
+    @Test
+    @DisplayName("Should accept the gzip ETag of a version in conditional requests")
+    void shouldAcceptGzipETagOfVersionInConditionalRequests() throws Exception {
+        // Given
+        User user = new User(1L, "John Doe", "john.doe@example.com");
+        user.setVersion(7L);
+        when(userService.getUserById(1L)).thenReturn(Optional.of(user));
+        ArgumentCaptor<LongPredicate> expectedVersion = ArgumentCaptor.forClass(LongPredicate.class);
+        when(userService.deleteUser(eq(1L), expectedVersion.capture())).thenReturn(true);
+
+        // When & Then
+        mockMvc.perform(get("/api/users/1").header("If-None-Match", "\"7-gzip\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", "\"7-gzip\""));
+        mockMvc.perform(delete("/api/users/1").header("If-Match", "\"7-gzip\""))
+                .andExpect(status().isNoContent());
+        assertTrue(expectedVersion.getValue().test(7L));
+    }
+
+    @Test
+    @DisplayName("Should pass the If-Match version to the update")
+    void shouldPassIfMatchVersionToUpdate() throws Exception {
+        // Given
+        User updatedUser = new User(1L, "John Updated", "john.updated@example.com");
+        updatedUser.setVersion(8L);
+        ArgumentCaptor<LongPredicate> expectedVersion = ArgumentCaptor.forClass(LongPredicate.class);
+        when(userService.updateUser(eq(1L), any(User.class), expectedVersion.capture()))
+                .thenReturn(Optional.of(updatedUser));
+
+        // When & Then
+        mockMvc.perform(put("/api/users/1")
+                .header("If-Match", "\"7\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(updatedUser)))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"8\""));
+        assertTrue(expectedVersion.getValue().test(7L));
+        assertFalse(expectedVersion.getValue().test(8L));
+    }
+
+    @Test
+    @DisplayName("Should return 412 when the If-Match version is stale")
+    void shouldReturn412WhenIfMatchVersionIsStale() throws Exception {
+        // Given
+        when(userService.deleteUser(eq(1L), any(LongPredicate.class)))
+                .thenThrow(new VersionMismatchException(1L, 9L));
+
+        // When & Then
+        mockMvc.perform(delete("/api/users/1").header("If-Match", "\"7\""))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(header().string("ETag", "\"9\""));
+    }
+
+    @Test
+    @DisplayName("Should count conditional requests answered from the ETag")
+    void shouldCountConditionalRequestsAnsweredFromETag() throws Exception {
+        // Given
+        when(userService.getVersion()).thenReturn(42L);
+        when(userService.updateUser(eq(1L), any(User.class), any(LongPredicate.class)))
+                .thenThrow(new VersionMismatchException(1L, 9L));
+        double notModifiedBefore = conditionalRequests("not_modified");
+        double preconditionFailedBefore = conditionalRequests("precondition_failed");
+
+        // When
+        mockMvc.perform(get("/api/users").header("If-None-Match", "\"42\""))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(put("/api/users/1")
+                .header("If-Match", "\"7\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new User(1L, "John", "john@example.com"))))
+                .andExpect(status().isPreconditionFailed());
+
+        // Then
+        assertEquals(notModifiedBefore + 1, conditionalRequests("not_modified"));
+        assertEquals(preconditionFailedBefore + 1, conditionalRequests("precondition_failed"));
+    }
+
+    @Test
+    @DisplayName("Should stream changes after the requested sequence as server-sent events")
+    void shouldStreamChangesAfterRequestedSequenceAsServerSentEvents() throws Exception {
+        // Given
+        changeFeed.reset(0);
+        changeFeed.append(UserEvent.created(1, new User(4L, "Alice Brown", "alice.brown@example.com")));
+        changeFeed.append(UserEvent.updated(2, new User(4L, "Alice Green", "alice.green@example.com")));
+
+        // When
+        MvcResult result = mockMvc.perform(get("/api/users/changes").param("since", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        changeFeed.append(UserEvent.deleted(3, 4L));
+
+        // Then
+        String body = awaitBody(result, "id:3");
+        assertEquals(MediaType.TEXT_EVENT_STREAM_VALUE, result.getResponse().getContentType());
+        assertFalse(body.contains("id:1\n"));
+        assertTrue(body.contains("id:2\nevent:updated\ndata:{\"sequence\":2,\"type\":\"UPDATED\",\"id\":4,"
+                + "\"name\":\"Alice Green\",\"email\":\"alice.green@example.com\"}\n\n"));
+        assertTrue(body.contains("id:3\nevent:deleted\ndata:{\"sequence\":3,\"type\":\"DELETED\",\"id\":4}\n\n"));
+    }
+
+    @Test
+    @DisplayName("Should resume a change stream from Last-Event-ID")
+    void shouldResumeChangeStreamFromLastEventId() throws Exception {
+        // Given
+        changeFeed.reset(10);
+        changeFeed.append(UserEvent.deleted(11, 1L));
+        changeFeed.append(UserEvent.deleted(12, 2L));
+
+        // When
+        MvcResult result = mockMvc.perform(get("/api/users/changes")
+                        .param("since", "10")
+                        .header("Last-Event-ID", "11"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        String body = awaitBody(result, "id:12");
+        assertFalse(body.contains("id:11"));
+    }
+
+    @Test
+    @DisplayName("Should answer 410 when the requested changes are no longer retained")
+    void shouldAnswerGoneWhenRequestedChangesAreNoLongerRetained() throws Exception {
+        // Given
+        changeFeed.reset(100);
+
+        // When & Then
+        mockMvc.perform(get("/api/users/changes").param("since", "42"))
+                .andExpect(status().isGone())
+                .andExpect(header().string("ETag", "\"100\""));
+    }
+
+    // Change streams stay open, so read what has been written so far instead of waiting for the end.
+    private static String awaitBody(MvcResult result, String expected) throws Exception {
+        for (int i = 0; i < 50; i++) {
+            String body = result.getResponse().getContentAsString();
+            if (body.contains(expected)) {
+                return body;
+            }
+            Thread.sleep(100);
+        }
+        throw new AssertionError("Stream did not contain " + expected + ": " + result.getResponse().getContentAsString());
+    }
+
+    private double conditionalRequests(String result) {
+        return meterRegistry.get("users.conditional.requests").tag("result", result).counter().count();
+    }
+}
@@ -0,0 +1,204 @@
+package com.javaninja.loadtest;
+
+import com.github.tomakehurst.wiremock.http.LogNormal;
+import com.javaninja.model.User;
+import com.javaninja.service.UserService;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.cloud.contract.wiremock.WireMockConfigurationCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives mixed user and external traffic through the running application while a local WireMock
+ * server plays the external API, with latency and errors injected per phase. Excluded from the
+ * regular build; run with {@code mvn test -Pload-test}. Knobs are system properties:
+ * {@code loadtest.rps}, {@code loadtest.phase-duration}, {@code loadtest.external-share} (percent),
+ * {@code loadtest.latency-median}, {@code loadtest.latency-sigma}, {@code loadtest.slowdown-factor}
+ * and {@code loadtest.error-rate}.
+ */
+@Tag("load")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "external-api.url=http://localhost:${wiremock.server.port}",
+        // Every lookup should reach the stub, otherwise injected faults only show on cache misses.
+        "external-api.cache.enabled=false",
+        "resilience4j.circuitbreaker.configs.external-api.sliding-window-size=20",
+        "resilience4j.circuitbreaker.configs.external-api.minimum-number-of-calls=10",
+        "resilience4j.circuitbreaker.configs.external-api.slow-call-duration-threshold=1s",
+        "resilience4j.circuitbreaker.configs.external-api.wait-duration-in-open-state=2s"
+})
+@AutoConfigureWireMock(port = 0)
+@ActiveProfiles("test")
+class ExternalApiLoadTest {
+
+    private static final int RATE = Integer.getInteger("loadtest.rps", 40);
+
+    private static final Duration PHASE = duration("loadtest.phase-duration", "5s");
+
+    private static final int EXTERNAL_SHARE = Integer.getInteger("loadtest.external-share", 50);
+
+    private static final Duration LATENCY_MEDIAN = duration("loadtest.latency-median", "20ms");
+
+    private static final double LATENCY_SIGMA = Double.parseDouble(System.getProperty("loadtest.latency-sigma", "0.4"));
+
+    private static final int SLOWDOWN_FACTOR = Integer.getInteger("loadtest.slowdown-factor", 40);
+
+    private static final double ERROR_RATE = Double.parseDouble(System.getProperty("loadtest.error-rate", "0.6"));
+
+    private static final int USERS = 100;
+
+    private static final Path REPORT = Path.of("target", "load-test", "report.md");
+
+    @TestConfiguration
+    static class UpstreamConfiguration {
+
+        @Bean
+        UpstreamConditions upstreamConditions() {
+            return new UpstreamConditions();
+        }
+
+        @Bean
+        WireMockConfigurationCustomizer upstreamConditionsCustomizer(UpstreamConditions upstreamConditions) {
+            return options -> options.extensions(upstreamConditions);
+        }
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UpstreamConditions upstream;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+
+    private final AtomicLong created = new AtomicLong();
+
+    @BeforeEach
+    void setUp() {
+        stubFor(get(urlPathMatching("/posts/\\d+"))
+                .willReturn(okJson("{\"id\":1,\"userId\":1,\"title\":\"Post\",\"body\":\"Body\"}")));
+        stubFor(get(urlPathMatching("/users/\\d+"))
+                .willReturn(okJson("{\"id\":1,\"name\":\"Leanne Graham\",\"email\":\"leanne@example.com\"}")));
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            users.add(new User(null, "Load User " + i, "load" + i + "@example.com"));
+        }
+        userService.createUsers(users);
+    }
+
+    @Test
+    @DisplayName("Should keep serving mixed traffic through upstream slowdowns and error bursts")
+    void shouldKeepServingMixedTrafficThroughUpstreamSlowdownsAndErrorBursts() throws Exception {
+        // Given
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker("external-api");
+        LoadReport report = new LoadReport();
+        LoadGenerator generator = new LoadGenerator(httpClient, RATE, traffic());
+        long normal = LATENCY_MEDIAN.toMillis();
+        long slow = normal * SLOWDOWN_FACTOR;
+
+        // When
+        runPhase(null, generator, "warm-up", Duration.ofSeconds(2), normal, 0);
+        // Cold-start calls can be slow enough to trip the breaker, so only watch it from a clean state.
+        circuitBreaker.reset();
+        report.watch(circuitBreaker);
+        runPhase(report, generator, "baseline", PHASE, normal, 0);
+        runPhase(report, generator, "slowdown", PHASE, slow, 0);
+        runPhase(report, generator, "errors", PHASE, normal, ERROR_RATE);
+        runPhase(report, generator, "recovery", PHASE, normal, 0);
+        report.write(REPORT);
+        System.out.println(report.render());
+
+        // Then
+        PhaseResult baseline = report.getPhases().get(0);
+        assertTrue(baseline.getThroughput() >= RATE * 0.8, "baseline throughput " + baseline.getThroughput());
+        for (PhaseResult phase : report.getPhases()) {
+            for (String target : List.of("users-get", "users-page", "users-create")) {
+                PhaseResult.Stats stats = phase.getTargets().get(target);
+                assertEquals(0, stats.getServerErrors() + stats.getFailed(), phase.getPhase() + " " + target);
+            }
+        }
+        PhaseResult errors = report.getPhases().get(2);
+        assertEquals(0, errors.getTargets().get("external-post").getServerErrors(), "fallbacks should hide upstream errors");
+        assertTrue(report.getTransitions().stream().anyMatch(transition -> transition.phase().equals("errors")
+                        && transition.transition() == CircuitBreaker.StateTransition.CLOSED_TO_OPEN),
+                "breaker should open during the error burst");
+        assertEquals(CircuitBreaker.State.CLOSED, circuitBreaker.getState());
+    }
+
+    // A null report runs the phase without recording it.
+    private void runPhase(LoadReport report, LoadGenerator generator, String phase, Duration duration,
+                          long medianMillis, double errorRate) throws InterruptedException {
+        upstream.set(new LogNormal(medianMillis, LATENCY_SIGMA), errorRate);
+        String conditions = String.format(Locale.ROOT, "log-normal latency, median %dms, sigma %.2f, %.0f%% errors",
+                medianMillis, LATENCY_SIGMA, errorRate * 100);
+        if (report == null) {
+            generator.run(phase, conditions, duration);
+            return;
+        }
+        report.startPhase(phase);
+        report.add(generator.run(phase, conditions, duration));
+    }
+
+    private List<LoadGenerator.Target> traffic() {
+        int userShare = 100 - EXTERNAL_SHARE;
+        return List.of(
+                new LoadGenerator.Target("users-get", userShare * 3 / 5,
+                        () -> request("/api/users/" + (4 + ThreadLocalRandom.current().nextInt(USERS))).build()),
+                new LoadGenerator.Target("users-page", userShare / 5,
+                        () -> request("/api/users?limit=20&after=" + ThreadLocalRandom.current().nextInt(USERS)).build()),
+                new LoadGenerator.Target("users-create", userShare / 5,
+                        () -> request("/api/users")
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString("{\"name\":\"Created\",\"email\":\"created"
+                                        + created.incrementAndGet() + "@example.com\"}"))
+                                .build()),
+                new LoadGenerator.Target("external-post", EXTERNAL_SHARE * 4 / 5,
+                        () -> request("/api/external/posts/" + (1 + ThreadLocalRandom.current().nextInt(100))).build()),
+                new LoadGenerator.Target("external-user", EXTERNAL_SHARE / 5,
+                        () -> request("/api/external/users/" + (1 + ThreadLocalRandom.current().nextInt(10))).build()));
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + path))
+                .timeout(Duration.ofSeconds(10));
+    }
+
+    private static Duration duration(String property, String defaultValue) {
+        return DurationStyle.detectAndParse(System.getProperty(property, defaultValue));
+    }
+}
@@ -0,0 +1,90 @@
+package com.javaninja.loadtest;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Open-loop traffic generator: requests are sent on a fixed schedule whatever the server's response
+ * times, and each latency is measured from the request's scheduled start. A closed loop would slow
+ * down with the server and hide exactly the queueing delay a load test is meant to show.
+ */
+final class LoadGenerator {
+
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(15);
+
+    private final HttpClient httpClient;
+
+    private final int requestsPerSecond;
+
+    private final List<Target> mix;
+
+    private final int totalWeight;
+
+    LoadGenerator(HttpClient httpClient, int requestsPerSecond, List<Target> mix) {
+        if (requestsPerSecond <= 0) {
+            throw new IllegalArgumentException("requestsPerSecond must be positive");
+        }
+        this.httpClient = httpClient;
+        this.requestsPerSecond = requestsPerSecond;
+        this.mix = List.copyOf(mix);
+        this.totalWeight = mix.stream().mapToInt(Target::weight).sum();
+    }
+
+    PhaseResult run(String phase, String conditions, Duration duration) throws InterruptedException {
+        PhaseResult result = new PhaseResult(phase, conditions, requestsPerSecond,
+                mix.stream().map(Target::name).toList());
+        long interval = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        List<CompletableFuture<?>> sent = new ArrayList<>();
+        for (long scheduled = start; scheduled < end; scheduled += interval) {
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Target target = pick();
+            long startedAt = scheduled;
+            sent.add(httpClient.sendAsync(target.request().get(), HttpResponse.BodyHandlers.discarding())
+                    .handle((response, ex) -> {
+                        result.record(target.name(), System.nanoTime() - startedAt,
+                                response != null ? response.statusCode() : -1);
+                        return null;
+                    }));
+        }
+        try {
+            CompletableFuture.allOf(sent.toArray(CompletableFuture[]::new))
+                    .get(DRAIN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException ex) {
+            result.setUnfinished(sent.stream().filter(future -> !future.isDone()).count());
+        } catch (ExecutionException ex) {
+            // not reachable: every outcome is handled and recorded above
+        }
+        result.setElapsed(Duration.ofNanos(System.nanoTime() - start));
+        return result;
+    }
+
+    private Target pick() {
+        int roll = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Target target : mix) {
+            roll -= target.weight();
+            if (roll < 0) {
+                return target;
+            }
+        }
+        return mix.get(mix.size() - 1);
+    }
+
+    record Target(String name, int weight, Supplier<HttpRequest> request) {
+    }
+}
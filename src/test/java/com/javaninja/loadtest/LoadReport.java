@@ -0,0 +1,115 @@
+package com.javaninja.loadtest;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Collects phase results and circuit breaker transitions of a load test and renders them as a
+ * Markdown report with latency percentiles per traffic target.
+ */
+final class LoadReport {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final long startedAt = System.nanoTime();
+
+    private final List<PhaseResult> phases = new ArrayList<>();
+
+    private final List<Transition> transitions = new CopyOnWriteArrayList<>();
+
+    private volatile String currentPhase = "";
+
+    void startPhase(String phase) {
+        currentPhase = phase;
+    }
+
+    void add(PhaseResult phase) {
+        phases.add(phase);
+    }
+
+    void watch(CircuitBreaker circuitBreaker) {
+        circuitBreaker.getEventPublisher().onStateTransition(event -> transitions.add(new Transition(
+                (System.nanoTime() - startedAt) / 1_000_000, currentPhase, event.getStateTransition())));
+    }
+
+    List<PhaseResult> getPhases() {
+        return phases;
+    }
+
+    List<Transition> getTransitions() {
+        return transitions;
+    }
+
+    String render() {
+        StringBuilder report = new StringBuilder("# Load test report\n");
+        for (PhaseResult phase : phases) {
+            report.append(String.format(Locale.ROOT,
+                    "%n## %s%n%nUpstream: %s. Target %d req/s, achieved %.1f req/s over %.1fs",
+                    phase.getPhase(), phase.getConditions(), phase.getTargetRate(), phase.getThroughput(),
+                    phase.getElapsed().toMillis() / 1000.0));
+            if (phase.getUnfinished() > 0) {
+                report.append(", ").append(phase.getUnfinished()).append(" requests still unfinished");
+            }
+            report.append(".\n\n| Target | Requests | 2xx/3xx | 4xx | 5xx | Failed |");
+            for (double percentile : PERCENTILES) {
+                report.append(" p").append(format(percentile)).append(" ms |");
+            }
+            report.append(" max ms |\n|---|---|---|---|---|---|");
+            report.append("---|".repeat(PERCENTILES.length + 1)).append('\n');
+            for (Map.Entry<String, PhaseResult.Stats> entry : phase.getTargets().entrySet()) {
+                PhaseResult.Stats stats = entry.getValue();
+                report.append("| ").append(entry.getKey())
+                        .append(" | ").append(stats.getCompleted())
+                        .append(" | ").append(stats.getOk())
+                        .append(" | ").append(stats.getClientErrors())
+                        .append(" | ").append(stats.getServerErrors())
+                        .append(" | ").append(stats.getFailed())
+                        .append(" |").append(percentiles(stats.getLatency())).append('\n');
+            }
+            report.append("| all | ").append(phase.getCompleted()).append(" | | | | |")
+                    .append(percentiles(phase.getLatency())).append('\n');
+        }
+        report.append("\n## Circuit breaker transitions\n\n");
+        if (transitions.isEmpty()) {
+            report.append("None.\n");
+        }
+        for (Transition transition : transitions) {
+            report.append(String.format(Locale.ROOT, "- %.1fs (%s): %s%n",
+                    transition.atMillis() / 1000.0, transition.phase(), transition.transition()));
+        }
+        return report.toString();
+    }
+
+    void write(Path path) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.writeString(path, render());
+    }
+
+    private static String percentiles(Histogram latency) {
+        StringBuilder cells = new StringBuilder();
+        for (double percentile : PERCENTILES) {
+            cells.append(' ').append(millis(latency.getValueAtPercentile(percentile))).append(" |");
+        }
+        return cells.append(' ').append(millis(latency.getMaxValue())).append(" |").toString();
+    }
+
+    private static String millis(long micros) {
+        return String.format(Locale.ROOT, "%.1f", micros / 1000.0);
+    }
+
+    private static String format(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+
+    record Transition(long atMillis, String phase, CircuitBreaker.StateTransition transition) {
+    }
+}
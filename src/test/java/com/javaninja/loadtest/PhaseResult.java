@@ -0,0 +1,137 @@
+package com.javaninja.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histograms and status counts for one load-test phase, per traffic target.
+ */
+final class PhaseResult {
+
+    // Latencies are recorded in microseconds, up to a minute, to three significant digits.
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final String phase;
+
+    private final String conditions;
+
+    private final int targetRate;
+
+    private final Map<String, Stats> targets = new LinkedHashMap<>();
+
+    private volatile Duration elapsed = Duration.ZERO;
+
+    private volatile long unfinished;
+
+    PhaseResult(String phase, String conditions, int targetRate, List<String> targetNames) {
+        this.phase = phase;
+        this.conditions = conditions;
+        this.targetRate = targetRate;
+        targetNames.forEach(name -> targets.put(name, new Stats()));
+    }
+
+    // Status -1 means the request failed without a response.
+    void record(String target, long latencyNanos, int status) {
+        Stats stats = targets.get(target);
+        stats.latency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(latencyNanos), HIGHEST_TRACKABLE_MICROS));
+        if (status < 0) {
+            stats.failed.increment();
+        } else if (status >= 500) {
+            stats.serverErrors.increment();
+        } else if (status >= 400) {
+            stats.clientErrors.increment();
+        } else {
+            stats.ok.increment();
+        }
+    }
+
+    String getPhase() {
+        return phase;
+    }
+
+    String getConditions() {
+        return conditions;
+    }
+
+    int getTargetRate() {
+        return targetRate;
+    }
+
+    Map<String, Stats> getTargets() {
+        return targets;
+    }
+
+    Duration getElapsed() {
+        return elapsed;
+    }
+
+    void setElapsed(Duration elapsed) {
+        this.elapsed = elapsed;
+    }
+
+    long getUnfinished() {
+        return unfinished;
+    }
+
+    void setUnfinished(long unfinished) {
+        this.unfinished = unfinished;
+    }
+
+    long getCompleted() {
+        return targets.values().stream().mapToLong(Stats::getCompleted).sum();
+    }
+
+    double getThroughput() {
+        return elapsed.isZero() ? 0 : getCompleted() * 1_000_000_000.0 / elapsed.toNanos();
+    }
+
+    Histogram getLatency() {
+        Histogram total = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+        targets.values().forEach(stats -> total.add(stats.latency));
+        return total;
+    }
+
+    static final class Stats {
+
+        private final ConcurrentHistogram latency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+
+        private final LongAdder ok = new LongAdder();
+
+        private final LongAdder clientErrors = new LongAdder();
+
+        private final LongAdder serverErrors = new LongAdder();
+
+        private final LongAdder failed = new LongAdder();
+
+        Histogram getLatency() {
+            return latency;
+        }
+
+        long getOk() {
+            return ok.sum();
+        }
+
+        long getClientErrors() {
+            return clientErrors.sum();
+        }
+
+        long getServerErrors() {
+            return serverErrors.sum();
+        }
+
+        long getFailed() {
+            return failed.sum();
+        }
+
+        long getCompleted() {
+            return latency.getTotalCount();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.javaninja.loadtest;
+
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import com.github.tomakehurst.wiremock.common.FileSource;
+import com.github.tomakehurst.wiremock.extension.Parameters;
+import com.github.tomakehurst.wiremock.extension.ResponseDefinitionTransformer;
+import com.github.tomakehurst.wiremock.http.DelayDistribution;
+import com.github.tomakehurst.wiremock.http.Request;
+import com.github.tomakehurst.wiremock.http.ResponseDefinition;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * WireMock extension that applies the current latency distribution and error rate to every stubbed
+ * response, so a load test can change upstream behaviour between phases without re-stubbing.
+ */
+class UpstreamConditions extends ResponseDefinitionTransformer {
+
+    private static final int ERROR_STATUS = 500;
+
+    private volatile DelayDistribution latency = () -> 0;
+
+    private volatile double errorRate;
+
+    void set(DelayDistribution latency, double errorRate) {
+        this.latency = latency;
+        this.errorRate = errorRate;
+    }
+
+    @Override
+    public ResponseDefinition transform(Request request, ResponseDefinition responseDefinition,
+                                        FileSource files, Parameters parameters) {
+        ResponseDefinitionBuilder response = ResponseDefinitionBuilder.like(responseDefinition)
+                .withRandomDelay(latency);
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            response.withStatus(ERROR_STATUS).withBody("{\"error\":\"injected\"}");
+        }
+        return response.build();
+    }
+
+    @Override
+    public String getName() {
+        return "upstream-conditions";
+    }
+}
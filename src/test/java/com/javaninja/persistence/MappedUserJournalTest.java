@@ -0,0 +1,265 @@
+package com.javaninja.persistence;
+
+import com.javaninja.model.User;
+import com.javaninja.model.UserEvent;
+import com.javaninja.persistence.UserJournalProperties.FsyncPolicy;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedUserJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    @DisplayName("Should replay appended events after reopening")
+    void shouldReplayAppendedEventsAfterReopening() {
+        // Given
+        try (MappedUserJournal journal = open(FsyncPolicy.SYNC, 1000)) {
+            journal.replay(event -> fail("Journal should start empty"));
+            journal.append(UserEvent.created(1, new User(1L, "John Doe", "john.doe@example.com")));
+            journal.append(UserEvent.updated(2, new User(1L, "John Updated", null)));
+            long ticket = journal.append(UserEvent.deleted(3, 1L));
+            journal.awaitDurable(ticket);
+        }
+
+        // When
+        List<UserEvent> events = new ArrayList<>();
+        UserJournal.Replay replay;
+        try (MappedUserJournal journal = open(FsyncPolicy.SYNC, 1000)) {
+            replay = journal.replay(events::add);
+        }
+
+        // Then
+        assertEquals(3, replay.lastSequence());
+        assertEquals(1, replay.lastId());
+        assertEquals(List.of(
+            new UserEvent(1, UserEvent.Type.CREATED, 1L, "John Doe", "john.doe@example.com"),
+            new UserEvent(2, UserEvent.Type.UPDATED, 1L, "John Updated", null),
+            new UserEvent(3, UserEvent.Type.DELETED, 1L, null, null)), events);
+    }
+
+    @Test
+    @DisplayName("Should roll into new segments when a segment fills up")
+    void shouldRollIntoNewSegmentsWhenSegmentFillsUp() throws IOException {
+        // Given
+        try (MappedUserJournal journal = open(FsyncPolicy.ASYNC, 1000, DataSize.ofKilobytes(1))) {
+            journal.replay(event -> { });
+            for (long i = 1; i <= 100; i++) {
+                journal.append(UserEvent.created(i, new User(i, "User " + i, "user" + i + "@example.com")));
+            }
+        }
+
+        // When
+        List<UserEvent> events = new ArrayList<>();
+        try (MappedUserJournal journal = open(FsyncPolicy.ASYNC, 1000, DataSize.ofKilobytes(1))) {
+            journal.replay(events::add);
+        }
+
+        // Then
+        assertTrue(countFiles("segment-") > 1);
+        assertEquals(100, events.size());
+        assertEquals(100, events.get(99).sequence());
+    }
+
+    @Test
+    @DisplayName("Should recover from snapshot plus log tail and drop covered segments")
+    void shouldRecoverFromSnapshotPlusLogTail() throws IOException {
+        // Given
+        try (MappedUserJournal journal = open(FsyncPolicy.SYNC, 2)) {
+            journal.replay(event -> { });
+            journal.append(UserEvent.created(1, new User(1L, "John Doe", "john.doe@example.com")));
+            journal.append(UserEvent.created(2, new User(2L, "Jane Smith", "jane.smith@example.com")));
+            assertTrue(journal.isSnapshotDue());
+            User john = new User(1L, "John Doe", "john.doe@example.com");
+            john.setVersion(1);
+            User jane = new User(2L, "Jane Smith", "jane.smith@example.com");
+            jane.setVersion(2);
+            journal.snapshot(2, 2, List.of(john, jane));
+            assertFalse(journal.isSnapshotDue());
+            journal.append(UserEvent.deleted(3, 2L));
+        }
+
+        // When
+        List<UserEvent> events = new ArrayList<>();
+        UserJournal.Replay replay;
+        try (MappedUserJournal journal = open(FsyncPolicy.SYNC, 2)) {
+            replay = journal.replay(events::add);
+        }
+
+        // Then
+        assertEquals(1, countFiles("snapshot-"));
+        assertEquals(1, countFiles("segment-"));
+        assertEquals(3, replay.lastSequence());
+        assertEquals(2, replay.lastId());
+        assertEquals(3, events.size());
+        assertEquals(UserEvent.Type.CREATED, events.get(0).type());
+        assertEquals(1, events.get(0).sequence());
+        assertEquals(2, events.get(1).sequence());
+        assertEquals(new UserEvent(3, UserEvent.Type.DELETED, 2L, null, null), events.get(2));
+    }
+
+    @Test
+    @DisplayName("Should replay only the installed history after a snapshot install")
+    void shouldReplayOnlyInstalledHistoryAfterSnapshotInstall() throws IOException {
+        // Given: a longer local history with its own snapshot and several segments
+        long installed;
+        try (MappedUserJournal journal = open(FsyncPolicy.SYNC, 1000, DataSize.ofKilobytes(1))) {
+            journal.replay(event -> { });
+            List<User> users = new ArrayList<>();
+            for (long i = 1; i <= 60; i++) {
+                User user = new User(i, "Local " + i, "local" + i + "@example.com");
+                users.add(user);
+                journal.append(UserEvent.created(i, user));
+                if (i == 50) {
+                    journal.snapshot(50, 50, List.copyOf(users));
+                }
+            }
+            // Install just before an existing segment, so the new log starts on a file that is in use.
+            installed = listFiles("segment-").stream()
+                    .mapToLong(path -> Long.parseLong(path.getFileName().toString().substring(8, 28)))
+                    .filter(start -> start > 1)
+                    .min()
+                    .orElseThrow() - 1;
+
+            // When
+            journal.install(installed, 2, List.of(
+                new User(1L, "Leader One", "one@example.com"),
+                new User(2L, "Leader Two", "two@example.com")));
+            journal.append(UserEvent.created(installed + 1, new User(3L, "Leader Three", "three@example.com")));
+        }
+        List<UserEvent> events = new ArrayList<>();
+        UserJournal.Replay replay;
+        try (MappedUserJournal journal = open(FsyncPolicy.SYNC, 1000, DataSize.ofKilobytes(1))) {
+            replay = journal.replay(events::add);
+        }
+
+        // Then
+        assertEquals(installed + 1, replay.lastSequence());
+        assertEquals(3, replay.lastId());
+        assertEquals(List.of("Leader One", "Leader Two", "Leader Three"),
+                events.stream().map(UserEvent::name).toList());
+        assertEquals(1, countFiles("snapshot-"));
+        assertEquals(1, countFiles("segment-"));
+    }
+
+    @Test
+    @DisplayName("Should discard torn record at the tail of the log")
+    void shouldDiscardTornRecordAtTailOfLog() throws IOException {
+        // Given
+        long tornOffset;
+        try (MappedUserJournal journal = open(FsyncPolicy.SYNC, 1000)) {
+            journal.replay(event -> { });
+            tornOffset = journal.append(UserEvent.created(1, new User(1L, "John Doe", "john.doe@example.com")));
+            journal.append(UserEvent.created(2, new User(2L, "Jane Smith", "jane.smith@example.com")));
+        }
+        Path segment = findFile("segment-");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x7f}), tornOffset + 12);
+        }
+
+        // When
+        List<UserEvent> events = new ArrayList<>();
+        try (MappedUserJournal journal = open(FsyncPolicy.SYNC, 1000)) {
+            journal.replay(events::add);
+            journal.append(UserEvent.created(2, new User(3L, "Bob Johnson", "bob.johnson@example.com")));
+        }
+        List<UserEvent> afterRepair = new ArrayList<>();
+        try (MappedUserJournal journal = open(FsyncPolicy.SYNC, 1000)) {
+            journal.replay(afterRepair::add);
+        }
+
+        // Then
+        assertEquals(1, events.size());
+        assertEquals(2, afterRepair.size());
+        assertEquals(3L, afterRepair.get(1).id());
+    }
+
+    @Test
+    @DisplayName("Should stop replay at a tail record whose length points past the segment")
+    void shouldStopReplayAtTailRecordWithCorruptLength() throws IOException {
+        // Given
+        long tornOffset;
+        try (MappedUserJournal journal = open(FsyncPolicy.SYNC, 1000)) {
+            journal.replay(event -> { });
+            tornOffset = journal.append(UserEvent.created(1, new User(1L, "John Doe", "john.doe@example.com")));
+            journal.append(UserEvent.created(2, new User(2L, "Jane Smith", "jane.smith@example.com")));
+        }
+        Path segment = findFile("segment-");
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(Integer.BYTES).putInt(0, Integer.MAX_VALUE - 4), tornOffset);
+        }
+
+        // When
+        List<UserEvent> events = new ArrayList<>();
+        try (MappedUserJournal journal = open(FsyncPolicy.SYNC, 1000)) {
+            journal.replay(events::add);
+            journal.append(UserEvent.created(2, new User(3L, "Bob Johnson", "bob.johnson@example.com")));
+        }
+        List<UserEvent> afterRepair = new ArrayList<>();
+        try (MappedUserJournal journal = open(FsyncPolicy.SYNC, 1000)) {
+            journal.replay(afterRepair::add);
+        }
+
+        // Then
+        assertEquals(1, events.size());
+        assertEquals(2, afterRepair.size());
+        assertEquals(3L, afterRepair.get(1).id());
+    }
+
+    @Test
+    @DisplayName("Should reject appends before replay")
+    void shouldRejectAppendsBeforeReplay() {
+        try (MappedUserJournal journal = open(FsyncPolicy.SYNC, 1000)) {
+            assertThrows(IllegalStateException.class,
+                () -> journal.append(UserEvent.deleted(1, 1L)));
+        }
+    }
+
+    private MappedUserJournal open(FsyncPolicy policy, long snapshotEvery) {
+        return open(policy, snapshotEvery, DataSize.ofKilobytes(64));
+    }
+
+    private MappedUserJournal open(FsyncPolicy policy, long snapshotEvery, DataSize segmentSize) {
+        UserJournalProperties properties = new UserJournalProperties();
+        properties.setDirectory(directory);
+        properties.setFsyncPolicy(policy);
+        properties.setFlushInterval(Duration.ofMillis(1));
+        properties.setSegmentSize(segmentSize);
+        properties.setSnapshotEvery(snapshotEvery);
+        return new MappedUserJournal(properties);
+    }
+
+    private long countFiles(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(prefix)).count();
+        }
+    }
+
+    private List<Path> listFiles(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(prefix)).toList();
+        }
+    }
+
+    private Path findFile(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(prefix)).findFirst().orElseThrow();
+        }
+    }
+}
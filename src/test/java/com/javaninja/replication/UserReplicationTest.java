@@ -0,0 +1,186 @@
+package com.javaninja.replication;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.javaninja.SpringCloudApplication;
+import com.javaninja.model.User;
+import com.javaninja.model.UserSnapshot;
+import com.javaninja.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Three replicas in one JVM, registered in the simple discovery client as a stand-in for Eureka.
+// They start one after another, so the first is the oldest and leads.
+class UserReplicationTest {
+
+    private static final int REPLICAS = 3;
+
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final List<ConfigurableApplicationContext> replicas = new ArrayList<>();
+
+    private final int[] ports = new int[REPLICAS];
+
+    @BeforeEach
+    void startReplicas() throws IOException {
+        for (int i = 0; i < REPLICAS; i++) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                ports[i] = socket.getLocalPort();
+            }
+        }
+        for (int i = 0; i < REPLICAS; i++) {
+            replicas.add(start(ports[i]));
+        }
+    }
+
+    @AfterEach
+    void stopReplicas() {
+        replicas.forEach(ConfigurableApplicationContext::close);
+    }
+
+    @Test
+    @DisplayName("Should replicate writes made through any replica to every replica")
+    void shouldReplicateWritesMadeThroughAnyReplicaToEveryReplica() throws Exception {
+        // Given
+        awaitLeader(replicator(0).getNode(), 0, 1, 2);
+
+        // When
+        HttpResponse<String> created = send(2, "POST", "/api/users",
+                "{\"name\":\"Alice Brown\",\"email\":\"alice.brown@example.com\"}");
+        long id = objectMapper.readValue(created.body(), User.class).getId();
+        HttpResponse<String> updated = send(1, "PUT", "/api/users/1",
+                "{\"name\":\"John Updated\",\"email\":\"john.updated@example.com\"}");
+        HttpResponse<String> deleted = send(2, "DELETE", "/api/users/2", null);
+
+        // Then
+        assertEquals(201, created.statusCode());
+        assertEquals(200, updated.statusCode());
+        assertEquals(204, deleted.statusCode());
+        long version = userService(0).getVersion();
+        await(() -> userService(1).getVersion() == version && userService(2).getVersion() == version);
+        for (int replica = 0; replica < REPLICAS; replica++) {
+            HttpResponse<String> alice = send(replica, "GET", "/api/users/" + id, null);
+            assertEquals(200, alice.statusCode());
+            assertEquals(created.headers().firstValue("ETag"), alice.headers().firstValue("ETag"));
+            assertEquals("John Updated", userService(replica).getUserById(1L).orElseThrow().getName());
+            assertFalse(userService(replica).getUserById(2L).isPresent());
+        }
+        UserSnapshot snapshot = snapshot(1);
+        assertEquals(version, snapshot.sequence());
+        assertEquals(3, snapshot.users().size());
+    }
+
+    @Test
+    @DisplayName("Should fail over to the next oldest replica when the leader stops")
+    void shouldFailOverToNextOldestReplicaWhenLeaderStops() throws Exception {
+        // Given
+        awaitLeader(replicator(0).getNode(), 0, 1, 2);
+        send(1, "POST", "/api/users", "{\"name\":\"Alice Brown\",\"email\":\"alice.brown@example.com\"}");
+        long version = userService(0).getVersion();
+        await(() -> userService(1).getVersion() == version && userService(2).getVersion() == version);
+
+        // When
+        replicas.get(0).close();
+        awaitLeader(replicator(1).getNode(), 1, 2);
+        HttpResponse<String> created = send(2, "POST", "/api/users",
+                "{\"name\":\"Carol White\",\"email\":\"carol.white@example.com\"}");
+
+        // Then
+        assertEquals(201, created.statusCode());
+        await(() -> userService(2).getVersion() == userService(1).getVersion());
+        assertTrue(userService(2).getUserByEmail("carol.white@example.com").isPresent());
+        assertTrue(userService(2).getUserByEmail("alice.brown@example.com").isPresent());
+    }
+
+    private ConfigurableApplicationContext start(int port) {
+        List<String> args = new ArrayList<>(List.of(
+                "--server.port=" + port,
+                "--users.replication.enabled=true",
+                "--users.replication.election-interval=300ms",
+                "--users.replication.poll-timeout=200ms",
+                "--users.replication.request-timeout=500ms",
+                "--users.replication.retry-delay=100ms"));
+        for (int i = 0; i < REPLICAS; i++) {
+            args.add("--spring.cloud.discovery.client.simple.instances.spring-cloud-project-test[" + i + "].uri="
+                    + "http://localhost:" + ports[i]);
+        }
+        return new SpringApplicationBuilder(SpringCloudApplication.class)
+                .profiles("test")
+                .run(args.toArray(String[]::new));
+    }
+
+    private void awaitLeader(String node, int... replicaIndexes) throws InterruptedException {
+        await(() -> {
+            for (int replica : replicaIndexes) {
+                if (!replicator(replica).getLeader().map(leader -> leader.node().equals(node)).orElse(false)) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        for (int i = 0; i < 200 && !condition.getAsBoolean(); i++) {
+            Thread.sleep(50);
+        }
+        assertTrue(condition.getAsBoolean(), "Replicas did not converge");
+    }
+
+    private HttpResponse<String> send(int replica, String method, String path, String json) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri(replica, path));
+        if (json == null) {
+            request.method(method, HttpRequest.BodyPublishers.noBody());
+        } else {
+            request.header("Content-Type", "application/json").method(method, HttpRequest.BodyPublishers.ofString(json));
+        }
+        return httpClient.send(request.build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    // Replicas exchange Smile, gzipped when the caller accepts it.
+    private UserSnapshot snapshot(int replica) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri(replica, "/internal/replication/snapshot"))
+                .header("Accept-Encoding", "gzip")
+                .build();
+        HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        assertEquals(200, response.statusCode());
+        assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElse(null));
+        assertEquals(replicator(replica).getNode(),
+                response.headers().firstValue(UserReplicator.NODE_HEADER).orElse(null));
+        try (GZIPInputStream body = new GZIPInputStream(new ByteArrayInputStream(response.body()))) {
+            return new SmileMapper().readValue(body, UserSnapshot.class);
+        }
+    }
+
+    private URI uri(int replica, String path) {
+        return URI.create("http://localhost:" + ports[replica] + path);
+    }
+
+    private UserReplicator replicator(int replica) {
+        return replicas.get(replica).getBean(UserReplicator.class);
+    }
+
+    private UserService userService(int replica) {
+        return replicas.get(replica).getBean(UserService.class);
+    }
+}
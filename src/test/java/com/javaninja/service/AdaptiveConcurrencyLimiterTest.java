@@ -0,0 +1,185 @@
+package com.javaninja.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private Counter rejected;
+
+    @BeforeEach
+    void setUp() {
+        rejected = new SimpleMeterRegistry().counter("rejected");
+    }
+
+    @Test
+    @DisplayName("Should reject calls beyond the current limit without running them")
+    void shouldRejectCallsBeyondCurrentLimit() throws Exception {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = limiter(1, 1, 10, Duration.ofSeconds(5));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> first = executor.submit(() -> limiter.execute(() -> {
+                started.countDown();
+                await(release);
+                return "first";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            // When / Then
+            assertThrows(ConcurrencyLimitExceededException.class, () -> limiter.execute(() -> "second"));
+            release.countDown();
+            assertEquals("first", first.get(5, TimeUnit.SECONDS));
+            assertEquals(1.0, rejected.count());
+            assertEquals(0, limiter.getInFlight());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should raise the limit only while fast calls keep it at least half used")
+    void shouldRaiseLimitOnlyWhileFastCallsKeepItHalfUsed() {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = limiter(2, 1, 10, Duration.ofSeconds(5));
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            limiter.execute(() -> "ok");
+        }
+
+        // Then: one call at a time keeps a limit of 2 busy, but not a limit of 3
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    @DisplayName("Should back off multiplicatively on slow calls")
+    void shouldBackOffMultiplicativelyOnSlowCalls() {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = limiter(20, 2, 100, Duration.ofMillis(1));
+
+        // When
+        limiter.execute(() -> {
+            sleep(20);
+            return "slow";
+        });
+
+        // Then
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    @DisplayName("Should back off once for a burst of concurrent slow calls")
+    void shouldBackOffOnceForBurstOfConcurrentSlowCalls() throws Exception {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = limiter(20, 2, 100, Duration.ofMillis(1));
+        int calls = 8;
+        CountDownLatch started = new CountDownLatch(calls);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(calls);
+        try {
+            List<Future<String>> burst = new ArrayList<>();
+            for (int i = 0; i < calls; i++) {
+                burst.add(executor.submit(() -> limiter.execute(() -> {
+                    started.countDown();
+                    await(release);
+                    sleep(5);
+                    return "slow";
+                })));
+            }
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            // When
+            release.countDown();
+            for (Future<String> call : burst) {
+                call.get(5, TimeUnit.SECONDS);
+            }
+            int afterBurst = limiter.getLimit();
+            limiter.execute(() -> {
+                sleep(5);
+                return "slow";
+            });
+
+            // Then: the burst ran under the old limit and cuts it once; a later slow call cuts it again
+            assertEquals(10, afterBurst);
+            assertEquals(5, limiter.getLimit());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    @DisplayName("Should back off on overload failures but not on other failures")
+    void shouldBackOffOnOverloadFailuresOnly() {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = limiter(20, 2, 100, Duration.ofSeconds(5));
+
+        // When
+        assertThrows(UpstreamNotFoundException.class, () -> limiter.execute(() -> {
+            throw new UpstreamNotFoundException("posts", 1);
+        }));
+        int afterNotFound = limiter.getLimit();
+        assertThrows(IllegalStateException.class, () -> limiter.execute(() -> {
+            throw new IllegalStateException("upstream timeout");
+        }));
+
+        // Then
+        assertEquals(20, afterNotFound);
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    @DisplayName("Should never drop below the minimum limit")
+    void shouldNeverDropBelowMinimumLimit() {
+        // Given
+        AdaptiveConcurrencyLimiter limiter = limiter(4, 3, 100, Duration.ZERO);
+
+        // When
+        for (int i = 0; i < 5; i++) {
+            limiter.execute(() -> {
+                sleep(1);
+                return "slow";
+            });
+        }
+
+        // Then
+        assertEquals(3, limiter.getLimit());
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(int initial, int min, int max, Duration latencyThreshold) {
+        return new AdaptiveConcurrencyLimiter(initial, min, max, 0.5, latencyThreshold,
+                ex -> !(ex instanceof UpstreamNotFoundException), rejected);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
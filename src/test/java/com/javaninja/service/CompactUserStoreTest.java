@@ -0,0 +1,226 @@
+package com.javaninja.service;
+
+import com.javaninja.model.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactUserStoreTest {
+
+    private CompactUserStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new CompactUserStore();
+    }
+
+    @Test
+    @DisplayName("Should materialize stored users with their version")
+    void shouldMaterializeStoredUsersWithTheirVersion() {
+        // Given
+        store.put(user(1, "John Doe", "john.doe@example.com", 7));
+        store.put(user(2, null, null, 8));
+        store.put(user(3, "No Domain", "localonly", 9));
+
+        // When
+        User john = store.get(1);
+        User empty = store.get(2);
+        User local = store.get(3);
+
+        // Then
+        assertEquals(1L, john.getId());
+        assertEquals("John Doe", john.getName());
+        assertEquals("john.doe@example.com", john.getEmail());
+        assertEquals(7, john.getVersion());
+        assertNull(empty.getName());
+        assertNull(empty.getEmail());
+        assertEquals("localonly", local.getEmail());
+        assertNull(store.get(4));
+        assertEquals(3, store.size());
+    }
+
+    @Test
+    @DisplayName("Should find users by normalized email and follow email changes")
+    void shouldFindUsersByNormalizedEmailAndFollowEmailChanges() {
+        // Given
+        store.put(user(1, "John Doe", "John.Doe@Example.com", 1));
+        store.put(user(2, "Jane Smith", "jane.smith@example.com", 2));
+
+        // When
+        store.put(user(1, "John Doe", "john.new@example.org", 3));
+
+        // Then
+        assertNull(store.getByEmail("john.doe@example.com"));
+        assertEquals(1L, store.getByEmail("john.new@example.org").getId());
+        assertEquals("Jane Smith", store.getByEmail("jane.smith@example.com").getName());
+        assertNull(store.getByEmail("missing@example.com"));
+    }
+
+    @Test
+    @DisplayName("Should page and stream users in id order across stream pages")
+    void shouldPageAndStreamUsersInIdOrderAcrossStreamPages() {
+        // Given
+        for (long id = 1; id <= 2500; id++) {
+            store.put(user(id, "User " + id, "user" + id + "@example.com", id));
+        }
+        store.remove(1000);
+
+        // When
+        List<User> page = store.getAfter(998, 3);
+        List<Long> streamed = store.stream().map(User::getId).toList();
+
+        // Then
+        assertEquals(List.of(999L, 1001L, 1002L), page.stream().map(User::getId).toList());
+        assertEquals(2499, streamed.size());
+        assertEquals(LongStream.rangeClosed(1, 2500).filter(id -> id != 1000).boxed().toList(), streamed);
+        assertTrue(store.getAfter(2500, 10).isEmpty());
+        assertTrue(store.getAfter(0, 0).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should search names by prefix in name order after writes")
+    void shouldSearchNamesByPrefixInNameOrderAfterWrites() {
+        // Given
+        store.put(user(1, "Johnson Bob", "bob@example.com", 1));
+        store.put(user(2, "John Doe", "john@example.com", 2));
+        store.put(user(3, "Jane Smith", "jane@example.com", 3));
+        store.put(user(4, "john doe", "john.lower@example.com", 4));
+        assertEquals(List.of(2L, 4L, 1L), ids(store.getByNamePrefix("john", 10)));
+
+        // When
+        store.put(user(3, "Johanna Smith", "jane@example.com", 5));
+        store.remove(2);
+
+        // Then
+        assertEquals(List.of(3L, 4L), ids(store.getByNamePrefix("joh", 2)));
+        assertEquals(List.of(3L, 4L, 1L), ids(store.getByNamePrefix("j", 10)));
+        assertTrue(store.getByNamePrefix("x", 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should accept ids out of order")
+    void shouldAcceptIdsOutOfOrder() {
+        // Given
+        store.put(user(5, "Five", "five@example.com", 5));
+        store.put(user(2, "Two", "two@example.com", 2));
+        store.put(user(9, "Nine", "nine@example.com", 9));
+
+        // When
+        store.put(user(1, "One", "one@example.com", 1));
+
+        // Then
+        assertEquals(List.of(1L, 2L, 5L, 9L), ids(store.getAll()));
+        assertEquals(5L, store.getByEmail("five@example.com").getId());
+        assertEquals(1L, store.getByEmail("one@example.com").getId());
+    }
+
+    @Test
+    @DisplayName("Should keep contents after compacting deleted and replaced users")
+    void shouldKeepContentsAfterCompactingDeletedAndReplacedUsers() {
+        // Given
+        for (long id = 1; id <= 5000; id++) {
+            store.put(user(id, "User " + id, "user" + id + "@example.com", id));
+        }
+
+        // When
+        for (long id = 1; id <= 5000; id++) {
+            if (id % 5 != 0) {
+                store.remove(id);
+            }
+        }
+        for (int round = 0; round < 20; round++) {
+            store.put(user(5, "Renamed " + round, "renamed" + round + "@example.net", 6000 + round));
+        }
+
+        // Then
+        assertEquals(1000, store.size());
+        assertEquals(1000, store.getAll().size());
+        assertEquals("Renamed 19", store.get(5).getName());
+        assertEquals(5L, store.getByEmail("renamed19@example.net").getId());
+        assertNull(store.getByEmail("renamed18@example.net"));
+        assertEquals("user4995@example.com", store.get(4995).getEmail());
+        assertNull(store.get(4994));
+        assertEquals(List.of(4995L), ids(store.getByNamePrefix("user 4995", 10)));
+    }
+
+    @Test
+    @DisplayName("Should keep a snapshot unchanged by later writes and compaction")
+    void shouldKeepSnapshotUnchangedByLaterWritesAndCompaction() {
+        // Given
+        for (long id = 1; id <= 3000; id++) {
+            store.put(user(id, "User " + id, "user" + id + "@example.com", id));
+        }
+        store.remove(2);
+
+        // When
+        List<User> snapshot = store.snapshot();
+        store.put(user(1, "Renamed", "renamed@example.org", 4000));
+        for (long id = 3; id <= 3000; id++) {
+            store.remove(id);
+        }
+        store.put(user(3001, "Late", "late@example.com", 4001));
+
+        // Then
+        assertEquals(2999, snapshot.size());
+        assertEquals("User 1", snapshot.get(0).getName());
+        assertEquals("user1@example.com", snapshot.get(0).getEmail());
+        assertEquals(1L, snapshot.get(0).getVersion());
+        assertEquals("user3000@example.com", snapshot.get(2998).getEmail());
+        assertEquals(List.of(1L, 3001L), ids(store.getAll()));
+        assertEquals(List.of(1L), ids(store.getByNamePrefix("renamed", 10)));
+    }
+
+    @Test
+    @DisplayName("Should answer like the heap store for a random workload")
+    void shouldAnswerLikeTheHeapStoreForARandomWorkload() {
+        // Given
+        HeapUserStore heap = new HeapUserStore();
+        Random random = new Random(42);
+
+        // When
+        for (int i = 0; i < 20_000; i++) {
+            long id = 1 + random.nextInt(3000);
+            if (random.nextInt(4) == 0) {
+                heap.remove(id);
+                store.remove(id);
+            } else {
+                String name = "Name " + random.nextInt(500);
+                String email = "user" + id + "@domain" + random.nextInt(5) + ".com";
+                heap.put(user(id, name, email, i));
+                store.put(user(id, name, email, i));
+            }
+        }
+
+        // Then
+        assertEquals(heap.size(), store.size());
+        assertEquals(heap.stream().map(User::toString).toList(), store.stream().map(User::toString).toList());
+        for (long id = 1; id <= 3000; id++) {
+            User expected = heap.get(id);
+            User actual = store.get(id);
+            assertEquals(String.valueOf(expected), String.valueOf(actual));
+            if (expected != null) {
+                assertEquals(expected.getVersion(), actual.getVersion());
+                assertEquals(id, store.getByEmail(UserStore.normalize(expected.getEmail())).getId());
+            }
+        }
+        for (String prefix : List.of("name 1", "name 25", "name 499", "n")) {
+            assertEquals(ids(heap.getByNamePrefix(prefix, 50)), ids(store.getByNamePrefix(prefix, 50)));
+        }
+    }
+
+    private static User user(long id, String name, String email, long version) {
+        User user = new User(id, name, email);
+        user.setVersion(version);
+        return user;
+    }
+
+    private static List<Long> ids(List<User> users) {
+        return users.stream().map(User::getId).toList();
+    }
+}
@@ -1,6 +1,20 @@
 package com.javaninja.service;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.javaninja.client.ExternalApiClient;
+import com.javaninja.model.ExternalUser;
+import com.javaninja.model.Post;
+import feign.FeignException;
+import feign.Request;
+import feign.Response;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkheadConfig;
+import io.github.resilience4j.bulkhead.ThreadPoolBulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.timelimiter.TimeLimiterConfig;
+import io.github.resilience4j.timelimiter.TimeLimiterRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
@@ -8,10 +22,23 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -24,7 +51,7 @@ class ExternalServiceTest {
 
     @BeforeEach
     void setUp() {
-        externalService = new ExternalService(externalApiClient);
+        externalService = newService(new ExternalApiProperties(), new SimpleMeterRegistry());
     }
 
     @Test
@@ -32,22 +59,18 @@ class ExternalServiceTest {
     void shouldReturnPostFromExternalApi() {
         // Given
         Long postId = 1L;
-        Map<String, Object> expectedPost = new HashMap<>();
-        expectedPost.put("id", postId);
-        expectedPost.put("title", "Test Post");
-        expectedPost.put("body", "Test Body");
-        expectedPost.put("userId", 1);
+        Post expectedPost = new Post(postId, 1L, "Test Post", "Test Body");
 
         when(externalApiClient.getPost(postId)).thenReturn(expectedPost);
 
         // When
-        Map<String, Object> result = externalService.getPost(postId);
+        Post result = externalService.getPost(postId);
 
         // Then
         assertNotNull(result);
-        assertEquals(postId, result.get("id"));
-        assertEquals("Test Post", result.get("title"));
-        assertEquals("Test Body", result.get("body"));
+        assertEquals(postId, result.id());
+        assertEquals("Test Post", result.title());
+        assertEquals("Test Body", result.body());
         verify(externalApiClient, times(1)).getPost(postId);
     }
 
@@ -56,21 +79,18 @@ class ExternalServiceTest {
     void shouldReturnExternalUserFromApi() {
         // Given
         Long userId = 1L;
-        Map<String, Object> expectedUser = new HashMap<>();
-        expectedUser.put("id", userId);
-        expectedUser.put("name", "External User");
-        expectedUser.put("email", "external.user@example.com");
+        ExternalUser expectedUser = new ExternalUser(userId, "External User", "external.user@example.com");
 
         when(externalApiClient.getExternalUser(userId)).thenReturn(expectedUser);
 
         // When
-        Map<String, Object> result = externalService.getExternalUser(userId);
+        ExternalUser result = externalService.getExternalUser(userId);
 
         // Then
         assertNotNull(result);
-        assertEquals(userId, result.get("id"));
-        assertEquals("External User", result.get("name"));
-        assertEquals("external.user@example.com", result.get("email"));
+        assertEquals(userId, result.id());
+        assertEquals("External User", result.name());
+        assertEquals("external.user@example.com", result.email());
         verify(externalApiClient, times(1)).getExternalUser(userId);
     }
 
@@ -82,15 +102,15 @@ class ExternalServiceTest {
         RuntimeException exception = new RuntimeException("Service unavailable");
 
         // When
-        Map<String, Object> result = externalService.fallbackGetPost(postId, exception);
+        Post result = externalService.fallbackGetPost(postId, exception);
 
         // Then
         assertNotNull(result);
-        assertEquals(postId, result.get("id"));
-        assertEquals("Fallback Post", result.get("title"));
-        assertEquals("This is a fallback response due to service unavailability", result.get("body"));
-        assertEquals(1, result.get("userId"));
-        assertEquals("External service is currently unavailable", result.get("error"));
+        assertEquals(postId, result.id());
+        assertEquals("Fallback Post", result.title());
+        assertEquals("This is a fallback response due to service unavailability", result.body());
+        assertEquals(1L, result.userId());
+        assertEquals("External service is currently unavailable", result.error());
     }
 
     @Test
@@ -101,14 +121,576 @@ class ExternalServiceTest {
         RuntimeException exception = new RuntimeException("Service unavailable");
 
         // When
-        Map<String, Object> result = externalService.fallbackGetExternalUser(userId, exception);
+        ExternalUser result = externalService.fallbackGetExternalUser(userId, exception);
 
         // Then
         assertNotNull(result);
-        assertEquals(userId, result.get("id"));
-        assertEquals("Fallback User", result.get("name"));
-        assertEquals("fallback@example.com", result.get("email"));
-        assertEquals("External service is currently unavailable", result.get("error"));
+        assertEquals(userId, result.id());
+        assertEquals("Fallback User", result.name());
+        assertEquals("fallback@example.com", result.email());
+        assertEquals("External service is currently unavailable", result.error());
+    }
+
+    @Test
+    @DisplayName("Should serve repeated lookups from cache")
+    void shouldServeRepeatedLookupsFromCache() {
+        // Given
+        Post post = new Post(1L, 1L, "Test Post", "Test Body");
+        when(externalApiClient.getPost(1L)).thenReturn(post);
+
+        // When
+        externalService.getPost(1L);
+        Post result = externalService.getPost(1L);
+
+        // Then
+        assertEquals(post, result);
+        verify(externalApiClient, times(1)).getPost(1L);
+    }
+
+    @Test
+    @DisplayName("Should cache posts and users under separate keys")
+    void shouldCachePostsAndUsersUnderSeparateKeys() {
+        // Given
+        when(externalApiClient.getPost(1L)).thenReturn(new Post(1L, 1L, "Test Post", "Test Body"));
+        when(externalApiClient.getExternalUser(1L)).thenReturn(new ExternalUser(1L, "External User", "external.user@example.com"));
+
+        // When
+        Post post = externalService.getPost(1L);
+        ExternalUser user = externalService.getExternalUser(1L);
+
+        // Then
+        assertEquals("Test Post", post.title());
+        assertEquals("External User", user.name());
+    }
+
+    @Test
+    @DisplayName("Should return fallback and not cache it when upstream fails")
+    void shouldReturnFallbackAndNotCacheItWhenUpstreamFails() {
+        // Given
+        Post post = new Post(1L, 1L, "Test Post", "Test Body");
+        when(externalApiClient.getPost(1L))
+                .thenThrow(new RuntimeException("Service unavailable"))
+                .thenReturn(post);
+
+        // When
+        Post first = externalService.getPost(1L);
+        Post second = externalService.getPost(1L);
+
+        // Then
+        assertEquals("Fallback Post", first.title());
+        assertEquals(post, second);
+        verify(externalApiClient, times(2)).getPost(1L);
+    }
+
+    @Test
+    @DisplayName("Should call upstream every time when cache is disabled")
+    void shouldCallUpstreamEveryTimeWhenCacheIsDisabled() {
+        // Given
+        ExternalApiProperties properties = new ExternalApiProperties();
+        properties.getCache().setEnabled(false);
+        ExternalService uncached = newService(properties, new SimpleMeterRegistry());
+        when(externalApiClient.getExternalUser(1L)).thenReturn(new ExternalUser(1L, "External User", "external.user@example.com"));
+
+        // When
+        uncached.getExternalUser(1L);
+        uncached.getExternalUser(1L);
+
+        // Then
+        verify(externalApiClient, times(2)).getExternalUser(1L);
+    }
+
+    @Test
+    @DisplayName("Should record cache metrics")
+    void shouldRecordCacheMetrics() {
+        // Given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ExternalService metered = newService(new ExternalApiProperties(), meterRegistry);
+        when(externalApiClient.getPost(1L)).thenReturn(new Post(1L, 1L, "Test Post", "Test Body"));
+
+        // When
+        metered.getPost(1L);
+        metered.getPost(1L);
+
+        // Then
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", ExternalService.CACHE_NAME)
+                .tag("result", "hit").functionCounter().count());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", ExternalService.CACHE_NAME)
+                .tag("result", "miss").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("Should time lookups by outcome")
+    void shouldTimeLookupsByOutcome() {
+        // Given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+        ExternalService metered = new ExternalService(externalApiClient, circuitBreakerRegistry,
+                TimeLimiterRegistry.ofDefaults(), bulkheads(), BulkheadRegistry.ofDefaults(),
+                new ExternalApiProperties(), meterRegistry);
+        when(externalApiClient.getPost(1L)).thenReturn(new Post(1L, 1L, "Test Post", "Test Body"));
+        when(externalApiClient.getPost(2L)).thenThrow(new RuntimeException("Service unavailable"));
+
+        // When
+        metered.getPost(1L);
+        metered.getPost(1L);
+        metered.getPost(2L);
+        circuitBreakerRegistry.circuitBreaker(ExternalService.CIRCUIT_BREAKER_NAME).transitionToOpenState();
+        metered.getPost(3L);
+
+        // Then
+        assertEquals(1, lookups(meterRegistry, "posts", "success"));
+        assertEquals(1, lookups(meterRegistry, "posts", "cache_hit"));
+        assertEquals(1, lookups(meterRegistry, "posts", "fallback"));
+        assertEquals(1, lookups(meterRegistry, "posts", "breaker_open"));
+        assertEquals(0, lookups(meterRegistry, "users", "success"));
+    }
+
+    @Test
+    @DisplayName("Should fetch uncached posts in one multi-id request")
+    void shouldFetchUncachedPostsInOneMultiIdRequest() {
+        // Given
+        when(externalApiClient.getPost(1L)).thenReturn(new Post(1L, 1L, "Cached", "Body"));
+        externalService.getPost(1L);
+        when(externalApiClient.getPosts(List.of(3L, 2L, 4L))).thenReturn(List.of(
+            new Post(2L, 1L, "Second", "Body"),
+            new Post(3L, 1L, "Third", "Body")));
+
+        // When
+        List<Post> posts = externalService.getPosts(List.of(3L, 1L, 2L, 4L));
+
+        // Then
+        assertEquals(List.of("Third", "Cached", "Second"), posts.stream().map(Post::title).toList());
+        verify(externalApiClient, times(1)).getPosts(anyList());
+    }
+
+    @Test
+    @DisplayName("Should return fallbacks when multi-id request fails")
+    void shouldReturnFallbacksWhenMultiIdRequestFails() {
+        // Given
+        when(externalApiClient.getExternalUsers(List.of(1L, 2L))).thenThrow(new RuntimeException("Service unavailable"));
+
+        // When
+        List<ExternalUser> users = externalService.getExternalUsers(List.of(1L, 2L));
+
+        // Then
+        assertEquals(2, users.size());
+        assertEquals("Fallback User", users.get(1).name());
+        assertEquals(2L, users.get(1).id());
+    }
+
+    @Test
+    @DisplayName("Should batch concurrent single lookups when batching is enabled")
+    void shouldBatchConcurrentSingleLookupsWhenBatchingIsEnabled() throws Exception {
+        // Given
+        ExternalApiProperties properties = new ExternalApiProperties();
+        properties.getBatching().setEnabled(true);
+        properties.getBatching().setWindow(Duration.ofMillis(200));
+        ExternalService batching = newService(properties, new SimpleMeterRegistry());
+        when(externalApiClient.getPosts(anyList())).thenAnswer(invocation -> {
+            List<Long> ids = invocation.getArgument(0);
+            return ids.stream().map(id -> new Post(id, 1L, "Post " + id, "Body")).toList();
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        // When
+        List<Future<Post>> results;
+        try {
+            results = List.of(
+                executor.submit(() -> batching.getPost(1L)),
+                executor.submit(() -> batching.getPost(2L)),
+                executor.submit(() -> batching.getPost(3L)));
+            for (int i = 0; i < results.size(); i++) {
+                assertEquals("Post " + (i + 1), results.get(i).get(5, TimeUnit.SECONDS).title());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Then
+        verify(externalApiClient, times(1)).getPosts(anyList());
+        verify(externalApiClient, never()).getPost(anyLong());
+    }
+
+    @Test
+    @DisplayName("Should answer cached post asynchronously without offloading")
+    void shouldAnswerCachedPostAsynchronouslyWithoutOffloading() {
+        // Given
+        when(externalApiClient.getPost(1L)).thenReturn(new Post(1L, 1L, "Test Post", "Test Body"));
+        externalService.getPost(1L);
+
+        // When
+        CompletableFuture<Post> result = externalService.getPostAsync(1L);
+
+        // Then
+        assertTrue(result.isDone());
+        assertEquals("Test Post", result.join().title());
+        verify(externalApiClient, times(1)).getPost(1L);
+    }
+
+    @Test
+    @DisplayName("Should load uncached external user asynchronously")
+    void shouldLoadUncachedExternalUserAsynchronously() throws Exception {
+        // Given
+        when(externalApiClient.getExternalUser(1L)).thenReturn(new ExternalUser(1L, "External User", "external.user@example.com"));
+
+        // When
+        ExternalUser result = externalService.getExternalUserAsync(1L).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals("External User", result.name());
+    }
+
+    @Test
+    @DisplayName("Should fall back when async call exceeds the time limit")
+    void shouldFallBackWhenAsyncCallExceedsTimeLimit() throws Exception {
+        // Given
+        TimeLimiterRegistry timeLimiters = TimeLimiterRegistry.of(TimeLimiterConfig.custom()
+                .timeoutDuration(Duration.ofMillis(50))
+                .build());
+        ExternalService limited = new ExternalService(externalApiClient, CircuitBreakerRegistry.ofDefaults(),
+                timeLimiters, bulkheads(), BulkheadRegistry.ofDefaults(),
+                new ExternalApiProperties(), new SimpleMeterRegistry());
+        when(externalApiClient.getPost(1L)).thenAnswer(invocation -> {
+            Thread.sleep(2_000);
+            return new Post(1L, 1L, "Too Late", "Body");
+        });
+
+        // When
+        Post result = limited.getPostAsync(1L).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals("Fallback Post", result.title());
+        limited.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should return fallbacks when async multi-id call fails")
+    void shouldReturnFallbacksWhenAsyncMultiIdCallFails() throws Exception {
+        // Given
+        ExternalApiProperties properties = new ExternalApiProperties();
+        properties.getCache().setEnabled(false);
+        ExternalService uncached = newService(properties, new SimpleMeterRegistry());
+        when(externalApiClient.getPosts(List.of(1L, 2L))).thenThrow(new RuntimeException("Service unavailable"));
+
+        // When
+        List<Post> result = uncached.getPostsAsync(List.of(1L, 2L)).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(2, result.size());
+        assertEquals("Fallback Post", result.get(0).title());
     }
-}
 
+    @Test
+    @DisplayName("Should run uncached async lookups on virtual threads when enabled")
+    void shouldRunUncachedAsyncLookupsOnVirtualThreadsWhenEnabled() throws Exception {
+        assumeTrue(Runtime.version().feature() >= 21, "virtual threads require Java 21");
+        // Given
+        ExternalApiProperties properties = new ExternalApiProperties();
+        properties.setVirtualThreads(true);
+        ExternalService virtual = newService(properties, new SimpleMeterRegistry());
+        List<String> threadNames = new CopyOnWriteArrayList<>();
+        when(externalApiClient.getPost(1L)).thenAnswer(invocation -> {
+            threadNames.add(Thread.currentThread().getName());
+            return new Post(1L, 1L, "Test Post", "Test Body");
+        });
+
+        // When
+        Post first = virtual.getPostAsync(1L).get(5, TimeUnit.SECONDS);
+        Post second = virtual.getPostAsync(1L).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals("Test Post", first.title());
+        assertSame(first, second);
+        assertEquals(1, threadNames.size());
+        assertTrue(threadNames.get(0).startsWith("external-api-"));
+        virtual.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should refuse virtual-thread mode before Java 21")
+    void shouldRefuseVirtualThreadModeBeforeJava21() {
+        assumeTrue(Runtime.version().feature() < 21, "only relevant before Java 21");
+        // Given
+        ExternalApiProperties properties = new ExternalApiProperties();
+        properties.setVirtualThreads(true);
+
+        // When / Then
+        assertThrows(UnsupportedOperationException.class, () -> newService(properties, new SimpleMeterRegistry()));
+    }
+
+    @Test
+    @DisplayName("Should shed to fallback once the concurrency limit is reached")
+    void shouldShedToFallbackOnceConcurrencyLimitIsReached() throws Exception {
+        // Given
+        ExternalApiProperties properties = new ExternalApiProperties();
+        properties.getLimiter().setInitialLimit(1);
+        properties.getLimiter().setMaxLimit(1);
+        properties.getLimiter().setMinLimit(1);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ExternalService limited = newService(properties, meterRegistry);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(externalApiClient.getPost(1L)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new Post(1L, 1L, "Slow Post", "Body");
+        });
+        CompletableFuture<Post> slow = limited.getPostAsync(1L);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // When
+        Post shed = limited.getPost(2L);
+        release.countDown();
+
+        // Then
+        assertEquals("Fallback Post", shed.title());
+        assertEquals("Slow Post", slow.get(5, TimeUnit.SECONDS).title());
+        verify(externalApiClient, never()).getPost(2L);
+        assertEquals(1.0, meterRegistry.get("external.api.limiter.rejected").counter().count());
+        assertEquals(1.0, meterRegistry.get("external.api.limiter.limit").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Should retry a failed post lookup when retries are enabled")
+    void shouldRetryFailedPostLookupWhenRetriesAreEnabled() {
+        // Given
+        ExternalApiProperties properties = new ExternalApiProperties();
+        properties.getRetry().setEnabled(true);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ExternalService retrying = newService(properties, meterRegistry);
+        when(externalApiClient.getPost(1L))
+                .thenThrow(new RuntimeException("Connection reset"))
+                .thenReturn(new Post(1L, 1L, "Test Post", "Test Body"));
+
+        // When
+        Post result = retrying.getPost(1L);
+
+        // Then
+        assertEquals("Test Post", result.title());
+        assertEquals(1.0, meterRegistry.get("external.api.retries").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should relay upstream bytes untouched in pass-through mode")
+    void shouldRelayUpstreamBytesUntouchedInPassThroughMode() throws Exception {
+        // Given
+        byte[] upstream = "{\"id\":1,\"title\":\"Raw\",\"extra\":[1,2]}".getBytes(StandardCharsets.UTF_8);
+        when(externalApiClient.getPostResponse(1L)).thenReturn(response(200, upstream));
+
+        // When
+        byte[] result = externalService.relayPostAsync(1L).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertArrayEquals(upstream, result);
+        verify(externalApiClient, never()).getPost(anyLong());
+    }
+
+    @Test
+    @DisplayName("Should relay serialized fallback when upstream returns an error status")
+    void shouldRelaySerializedFallbackWhenUpstreamReturnsErrorStatus() throws Exception {
+        // Given
+        when(externalApiClient.getExternalUserResponse(1L)).thenReturn(response(503, new byte[0]));
+
+        // When
+        byte[] result = externalService.relayExternalUserAsync(1L).get(5, TimeUnit.SECONDS);
+
+        // Then
+        String json = new String(result, StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"name\":\"Fallback User\""));
+        assertFalse(json.contains("username"));
+    }
+
+    @Test
+    @DisplayName("Should answer repeated lookups for a missing post from the negative cache")
+    void shouldAnswerRepeatedLookupsForMissingPostFromNegativeCache() {
+        // Given
+        when(externalApiClient.getPost(404L))
+                .thenThrow(FeignException.errorStatus("ExternalApiClient#getPost", response(404, new byte[0])));
+
+        // When
+        Post first = externalService.getPost(404L);
+        Post second = externalService.getPost(404L);
+
+        // Then
+        assertEquals("Fallback Post", first.title());
+        assertEquals("Fallback Post", second.title());
+        verify(externalApiClient, times(1)).getPost(404L);
+    }
+
+    @Test
+    @DisplayName("Should remember ids missing from a multi-id response")
+    void shouldRememberIdsMissingFromMultiIdResponse() {
+        // Given
+        when(externalApiClient.getPosts(List.of(1L, 2L)))
+                .thenReturn(List.of(new Post(1L, 1L, "Post 1", "Body 1")));
+
+        // When
+        externalService.getPosts(List.of(1L, 2L));
+        Post missing = externalService.getPost(2L);
+
+        // Then
+        assertEquals("Fallback Post", missing.title());
+        verify(externalApiClient, never()).getPost(anyLong());
+    }
+
+    @Test
+    @DisplayName("Should fall back to the last known good post once the cached entry expired")
+    void shouldFallBackToLastKnownGoodPostOnceCachedEntryExpired() throws Exception {
+        // Given
+        ExternalApiProperties properties = new ExternalApiProperties();
+        properties.getCache().setExpireAfterWrite(Duration.ofMillis(50));
+        properties.getCache().setRefreshAfterWrite(Duration.ofMillis(50));
+        ExternalService staleAware = newService(properties, new SimpleMeterRegistry());
+        when(externalApiClient.getPost(1L))
+                .thenReturn(new Post(1L, 1L, "Test Post", "Test Body"))
+                .thenThrow(new RuntimeException("Service unavailable"));
+        staleAware.getPost(1L);
+        Thread.sleep(100);
+
+        // When
+        Post result = staleAware.getPost(1L);
+
+        // Then
+        assertEquals("Test Post", result.title());
+        verify(externalApiClient, times(2)).getPost(1L);
+    }
+
+    @Test
+    @DisplayName("Should build fallbacks from the shared template with the requested id")
+    void shouldBuildFallbacksFromSharedTemplateWithRequestedId() throws Exception {
+        // Given
+        when(externalApiClient.getPostResponse(7L)).thenThrow(new RuntimeException("Service unavailable"));
+
+        // When
+        Post post = externalService.fallbackGetPost(7L, new RuntimeException("Service unavailable"));
+        byte[] relayed = externalService.relayPostAsync(7L).get(5, TimeUnit.SECONDS);
+
+        // Then
+        assertEquals(7L, post.id());
+        assertEquals("Fallback Post", post.title());
+        Post decoded = new ObjectMapper().readValue(relayed, Post.class);
+        assertEquals(post, decoded);
+    }
+
+    @Test
+    @DisplayName("Should revalidate refreshed posts with the upstream ETag and keep them on 304")
+    void shouldRevalidateRefreshedPostsWithUpstreamEtagAndKeepThemOn304() throws Exception {
+        // Given
+        ExternalApiProperties properties = new ExternalApiProperties();
+        properties.getCache().setRefreshAfterWrite(Duration.ofMillis(50));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ExternalService revalidating = newService(properties, meterRegistry);
+        byte[] body = "{\"id\":1,\"userId\":1,\"title\":\"Fresh Post\",\"body\":\"Body\"}"
+                .getBytes(StandardCharsets.UTF_8);
+        when(externalApiClient.getPost(1L)).thenReturn(new Post(1L, 1L, "Test Post", "Test Body"));
+        when(externalApiClient.getPostResponse(1L))
+                .thenReturn(response(200, body, Map.of("ETag", List.of("\"v1\""))));
+        when(externalApiClient.getPostResponse(1L, "\"v1\"")).thenAnswer(invocation -> response(304, null));
+        revalidating.getPost(1L);
+
+        // When
+        awaitRevalidation(revalidating, meterRegistry, "modified");
+        awaitRevalidation(revalidating, meterRegistry, "not_modified");
+
+        // Then
+        assertEquals("Fresh Post", revalidating.getPost(1L).title());
+        verify(externalApiClient, times(1)).getPost(1L);
+        verify(externalApiClient, times(1)).getPostResponse(1L);
+        verify(externalApiClient, atLeastOnce()).getPostResponse(1L, "\"v1\"");
+    }
+
+    @Test
+    @DisplayName("Should shed background refreshes while the bulkhead is full")
+    void shouldShedBackgroundRefreshesWhileBulkheadIsFull() throws Exception {
+        // Given
+        ExternalApiProperties properties = new ExternalApiProperties();
+        properties.getCache().setRefreshAfterWrite(Duration.ofMillis(50));
+        // One worker and no queue, so a single slow call fills the bulkhead.
+        ThreadPoolBulkheadRegistry singleThread = ThreadPoolBulkheadRegistry.of(ThreadPoolBulkheadConfig.custom()
+                .coreThreadPoolSize(1)
+                .maxThreadPoolSize(1)
+                .queueCapacity(0)
+                .build());
+        ExternalService bounded = new ExternalService(externalApiClient, CircuitBreakerRegistry.ofDefaults(),
+                TimeLimiterRegistry.ofDefaults(), singleThread, BulkheadRegistry.ofDefaults(),
+                properties, new SimpleMeterRegistry());
+        when(externalApiClient.getPost(1L)).thenReturn(new Post(1L, 1L, "Test Post", "Test Body"));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(externalApiClient.getPost(2L)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return new Post(2L, 1L, "Slow Post", "Body");
+        });
+        bounded.getPost(1L);
+        // The worker may not be waiting for work again yet, in which case the call is shed; retry it.
+        CompletableFuture<Post> running = bounded.getPostAsync(2L);
+        for (int attempt = 0; attempt < 100 && !started.await(50, TimeUnit.MILLISECONDS); attempt++) {
+            running = bounded.getPostAsync(2L);
+        }
+        assertEquals(0, started.getCount());
+        Thread.sleep(100);
+
+        // When
+        Post stale = bounded.getPost(1L);
+        Thread.sleep(200);
+        release.countDown();
+
+        // Then
+        assertEquals("Test Post", stale.title());
+        assertEquals("Slow Post", running.get(5, TimeUnit.SECONDS).title());
+        verify(externalApiClient, times(1)).getPost(1L);
+        verify(externalApiClient, never()).getPostResponse(1L);
+        bounded.shutdown();
+    }
+
+    // Refreshes run in the background once an entry is older than refresh-after-write, so keep
+    // reading until one with the given outcome has completed. Once it has, stop reading, or the
+    // next read could start another refresh that completes before the assertion.
+    private static void awaitRevalidation(ExternalService service, SimpleMeterRegistry meterRegistry,
+                                          String result) throws InterruptedException {
+        Counter revalidations = meterRegistry.get("external.api.revalidations").tag("result", result).counter();
+        for (int i = 0; i < 50 && revalidations.count() == 0; i++) {
+            Thread.sleep(100);
+            if (revalidations.count() == 0) {
+                service.getPost(1L);
+            }
+        }
+        assertEquals(1.0, revalidations.count());
+    }
+
+    private static long lookups(SimpleMeterRegistry meterRegistry, String endpoint, String outcome) {
+        return meterRegistry.get("external.api.requests")
+                .tag("endpoint", endpoint)
+                .tag("outcome", outcome)
+                .timer()
+                .count();
+    }
+
+    private ExternalService newService(ExternalApiProperties properties, SimpleMeterRegistry meterRegistry) {
+        return new ExternalService(externalApiClient, CircuitBreakerRegistry.ofDefaults(), TimeLimiterRegistry.ofDefaults(),
+                bulkheads(), BulkheadRegistry.ofDefaults(), properties, meterRegistry);
+    }
+
+    // The default pool is sized from the CPU count; keep enough threads for the concurrency tests.
+    private static ThreadPoolBulkheadRegistry bulkheads() {
+        return ThreadPoolBulkheadRegistry.of(ThreadPoolBulkheadConfig.custom()
+                .coreThreadPoolSize(8)
+                .maxThreadPoolSize(8)
+                .build());
+    }
+
+    private static Response response(int status, byte[] body) {
+        return response(status, body, Map.of());
+    }
+
+    private static Response response(int status, byte[] body, Map<String, Collection<String>> headers) {
+        Request request = Request.create(Request.HttpMethod.GET, "/posts/1", Map.of(), null, StandardCharsets.UTF_8, null);
+        return Response.builder()
+                .status(status)
+                .request(request)
+                .headers(headers)
+                .body(body)
+                .build();
+    }
+}
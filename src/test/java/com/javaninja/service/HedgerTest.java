@@ -0,0 +1,225 @@
+package com.javaninja.service;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgerTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Should not hedge before enough latency samples are collected")
+    void shouldNotHedgeBeforeEnoughLatencySamples() {
+        // Given
+        Hedger hedger = hedger(true, 0, new RetryBudget(0.1, 10));
+
+        // When
+        String result = hedger.execute(() -> "ok");
+
+        // Then
+        assertEquals("ok", result);
+        assertTrue(Double.isNaN(hedger.getHedgeDelayMillis()));
+        assertEquals(0.0, count("hedges"));
+    }
+
+    @Test
+    @DisplayName("Should run on the caller's thread until a hedge delay is known")
+    void shouldRunOnCallersThreadUntilHedgeDelayIsKnown() {
+        // Given
+        Hedger hedger = hedger(true, 0, new RetryBudget(0.1, 10));
+
+        // When
+        Thread thread = hedger.execute(Thread::currentThread);
+
+        // Then
+        assertSame(Thread.currentThread(), thread);
+    }
+
+    @Test
+    @DisplayName("Should hedge a slow call and take the faster answer")
+    void shouldHedgeSlowCallAndTakeFasterAnswer() throws Exception {
+        // Given
+        Hedger hedger = hedger(true, 0, new RetryBudget(0.1, 10));
+        warmUp(hedger);
+        AtomicInteger attempts = new AtomicInteger();
+        CountDownLatch finished = new CountDownLatch(1);
+
+        // When
+        long start = System.nanoTime();
+        String result = hedger.execute(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                try {
+                    Thread.sleep(1_500);
+                    finished.countDown();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return "slow";
+            }
+            return "hedge";
+        });
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Then
+        assertEquals("hedge", result);
+        assertTrue(elapsedMillis < 1_000, "answered in " + elapsedMillis + "ms");
+        assertEquals(1.0, count("hedges"));
+        assertEquals(1.0, count("wins"));
+        assertTrue(finished.await(3, TimeUnit.SECONDS), "slower attempt was interrupted");
+    }
+
+    @Test
+    @DisplayName("Should not count the losing attempt against the breaker or limiter")
+    void shouldNotCountLosingAttemptAgainstBreakerOrLimiter() throws Exception {
+        // Given
+        Hedger hedger = hedger(true, 0, new RetryBudget(0.1, 10));
+        warmUp(hedger);
+        CircuitBreaker breaker = CircuitBreaker.ofDefaults("upstream");
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100, 0.5,
+                Duration.ofSeconds(5), ex -> true, meterRegistry.counter("rejected"));
+        AtomicInteger attempts = new AtomicInteger();
+
+        // When: the slow attempt fails the way an HTTP client does when its thread is interrupted
+        String result = hedger.execute(() -> limiter.execute(() -> breaker.executeSupplier(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException ex) {
+                    throw new IllegalStateException("request interrupted", ex);
+                }
+                return "slow";
+            }
+            return "hedge";
+        })));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(3);
+        while (limiter.getInFlight() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // Then
+        assertEquals("hedge", result);
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, breaker.getMetrics().getNumberOfFailedCalls());
+        assertEquals(2, breaker.getMetrics().getNumberOfSuccessfulCalls());
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    @DisplayName("Should not hedge when the budget is spent")
+    void shouldNotHedgeWhenBudgetIsSpent() {
+        // Given
+        RetryBudget budget = new RetryBudget(0.0, 1);
+        budget.tryWithdraw();
+        Hedger hedger = hedger(true, 0, budget);
+        warmUp(hedger);
+        AtomicInteger attempts = new AtomicInteger();
+
+        // When
+        String result = hedger.execute(() -> {
+            attempts.incrementAndGet();
+            sleep(100);
+            return "primary";
+        });
+
+        // Then
+        assertEquals("primary", result);
+        assertEquals(1, attempts.get());
+        assertEquals(1.0, count("exhausted"));
+    }
+
+    @Test
+    @DisplayName("Should retry a retryable failure within budget")
+    void shouldRetryRetryableFailureWithinBudget() {
+        // Given
+        Hedger hedger = hedger(false, 1, new RetryBudget(0.1, 10));
+        AtomicInteger attempts = new AtomicInteger();
+
+        // When
+        String result = hedger.execute(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("upstream 503");
+            }
+            return "ok";
+        });
+
+        // Then
+        assertEquals("ok", result);
+        assertEquals(1.0, count("retries"));
+    }
+
+    @Test
+    @DisplayName("Should not retry failures that are not retryable")
+    void shouldNotRetryFailuresThatAreNotRetryable() {
+        // Given
+        Hedger hedger = hedger(false, 3, new RetryBudget(0.1, 10));
+        AtomicInteger attempts = new AtomicInteger();
+
+        // When / Then
+        assertThrows(UpstreamNotFoundException.class, () -> hedger.execute(() -> {
+            attempts.incrementAndGet();
+            throw new UpstreamNotFoundException("posts", 1);
+        }));
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    @DisplayName("Should stop retrying once the budget is spent")
+    void shouldStopRetryingOnceBudgetIsSpent() {
+        // Given
+        Hedger hedger = hedger(false, 5, new RetryBudget(0.0, 2));
+        AtomicInteger attempts = new AtomicInteger();
+
+        // When / Then
+        assertThrows(IllegalStateException.class, () -> hedger.execute(() -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("upstream 503");
+        }));
+        assertEquals(3, attempts.get());
+        assertEquals(1.0, count("exhausted"));
+    }
+
+    private Hedger hedger(boolean hedging, int maxRetries, RetryBudget budget) {
+        return new Hedger(executor, hedging, 0.9, Duration.ofMillis(10), 100, maxRetries, budget,
+                ex -> !(ex instanceof UpstreamNotFoundException),
+                meterRegistry.counter("calls"), meterRegistry.counter("hedges"), meterRegistry.counter("wins"),
+                meterRegistry.counter("retries"), meterRegistry.counter("exhausted"));
+    }
+
+    private static void warmUp(Hedger hedger) {
+        for (int i = 0; i < 20; i++) {
+            hedger.execute(() -> "warm");
+        }
+        assertFalse(Double.isNaN(hedger.getHedgeDelayMillis()));
+    }
+
+    private double count(String name) {
+        return meterRegistry.counter(name).count();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
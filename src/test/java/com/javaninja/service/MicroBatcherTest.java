@@ -0,0 +1,124 @@
+package com.javaninja.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MicroBatcherTest {
+
+    private final List<List<Long>> upstreamCalls = new CopyOnWriteArrayList<>();
+
+    private DistributionSummary batchSizes;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        batchSizes = DistributionSummary.builder("batch.size").register(new SimpleMeterRegistry());
+        executor = Executors.newFixedThreadPool(8);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Should merge lookups arriving within the window into one call")
+    void shouldMergeLookupsArrivingWithinWindowIntoOneCall() throws Exception {
+        // Given
+        MicroBatcher<String> batcher = batcher(Duration.ofMillis(200), 100);
+
+        // When
+        List<Future<String>> results = new ArrayList<>();
+        for (long id = 1; id <= 5; id++) {
+            long lookup = id;
+            results.add(executor.submit(() -> batcher.get(lookup)));
+        }
+
+        // Then
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals("post-" + (i + 1), results.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, upstreamCalls.size());
+        assertEquals(5, upstreamCalls.get(0).size());
+        assertEquals(5.0, batchSizes.totalAmount());
+    }
+
+    @Test
+    @DisplayName("Should dispatch as soon as batch is full")
+    void shouldDispatchAsSoonAsBatchIsFull() throws Exception {
+        // Given
+        MicroBatcher<String> batcher = batcher(Duration.ofSeconds(30), 2);
+
+        // When
+        Future<String> first = executor.submit(() -> batcher.get(1));
+        Future<String> second = executor.submit(() -> batcher.get(2));
+
+        // Then
+        assertEquals("post-1", first.get(5, TimeUnit.SECONDS));
+        assertEquals("post-2", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, upstreamCalls.size());
+        assertEquals(Set.of(1L, 2L), Set.copyOf(upstreamCalls.get(0)));
+    }
+
+    @Test
+    @DisplayName("Should fail lookups for ids missing from the response")
+    void shouldFailLookupsForIdsMissingFromResponse() {
+        // Given
+        MicroBatcher<String> batcher = batcher(Duration.ZERO, 10);
+
+        // When & Then
+        assertThrows(UpstreamNotFoundException.class, () -> batcher.get(404));
+    }
+
+    @Test
+    @DisplayName("Should propagate upstream failure to every caller in batch")
+    void shouldPropagateUpstreamFailureToEveryCallerInBatch() {
+        // Given
+        MicroBatcher<String> batcher = new MicroBatcher<>(Duration.ofMillis(50), 10,
+            ids -> { throw new IllegalStateException("upstream down"); },
+            id -> new UpstreamNotFoundException("post", id), batchSizes);
+
+        // When
+        Future<String> first = executor.submit(() -> batcher.get(1));
+        Future<String> second = executor.submit(() -> batcher.get(2));
+
+        // Then
+        for (Future<String> result : List.of(first, second)) {
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, ex.getCause());
+        }
+    }
+
+    private MicroBatcher<String> batcher(Duration window, int maxBatchSize) {
+        return new MicroBatcher<>(window, maxBatchSize, ids -> {
+            upstreamCalls.add(ids);
+            Map<Long, String> values = new HashMap<>();
+            for (Long id : ids) {
+                if (id != 404) {
+                    values.put(id, "post-" + id);
+                }
+            }
+            return values;
+        }, id -> new UpstreamNotFoundException("post", id), batchSizes);
+    }
+}
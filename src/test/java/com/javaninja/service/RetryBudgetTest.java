@@ -0,0 +1,56 @@
+package com.javaninja.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryBudgetTest {
+
+    @Test
+    @DisplayName("Should start full and allow at most the maximum balance of withdrawals")
+    void shouldStartFullAndAllowMaximumBalanceOfWithdrawals() {
+        // Given
+        RetryBudget budget = new RetryBudget(0.1, 3);
+
+        // When / Then
+        assertTrue(budget.tryWithdraw());
+        assertTrue(budget.tryWithdraw());
+        assertTrue(budget.tryWithdraw());
+        assertFalse(budget.tryWithdraw());
+    }
+
+    @Test
+    @DisplayName("Should earn one withdrawal per ratio of deposits")
+    void shouldEarnOneWithdrawalPerRatioOfDeposits() {
+        // Given
+        RetryBudget budget = new RetryBudget(0.1, 1);
+        budget.tryWithdraw();
+
+        // When
+        for (int i = 0; i < 9; i++) {
+            budget.deposit();
+        }
+        boolean afterNine = budget.tryWithdraw();
+        budget.deposit();
+
+        // Then
+        assertFalse(afterNine);
+        assertTrue(budget.tryWithdraw());
+    }
+
+    @Test
+    @DisplayName("Should cap the balance")
+    void shouldCapTheBalance() {
+        // Given
+        RetryBudget budget = new RetryBudget(0.5, 2);
+
+        // When
+        for (int i = 0; i < 100; i++) {
+            budget.deposit();
+        }
+
+        // Then
+        assertEquals(2.0, budget.getBalance());
+    }
+}
@@ -0,0 +1,128 @@
+package com.javaninja.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private static final int CALLERS = 8;
+
+    private Counter coalesced;
+
+    private SingleFlight<String, String> singleFlight;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        coalesced = Counter.builder("coalesced").register(new SimpleMeterRegistry());
+        singleFlight = new SingleFlight<>(coalesced);
+        executor = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Should share one call between concurrent callers")
+    void shouldShareOneCallBetweenConcurrentCallers() throws Exception {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        // When
+        List<Future<String>> results = startCallers(() -> {
+            calls.incrementAndGet();
+            await(release);
+            return "post-1";
+        });
+        waitForJoiners();
+        release.countDown();
+
+        // Then
+        for (Future<String> result : results) {
+            assertEquals("post-1", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, calls.get());
+        assertEquals(CALLERS - 1, coalesced.count());
+        assertEquals(0, singleFlight.inFlightCount());
+    }
+
+    @Test
+    @DisplayName("Should propagate failure to every waiting caller")
+    void shouldPropagateFailureToEveryWaitingCaller() throws Exception {
+        // Given
+        CountDownLatch release = new CountDownLatch(1);
+
+        // When
+        List<Future<String>> results = startCallers(() -> {
+            await(release);
+            throw new IllegalStateException("upstream down");
+        });
+        waitForJoiners();
+        release.countDown();
+
+        // Then
+        for (Future<String> result : results) {
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, ex.getCause());
+        }
+    }
+
+    @Test
+    @DisplayName("Should call again once previous call completed")
+    void shouldCallAgainOncePreviousCallCompleted() {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+
+        // When
+        singleFlight.execute("key", () -> "v" + calls.incrementAndGet());
+        String second = singleFlight.execute("key", () -> "v" + calls.incrementAndGet());
+
+        // Then
+        assertEquals("v2", second);
+        assertEquals(0, coalesced.count());
+    }
+
+    private List<Future<String>> startCallers(Supplier<String> call) {
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            results.add(executor.submit(() -> singleFlight.execute("key", call)));
+        }
+        return results;
+    }
+
+    private void waitForJoiners() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (coalesced.count() < CALLERS - 1 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.javaninja.service;
+
+import com.javaninja.model.UserEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserChangeFeedTest {
+
+    private UserChangeFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        feed = new UserChangeFeed(4);
+    }
+
+    @Test
+    @DisplayName("Should read events after a sequence in batches")
+    void shouldReadEventsAfterSequenceInBatches() {
+        // Given
+        for (long sequence = 1; sequence <= 3; sequence++) {
+            feed.append(UserEvent.deleted(sequence, sequence));
+        }
+
+        // When
+        List<UserEvent> first = feed.read(0, 2);
+        List<UserEvent> rest = feed.read(2, 2);
+
+        // Then
+        assertEquals(List.of(1L, 2L), sequences(first));
+        assertEquals(List.of(3L), sequences(rest));
+        assertTrue(feed.read(3, 2).isEmpty());
+        assertEquals(3, feed.getLastSequence());
+    }
+
+    @Test
+    @DisplayName("Should expire readers that fell behind the ring or are ahead of it")
+    void shouldExpireReadersThatFellBehindTheRingOrAreAheadOfIt() {
+        // Given
+        for (long sequence = 1; sequence <= 10; sequence++) {
+            feed.append(UserEvent.deleted(sequence, sequence));
+        }
+
+        // When
+        SequenceExpiredException behind = assertThrows(SequenceExpiredException.class, () -> feed.read(5, 10));
+        SequenceExpiredException ahead = assertThrows(SequenceExpiredException.class, () -> feed.read(11, 10));
+
+        // Then
+        assertEquals(10, behind.getLastSequence());
+        assertEquals(10, ahead.getLastSequence());
+        assertEquals(List.of(7L, 8L, 9L, 10L), sequences(feed.read(6, 10)));
+    }
+
+    @Test
+    @DisplayName("Should continue after the reset sequence")
+    void shouldContinueAfterResetSequence() {
+        // Given
+        feed.append(UserEvent.deleted(1, 1));
+
+        // When
+        feed.reset(50);
+        feed.append(UserEvent.deleted(51, 1));
+
+        // Then
+        assertThrows(SequenceExpiredException.class, () -> feed.read(1, 10));
+        assertEquals(List.of(51L), sequences(feed.read(50, 10)));
+    }
+
+    @Test
+    @DisplayName("Should wake waiting readers when an event is appended")
+    void shouldWakeWaitingReadersWhenEventIsAppended() throws Exception {
+        // Given
+        CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return feed.await(0, Duration.ofSeconds(5));
+            } catch (InterruptedException ex) {
+                throw new IllegalStateException(ex);
+            }
+        });
+
+        // When
+        Thread.sleep(50);
+        feed.append(UserEvent.deleted(1, 1));
+
+        // Then
+        assertTrue(waiting.get(5, TimeUnit.SECONDS));
+        assertFalse(feed.await(1, Duration.ofMillis(10)));
+    }
+
+    private static List<Long> sequences(List<UserEvent> events) {
+        return events.stream().map(UserEvent::sequence).toList();
+    }
+}
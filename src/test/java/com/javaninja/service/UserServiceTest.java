@@ -1,12 +1,29 @@
 package com.javaninja.service;
 
+import com.javaninja.model.BatchItemResult;
+import com.javaninja.model.BatchItemResult.Status;
 import com.javaninja.model.User;
+import com.javaninja.model.UserEvent;
+import com.javaninja.persistence.MappedUserJournal;
+import com.javaninja.persistence.UserJournalProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.util.unit.DataSize;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -122,5 +139,579 @@ class UserServiceTest {
         assertFalse(deleted);
         assertEquals(3, userService.getAllUsers().size());
     }
-}
 
+    @Test
+    @DisplayName("Should assign unique IDs under concurrent creates")
+    void shouldAssignUniqueIdsUnderConcurrentCreates() throws Exception {
+        // Given
+        int threads = 8;
+        int usersPerThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Callable<List<Long>>> tasks = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            tasks.add(() -> {
+                List<Long> ids = new ArrayList<>();
+                for (int i = 0; i < usersPerThread; i++) {
+                    String email = "user" + thread + "-" + i + "@example.com";
+                    ids.add(userService.createUser(new User(null, "User", email)).getId());
+                }
+                return ids;
+            });
+        }
+
+        // When
+        Set<Long> ids = new HashSet<>();
+        try {
+            for (Future<List<Long>> future : executor.invokeAll(tasks)) {
+                ids.addAll(future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Then
+        assertEquals(threads * usersPerThread, ids.size());
+        assertEquals(3 + threads * usersPerThread, userService.getAllUsers().size());
+    }
+
+    @Test
+    @DisplayName("Should not reuse ID of deleted user")
+    void shouldNotReuseIdOfDeletedUser() {
+        // Given
+        User created = userService.createUser(new User(null, "Alice Brown", "alice.brown@example.com"));
+        userService.deleteUser(created.getId());
+
+        // When
+        User next = userService.createUser(new User(null, "Carol White", "carol.white@example.com"));
+
+        // Then
+        assertNotEquals(created.getId(), next.getId());
+    }
+
+    @Test
+    @DisplayName("Should return empty optional for null ID")
+    void shouldReturnEmptyOptionalForNullId() {
+        // When & Then
+        assertFalse(userService.getUserById(null).isPresent());
+        assertFalse(userService.updateUser(null, new User()).isPresent());
+        assertFalse(userService.deleteUser(null));
+    }
+
+    @Test
+    @DisplayName("Should find user by email ignoring case")
+    void shouldFindUserByEmailIgnoringCase() {
+        // When
+        Optional<User> user = userService.getUserByEmail("Jane.Smith@Example.com");
+
+        // Then
+        assertTrue(user.isPresent());
+        assertEquals("Jane Smith", user.get().getName());
+    }
+
+    @Test
+    @DisplayName("Should reject duplicate email on create")
+    void shouldRejectDuplicateEmailOnCreate() {
+        // Given
+        User duplicate = new User(null, "Another John", "john.doe@example.com");
+
+        // When & Then
+        assertThrows(DuplicateEmailException.class, () -> userService.createUser(duplicate));
+        assertEquals(3, userService.getAllUsers().size());
+    }
+
+    @Test
+    @DisplayName("Should reject update that takes another user's email")
+    void shouldRejectUpdateThatTakesAnotherUsersEmail() {
+        // Given
+        User updatedUser = new User(null, "John Doe", "jane.smith@example.com");
+
+        // When & Then
+        assertThrows(DuplicateEmailException.class, () -> userService.updateUser(1L, updatedUser));
+        assertEquals("john.doe@example.com", userService.getUserById(1L).get().getEmail());
+    }
+
+    @Test
+    @DisplayName("Should keep email index in sync with updates and deletes")
+    void shouldKeepEmailIndexInSyncWithUpdatesAndDeletes() {
+        // When
+        userService.updateUser(1L, new User(null, "John Doe", "john.new@example.com"));
+        userService.deleteUser(2L);
+
+        // Then
+        assertFalse(userService.getUserByEmail("john.doe@example.com").isPresent());
+        assertEquals(1L, userService.getUserByEmail("john.new@example.com").get().getId());
+        assertFalse(userService.getUserByEmail("jane.smith@example.com").isPresent());
+    }
+
+    @Test
+    @DisplayName("Should return users by name prefix in name order")
+    void shouldReturnUsersByNamePrefixInNameOrder() {
+        // Given
+        userService.createUser(new User(null, "Johanna Lee", "johanna.lee@example.com"));
+        userService.createUser(new User(null, "Joe Black", "joe.black@example.com"));
+
+        // When
+        List<User> users = userService.getUsersByNamePrefix("jo", 10);
+
+        // Then
+        assertEquals(List.of("Joe Black", "Johanna Lee", "John Doe"),
+                users.stream().map(User::getName).toList());
+        assertEquals(1, userService.getUsersByNamePrefix("jo", 1).size());
+        assertTrue(userService.getUsersByNamePrefix("zz", 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should move user in name index when renamed")
+    void shouldMoveUserInNameIndexWhenRenamed() {
+        // When
+        userService.updateUser(3L, new User(null, "Robert Johnson", "bob.johnson@example.com"));
+
+        // Then
+        assertTrue(userService.getUsersByNamePrefix("bob", 10).isEmpty());
+        assertEquals(3L, userService.getUsersByNamePrefix("rob", 10).get(0).getId());
+    }
+
+    @Test
+    @DisplayName("Should page through users in ID order")
+    void shouldPageThroughUsersInIdOrder() {
+        // Given
+        userService.deleteUser(2L);
+        userService.createUser(new User(null, "Alice Brown", "alice.brown@example.com"));
+
+        // When
+        List<User> firstPage = userService.getUsersAfter(0L, 2);
+        List<User> secondPage = userService.getUsersAfter(firstPage.get(1).getId(), 2);
+
+        // Then
+        assertEquals(List.of(1L, 3L), firstPage.stream().map(User::getId).toList());
+        assertEquals(List.of(4L), secondPage.stream().map(User::getId).toList());
+        assertTrue(userService.getUsersAfter(4L, 2).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should stream users in ID order")
+    void shouldStreamUsersInIdOrder() {
+        // Given
+        userService.deleteUser(1L);
+
+        // When
+        List<Long> ids = userService.streamUsers().map(User::getId).toList();
+
+        // Then
+        assertEquals(List.of(2L, 3L), ids);
+    }
+
+    @Test
+    @DisplayName("Should create batch of users with consecutive IDs")
+    void shouldCreateBatchOfUsersWithConsecutiveIds() {
+        // Given
+        List<User> newUsers = List.of(
+            new User(null, "Alice Brown", "alice.brown@example.com"),
+            new User(null, "Carol White", "carol.white@example.com")
+        );
+
+        // When
+        List<BatchItemResult> results = userService.createUsers(newUsers);
+
+        // Then
+        assertEquals(List.of(BatchItemResult.of(4L, Status.CREATED), BatchItemResult.of(5L, Status.CREATED)), results);
+        assertEquals("Carol White", userService.getUserById(5L).get().getName());
+        assertEquals(5L, userService.getUserByEmail("carol.white@example.com").get().getId());
+    }
+
+    @Test
+    @DisplayName("Should report per-item conflicts in batch create")
+    void shouldReportPerItemConflictsInBatchCreate() {
+        // Given
+        List<User> newUsers = Arrays.asList(
+            new User(null, "Alice Brown", "alice.brown@example.com"),
+            new User(null, "Alice Again", "alice.brown@example.com"),
+            new User(null, "John Again", "john.doe@example.com"),
+            null
+        );
+
+        // When
+        List<BatchItemResult> results = userService.createUsers(newUsers);
+
+        // Then
+        assertEquals(Status.CREATED, results.get(0).status());
+        assertEquals(Status.CONFLICT, results.get(1).status());
+        assertEquals(Status.CONFLICT, results.get(2).status());
+        assertEquals(Status.INVALID, results.get(3).status());
+        assertEquals(4, userService.getAllUsers().size());
+    }
+
+    @Test
+    @DisplayName("Should update batch of users")
+    void shouldUpdateBatchOfUsers() {
+        // Given
+        List<User> updates = List.of(
+            new User(1L, "John Updated", "john.updated@example.com"),
+            new User(999L, "Nobody", "nobody@example.com"),
+            new User(2L, "Jane Smith", "bob.johnson@example.com"),
+            new User(null, "No Id", "no.id@example.com")
+        );
+
+        // When
+        List<BatchItemResult> results = userService.updateUsers(updates);
+
+        // Then
+        assertEquals(Status.UPDATED, results.get(0).status());
+        assertEquals(Status.NOT_FOUND, results.get(1).status());
+        assertEquals(Status.CONFLICT, results.get(2).status());
+        assertEquals(Status.INVALID, results.get(3).status());
+        assertEquals("John Updated", userService.getUserById(1L).get().getName());
+        assertEquals("jane.smith@example.com", userService.getUserById(2L).get().getEmail());
+    }
+
+    @Test
+    @DisplayName("Should delete batch of users")
+    void shouldDeleteBatchOfUsers() {
+        // When
+        List<BatchItemResult> results = userService.deleteUsers(List.of(1L, 3L, 999L));
+
+        // Then
+        assertEquals(List.of(
+            BatchItemResult.of(1L, Status.DELETED),
+            BatchItemResult.of(3L, Status.DELETED),
+            BatchItemResult.of(999L, Status.NOT_FOUND)), results);
+        assertEquals(1, userService.getAllUsers().size());
+    }
+
+    @Test
+    @DisplayName("Should advance user and store versions on every write")
+    void shouldAdvanceUserAndStoreVersionsOnEveryWrite() {
+        // Given
+        long storeVersion = userService.getVersion();
+        long userVersion = userService.getUserById(1L).get().getVersion();
+
+        // When
+        userService.updateUser(1L, new User(null, "John Updated", "john.updated@example.com"));
+        userService.deleteUser(2L);
+
+        // Then
+        User updated = userService.getUserById(1L).get();
+        assertTrue(updated.getVersion() > userVersion);
+        assertEquals(storeVersion + 1, updated.getVersion());
+        assertEquals(storeVersion + 2, userService.getVersion());
+    }
+
+    @Test
+    @DisplayName("Should reject an update whose expected version is stale")
+    void shouldRejectUpdateWhoseExpectedVersionIsStale() {
+        // Given
+        long version = userService.getUserById(1L).get().getVersion();
+        userService.updateUser(1L, new User(null, "John Updated", "john.updated@example.com"));
+
+        // When
+        VersionMismatchException ex = assertThrows(VersionMismatchException.class, () ->
+                userService.updateUser(1L, new User(null, "Lost Update", "lost@example.com"), v -> v == version));
+
+        // Then
+        assertEquals(userService.getUserById(1L).get().getVersion(), ex.getCurrentVersion());
+        assertEquals("John Updated", userService.getUserById(1L).get().getName());
+        assertFalse(userService.getUserByEmail("lost@example.com").isPresent());
+    }
+
+    @Test
+    @DisplayName("Should delete only when the expected version matches")
+    void shouldDeleteOnlyWhenExpectedVersionMatches() {
+        // Given
+        long version = userService.getUserById(2L).get().getVersion();
+
+        // When / Then
+        assertThrows(VersionMismatchException.class, () -> userService.deleteUser(2L, v -> v == version + 1));
+        assertTrue(userService.deleteUser(2L, v -> v == version));
+        assertFalse(userService.getUserById(2L).isPresent());
+    }
+
+    @Test
+    @DisplayName("Should notify change listeners of every write in sequence order")
+    void shouldNotifyChangeListenersOfEveryWriteInSequenceOrder() {
+        // Given
+        List<UserEvent> events = new ArrayList<>();
+        userService.addChangeListener(events::add);
+        long version = userService.getVersion();
+
+        // When
+        User created = userService.createUser(new User(null, "Alice Brown", "alice.brown@example.com"));
+        userService.updateUser(1L, new User(null, "John Updated", "john.updated@example.com"));
+        userService.deleteUser(2L);
+        userService.deleteUser(999L);
+
+        // Then
+        assertEquals(List.of(UserEvent.Type.CREATED, UserEvent.Type.UPDATED, UserEvent.Type.DELETED),
+                events.stream().map(UserEvent::type).toList());
+        assertEquals(List.of(created.getId(), 1L, 2L), events.stream().map(UserEvent::id).toList());
+        assertEquals(List.of(version + 1, version + 2, version + 3),
+                events.stream().map(UserEvent::sequence).toList());
+    }
+
+    @Test
+    @DisplayName("Should feed writes into a change feed starting at the current version")
+    void shouldFeedWritesIntoChangeFeedStartingAtCurrentVersion() {
+        // Given
+        UserChangeFeed feed = new UserChangeFeed(16);
+        long version = userService.getVersion();
+
+        // When
+        userService.addChangeFeed(feed);
+        userService.deleteUser(1L);
+
+        // Then
+        assertThrows(SequenceExpiredException.class, () -> feed.read(version - 1, 10));
+        List<UserEvent> events = feed.read(version, 10);
+        assertEquals(1, events.size());
+        assertEquals(UserEvent.Type.DELETED, events.get(0).type());
+        assertEquals(userService.getVersion(), feed.getLastSequence());
+    }
+
+    @Test
+    @DisplayName("Should apply replicated events with their original sequences")
+    void shouldApplyReplicatedEventsWithTheirOriginalSequences() {
+        // Given
+        UserService leader = new UserService();
+        List<UserEvent> events = new ArrayList<>();
+        leader.addChangeListener(events::add);
+        leader.createUser(new User(null, "Alice Brown", "alice.brown@example.com"));
+        leader.updateUser(1L, new User(null, "John Updated", "john.updated@example.com"));
+        leader.deleteUser(2L);
+
+        // When
+        userService.applyReplicated(events);
+        userService.applyReplicated(events.subList(1, 3));
+
+        // Then
+        assertEquals(leader.getVersion(), userService.getVersion());
+        assertEquals(leader.getUserById(4L).get().getVersion(), userService.getUserById(4L).get().getVersion());
+        assertEquals("John Updated", userService.getUserById(1L).get().getName());
+        assertFalse(userService.getUserById(2L).isPresent());
+        assertEquals(5L, userService.createUser(new User(null, "Carol White", "carol.white@example.com")).getId());
+        assertThrows(IllegalStateException.class, () -> userService.applyReplicated(
+                List.of(UserEvent.deleted(userService.getVersion() + 2, 3L))));
+    }
+
+    @Test
+    @DisplayName("Should replace every user when installing a snapshot")
+    void shouldReplaceEveryUserWhenInstallingSnapshot() {
+        // Given
+        UserService leader = new UserService();
+        leader.createUser(new User(null, "Alice Brown", "alice.brown@example.com"));
+        leader.deleteUser(1L);
+        UserChangeFeed feed = new UserChangeFeed(16);
+        userService.addChangeFeed(feed);
+        userService.createUser(new User(null, "Diverged", "diverged@example.com"));
+
+        // When
+        userService.installSnapshot(leader.exportSnapshot());
+
+        // Then
+        assertEquals(leader.getVersion(), userService.getVersion());
+        assertEquals(3, userService.getAllUsers().size());
+        assertFalse(userService.getUserById(1L).isPresent());
+        assertFalse(userService.getUserByEmail("diverged@example.com").isPresent());
+        assertEquals(leader.getUserById(4L).get().getVersion(), userService.getUserById(4L).get().getVersion());
+        assertEquals(leader.getVersion(), feed.getLastSequence());
+        assertThrows(SequenceExpiredException.class, () -> feed.read(3, 10));
+    }
+
+    @Test
+    @DisplayName("Should restore users from journal after restart")
+    void shouldRestoreUsersFromJournalAfterRestart(@TempDir Path directory) {
+        // Given
+        UserJournalProperties properties = new UserJournalProperties();
+        properties.setDirectory(directory);
+        properties.setSnapshotEvery(4);
+        try (MappedUserJournal journal = new MappedUserJournal(properties)) {
+            UserService journaled = new UserService(Optional.of(journal));
+            journaled.createUser(new User(null, "Alice Brown", "alice.brown@example.com"));
+            journaled.updateUser(1L, new User(null, "John Updated", "john.updated@example.com"));
+            journaled.deleteUsers(List.of(2L));
+        }
+
+        // When
+        UserService restarted;
+        try (MappedUserJournal journal = new MappedUserJournal(properties)) {
+            restarted = new UserService(Optional.of(journal));
+            restarted.createUser(new User(null, "Carol White", "carol.white@example.com"));
+        }
+
+        // Then
+        assertEquals(List.of(1L, 3L, 4L, 5L), restarted.streamUsers().map(User::getId).toList());
+        assertEquals("John Updated", restarted.getUserById(1L).get().getName());
+        assertEquals(1L, restarted.getUserByEmail("john.updated@example.com").get().getId());
+        assertFalse(restarted.getUserByEmail("jane.smith@example.com").isPresent());
+        assertTrue(restarted.getUserById(5L).get().getVersion() > restarted.getUserById(1L).get().getVersion());
+        assertEquals(restarted.getUserById(5L).get().getVersion(), restarted.getVersion());
+    }
+
+    @Test
+    @DisplayName("Should reject users too large for the journal without skipping a sequence")
+    void shouldRejectUsersTooLargeForJournalWithoutSkippingSequence(@TempDir Path directory) {
+        // Given
+        UserJournalProperties properties = new UserJournalProperties();
+        properties.setDirectory(directory);
+        properties.setSegmentSize(DataSize.ofKilobytes(1));
+        String hugeName = "x".repeat(2048);
+        UserService restarted;
+        try (MappedUserJournal journal = new MappedUserJournal(properties)) {
+            UserService journaled = new UserService(Optional.of(journal));
+            long versionBefore = journaled.getVersion();
+
+            // When
+            assertThrows(UserTooLargeException.class,
+                    () -> journaled.createUser(new User(null, hugeName, "huge@example.com")));
+            assertThrows(UserTooLargeException.class,
+                    () -> journaled.updateUser(1L, new User(null, hugeName, "john.doe@example.com")));
+            List<BatchItemResult> results = journaled.createUsers(List.of(
+                    new User(null, hugeName, "huge@example.com"),
+                    new User(null, "Alice Brown", "alice.brown@example.com")));
+
+            // Then
+            assertEquals(Status.INVALID, results.get(0).status());
+            assertEquals(Status.CREATED, results.get(1).status());
+            assertEquals(versionBefore + 1, journaled.getVersion());
+            assertEquals("John Doe", journaled.getUserById(1L).get().getName());
+        }
+        try (MappedUserJournal journal = new MappedUserJournal(properties)) {
+            restarted = new UserService(Optional.of(journal));
+        }
+        assertEquals(4, restarted.getAllUsers().size());
+        assertTrue(restarted.getUserByEmail("alice.brown@example.com").isPresent());
+    }
+
+    @Test
+    @DisplayName("Should not consume a sequence when the journal append fails")
+    void shouldNotConsumeSequenceWhenJournalAppendFails(@TempDir Path directory) {
+        // Given
+        UserJournalProperties properties = new UserJournalProperties();
+        properties.setDirectory(directory);
+        MappedUserJournal journal = new MappedUserJournal(properties);
+        UserService journaled = new UserService(Optional.of(journal));
+        long sequenceBefore = journaled.exportSnapshot().sequence();
+        journal.close();
+
+        // When
+        assertThrows(IllegalStateException.class,
+                () -> journaled.createUser(new User(null, "Alice Brown", "alice.brown@example.com")));
+        assertThrows(IllegalStateException.class, () -> journaled.deleteUser(1L));
+
+        // Then
+        assertEquals(sequenceBefore, journaled.exportSnapshot().sequence());
+        assertEquals(sequenceBefore, journaled.getVersion());
+        assertTrue(journaled.getUserById(1L).isPresent());
+    }
+
+    @Test
+    @DisplayName("Should restart with the installed history after following a leader that is behind")
+    void shouldRestartWithInstalledHistoryAfterFollowingLeaderThatIsBehind(@TempDir Path directory) {
+        // Given: this node wrote past the new leader and snapshotted that divergent history
+        UserJournalProperties properties = new UserJournalProperties();
+        properties.setDirectory(directory);
+        properties.setSnapshotEvery(4);
+        UserService leader = new UserService();
+        leader.createUser(new User(null, "Alice Brown", "alice.brown@example.com"));
+        try (MappedUserJournal journal = new MappedUserJournal(properties)) {
+            UserService follower = new UserService(Optional.of(journal));
+            for (int i = 0; i < 6; i++) {
+                follower.createUser(new User(null, "Diverged " + i, "diverged" + i + "@example.com"));
+            }
+
+            // When: it installs the leader's older snapshot, then takes writes as the next leader
+            follower.installSnapshot(leader.exportSnapshot());
+            follower.createUser(new User(null, "Carol White", "carol.white@example.com"));
+        }
+        UserService restarted;
+        try (MappedUserJournal journal = new MappedUserJournal(properties)) {
+            restarted = new UserService(Optional.of(journal));
+        }
+
+        // Then
+        assertEquals(leader.getVersion() + 1, restarted.getVersion());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), restarted.streamUsers().map(User::getId).toList());
+        assertEquals("Alice Brown", restarted.getUserById(4L).get().getName());
+        assertEquals("Carol White", restarted.getUserById(5L).get().getName());
+        assertTrue(restarted.getUsersByNamePrefix("diverged", 10).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should keep user versions when restarting from a snapshot")
+    void shouldKeepUserVersionsWhenRestartingFromSnapshot(@TempDir Path directory) {
+        // Given
+        UserJournalProperties properties = new UserJournalProperties();
+        properties.setDirectory(directory);
+        properties.setSnapshotEvery(2);
+        List<User> before;
+        try (MappedUserJournal journal = new MappedUserJournal(properties)) {
+            UserService journaled = new UserService(Optional.of(journal));
+            journaled.updateUser(2L, new User(null, "Jane Updated", "jane.updated@example.com"));
+            journaled.createUser(new User(null, "Alice Brown", "alice.brown@example.com"));
+            before = journaled.getAllUsers();
+        }
+
+        // When
+        UserService restarted;
+        try (MappedUserJournal journal = new MappedUserJournal(properties)) {
+            restarted = new UserService(Optional.of(journal));
+        }
+
+        // Then
+        for (User user : before) {
+            assertEquals(user.getVersion(), restarted.getUserById(user.getId()).get().getVersion());
+        }
+        assertEquals(1L, restarted.getUserById(1L).get().getVersion());
+    }
+
+    @Test
+    @DisplayName("Should restore users into the compact store from journal")
+    void shouldRestoreUsersIntoTheCompactStoreFromJournal(@TempDir Path directory) {
+        // Given
+        UserJournalProperties properties = new UserJournalProperties();
+        properties.setDirectory(directory);
+        properties.setSnapshotEvery(4);
+        try (MappedUserJournal journal = new MappedUserJournal(properties)) {
+            UserService journaled = new UserService(Optional.of(journal));
+            journaled.createUser(new User(null, "Alice Brown", "alice.brown@example.com"));
+            journaled.updateUser(1L, new User(null, "John Updated", "john.updated@example.com"));
+            journaled.deleteUsers(List.of(2L));
+        }
+
+        // When
+        UserService restarted;
+        try (MappedUserJournal journal = new MappedUserJournal(properties)) {
+            restarted = new UserService(Optional.of(journal), new SimpleMeterRegistry(), new CompactUserStore());
+            restarted.createUser(new User(null, "Carol White", "carol.white@example.com"));
+        }
+
+        // Then
+        assertEquals(List.of(1L, 3L, 4L, 5L), restarted.streamUsers().map(User::getId).toList());
+        assertEquals("John Updated", restarted.getUserById(1L).get().getName());
+        assertEquals(1L, restarted.getUserByEmail("JOHN.UPDATED@example.com").get().getId());
+        assertEquals(List.of(4L), restarted.getUsersByNamePrefix("alice", 10).stream().map(User::getId).toList());
+        assertThrows(DuplicateEmailException.class,
+                () -> restarted.createUser(new User(null, "Copy", "carol.white@example.com")));
+        assertEquals(restarted.getUserById(5L).get().getVersion(), restarted.getVersion());
+    }
+
+    @Test
+    @DisplayName("Should time operations and report store size")
+    void shouldTimeOperationsAndReportStoreSize() {
+        // Given
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        UserService metered = new UserService(Optional.empty(), meterRegistry);
+
+        // When
+        metered.getUserById(1L);
+        metered.getUserById(2L);
+        metered.updateUser(1L, new User(null, "John Updated", "john.updated@example.com"));
+        metered.deleteUser(3L);
+
+        // Then
+        assertEquals(2, meterRegistry.get("users.operations").tag("operation", "get").timer().count());
+        assertEquals(1, meterRegistry.get("users.operations").tag("operation", "update").timer().count());
+        assertEquals(1, meterRegistry.get("users.operations").tag("operation", "delete").timer().count());
+        assertEquals(3, meterRegistry.get("users.operations").tag("operation", "create").timer().count());
+        assertEquals(2.0, meterRegistry.get("users.store.size").gauge().value());
+    }
+}